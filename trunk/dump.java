@@ -1,13 +1,39 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
 import com.hp.hpl.jena.vocabulary.OWL;
 import com.hp.hpl.jena.vocabulary.RDF;
 import com.hp.hpl.jena.vocabulary.RDFS;
 
+import fr.cnrs.liris.cross.CompactEncoding;
+import fr.cnrs.liris.cross.ConnectionPool;
 import fr.cnrs.liris.cross.DbInfo;
+import fr.cnrs.liris.cross.NameFilter;
+import fr.cnrs.liris.cross.ParallelGzipOutputStream;
 import fr.cnrs.liris.cross.ABoxGraph;
+import fr.cnrs.liris.cross.BinaryRdfWriter;
+import fr.cnrs.liris.cross.ShardedDump;
 import fr.cnrs.liris.cross.TBoxGraph;
+import fr.cnrs.liris.cross.TripleWriter;
 
 /*
  * Created on Jul 13, 2004
@@ -23,6 +49,12 @@ public class dump {
 	
 	public static final int ABOX = 0;
 	public static final int TBOX = 1;
+
+    /**
+     * The syntax name of the binary format.
+     * @see fr.cnrs.liris.cross.BinaryRdfWriter
+     */
+	public static final String BINARY = "binary";
 	
 	static int getType (String arg) {
 		if (arg.equals ("abox")) {
@@ -36,15 +68,63 @@ public class dump {
 	
 	private static void help () {
 		System.err.println(
-"Dumps the ABox for the given JDBC source to standard output.\n"+
+"Dumps the ABox for the given JDBC source to standard output (or a file).\n"+
 "usage: dump <abox|tbox> <jdbc_url> [options]\n"+
+"       dump batch <job_file> [-j <jobs>] [-c <connections>]\n"+
+"         runs the dumps given, one per line, in <job_file> (each with its\n"+
+"         own -o or -O), at most <jobs> (default 4) at a time, using at\n"+
+"         most <connections> (default <jobs>) connections in all; jobs\n"+
+"         should use -O, or -s N-TRIPLE or binary, since other syntaxes\n"+
+"         may need several connections at a time\n"+
 "  options: -d <driver>: JDBC driver name (can also be passed to JVM with\n" +"                        -Djdbc.drivers)\n"+
 "           -u <username>: database connexion username\n"+
 "           -p <passwd>: database connexion password\n"+
+"           -c <catalog>: catalog of the tables\n"+
+"           -m <pattern>: pattern of the schemas of the tables\n"+
 "           -t <url>: base URI of the TBox\n"+
 "           -a <url>: base URI of the ABox\n"+
 "           -i <url>: URI of the imported TBox\n"+
-"           -s <syntax>: jena style syntax for the reuslting RDF\n"+
+"           -s <syntax>: jena style syntax for the reuslting RDF, or 'binary'\n"+
+"                        for the compact binary format of Cross\n"+
+"           -f <url>: only dump the ABox triples with the given property\n"+
+"                     (can be repeated)\n"+
+"           -e <engine>: ABox extraction engine, 'jdbc' (default) or 'bulk'\n"+
+"                        (e.g. COPY for PostgreSQL)\n"+
+"           -o <file>: write to the given file instead of standard output\n"+
+"           -z <threads>: gzip the output, with the given number of threads\n"+
+"           -O <dir>: write the ABox as shards into the given directory,\n"+
+"                     in N-Triples (or binary), with a MANIFEST; -z gzips\n"+
+"                     each shard\n"+
+"           -S <mode>: how to shard, 'table' (default), 'range:<rows>' or\n"+
+"                      'triples:<count>'\n"+
+"           -j <threads>: number of concurrent shard writers (default 4)\n"+
+"           -I <threads>: number of connections reading the metadata of the\n"+
+"                         tables, when they are read table by table\n"+
+"           -P <check|skip>: whether to check the privileges of the user on\n"+
+"                            tables and columns (default check)\n"+
+"           -r <all|links|none>: the pairs of foreign keys rule 4 applies to:\n"+
+"                                all of them (default), only those of link\n"+
+"                                tables, or none\n"+
+"           -L <size>[:skip]: the maximum size of large objects, beyond which\n"+
+"                             they are truncated (or skipped)\n"+
+"           -b <hex|base64>: the encoding of binary values (default hex)\n"+
+"           -T [+|-]<pattern>: include (+) or exclude (-, default) the tables\n"+
+"                              matching the pattern, a regular expression\n"+
+"                              or 'glob:' followed by a glob pattern;\n"+
+"                              can be repeated\n"+
+"           -C [+|-]<pattern>: the same for columns, matched as table.column\n"+
+"                              (primary key columns are never excluded)\n"+
+"           -E <pa|compact>: the encoding of URIs; 'compact' gives shorter\n"+
+"                            row URIs (default pa)\n"+
+"           -n <mode>: only extract a sample of the rows, for a preview;\n"+
+"                      'first:<rows>' per table, 'bernoulli:<percent>', or\n"+
+"                      'range:<rows>' after a random primary key\n"+
+"           -k <pk|unique|rowid>: how to identify the rows of tables without\n"+
+"                                 a primary key: not at all (default), by a\n"+
+"                                 unique index, or else by the row id\n"+
+"           -K <table>:<col1>,<col2>...: the columns identifying the rows of\n"+
+"                                        a table without a primary key;\n"+
+"                                        can be repeated\n"+
 "           -v <level>: set the verbosity level\n"+
 ""
 		);
@@ -62,12 +142,30 @@ public class dump {
      * @see #TBOX
      */
 	public static Model makeModel (DbInfo.Parameters p, int type)
+	throws ClassNotFoundException, java.sql.SQLException {
+		return makeModel (p, type, null);
+	}
+
+    /**
+     * Same as makeModel(p, type), but if type is ABOX and properties is not
+     * null, the ABox is restricted to the given properties.
+     * @param p the parameters
+     * @param type either TBOX or ABOX
+     * @param properties a collection of property URIs, or <code>null</code>
+     * @return an RDF model
+     * @throws ClassNotFoundException
+     * @throws java.sql.SQLException
+     * @see #makeModel(DbInfo.Parameters, int)
+     */
+	public static Model makeModel (DbInfo.Parameters p, int type,
+	                               Collection properties)
 	throws ClassNotFoundException, java.sql.SQLException {
 		DbInfo index = new DbInfo (p);
 		Graph g = null;
 		switch (type) {
 			case ABOX:
-				g = new ABoxGraph (index);
+				if (properties == null) g = new ABoxGraph (index);
+				else g = new ABoxGraph (index, properties);
 				break;
 			case TBOX:
 				g = new TBoxGraph (index);
@@ -85,43 +183,468 @@ public class dump {
         return m;
 	}
 
-	public static void main(String[] args) throws Exception {
-		int argc = args.length;
-		DbInfo.Parameters p = new DbInfo.Parameters ();
-		String syntax = "RDF/XML-ABBREV";
-		int type = ABOX;
-		try {
-			type = getType (args[0]);
-			p.jdbcUrl = args[1];
+    /**
+     * Write all the triples of the given graph with the given TripleWriter,
+     * as they are produced by the graph, then close the writer.
+     * @param g a graph
+     * @param w a triple writer
+     * @throws java.io.IOException
+     */
+	public static void write (Graph g, TripleWriter w)
+	throws java.io.IOException {
+		Iterator i = g.find (Node.ANY, Node.ANY, Node.ANY);
+		while (i.hasNext ()) {
+			w.write ((Triple) i.next ());
+		}
+		w.close ();
+	}
+
+    /**
+     * Open the output stream of the dump.
+     * @param output the name of the output file, or <code>null</code> for
+     *               the standard output
+     * @param gzipThreads if strictly positive, the output is gzipped with
+     *                    that many threads
+     * @return an output stream
+     * @throws java.io.IOException
+     * @see fr.cnrs.liris.cross.ParallelGzipOutputStream
+     */
+	public static OutputStream openOutput (String output, int gzipThreads)
+	throws java.io.IOException {
+		if (gzipThreads > 0) {
+			WritableByteChannel ch = (output == null)
+				? Channels.newChannel (System.out)
+				: new FileOutputStream (output).getChannel ();
+			return new ParallelGzipOutputStream (ch, gzipThreads);
+		} else if (output != null) {
+			return new BufferedOutputStream (new FileOutputStream (output),
+			                                 1 << 16);
+		} else {
+			return System.out;
+		}
+	}
+
+    /**
+     * The options of one dump, as given on the command line or on a line of
+     * a batch job file.
+     */
+	public static class Job {
+		public DbInfo.Parameters p = new DbInfo.Parameters ();
+		public String syntax = "RDF/XML-ABBREV";
+		public int type = ABOX;
+		public Collection properties = null;
+		public String output = null;
+		public int gzipThreads = 0;
+		public String shardDir = null;
+		public int shardMode = ShardedDump.PER_TABLE;
+		public int shardSize = 0;
+		public int shardThreads = 4;
+
+        /**
+         * Parse the given command line arguments.
+         * @param args the arguments
+         * @return the job
+         * @throws IndexOutOfBoundsException if the arguments are invalid
+         */
+		public static Job parse (String[] args) {
+			Job j = new Job ();
+			int argc = args.length;
+			j.type = getType (args[0]);
+			j.p.jdbcUrl = args[1];
 			for (int i=2; i<argc; i++) {
 				String a = args[i];
 				if (!a.startsWith("-")) throw new IndexOutOfBoundsException();
 				i += 1;
 				switch (a.charAt(1)) {
 					case 'd':
-						p.jdbcDriver = args[i]; break;
+						j.p.jdbcDriver = args[i]; break;
 					case 'u':
-						p.jdbcUsername = args[i]; break;
+						j.p.jdbcUsername = args[i]; break;
 					case 'p':
-						p.jdbcPassword = args[i]; break;
+						j.p.jdbcPassword = args[i]; break;
+					case 'c':
+						j.p.catalog = args[i]; break;
+					case 'm':
+						j.p.schemaPattern = args[i]; break;
 					case 't':
-                        p.tboxBaseUri = args[i]; break;
+                        j.p.tboxBaseUri = args[i]; break;
                     case 'a':
-                        p.aboxBaseUri = args[i]; break;
+                        j.p.aboxBaseUri = args[i]; break;
                     case 'i':
-                        p.importedTboxUri = args[i]; break;
+                        j.p.importedTboxUri = args[i]; break;
 					case 's':
-						syntax = args[i]; break; 
+						j.syntax = args[i]; break; 
                     case 'v':
-                        p.verbosity = Integer.parseInt(args[i]); break; 
+                        j.p.verbosity = Integer.parseInt(args[i]); break; 
+                    case 'f':
+                        if (j.properties == null) j.properties = new LinkedList ();
+                        j.properties.add (args[i]); break;
+                    case 'e':
+                        j.p.bulkExtraction = args[i].equals ("bulk"); break;
+                    case 'o':
+                        j.output = args[i]; break;
+                    case 'z':
+                        j.gzipThreads = Integer.parseInt(args[i]); break;
+                    case 'O':
+                        j.shardDir = args[i]; break;
+                    case 'S':
+                        j.setShardMode (args[i]); break;
+                    case 'j':
+                        j.shardThreads = Integer.parseInt(args[i]); break;
+                    case 'I':
+                        j.p.introspectionThreads = Integer.parseInt(args[i]); break;
+                    case 'P':
+                        j.p.checkPrivileges = !args[i].equals ("skip"); break;
+                    case 'r':
+                        j.setForeignKeyPairs (args[i]); break;
+                    case 'L':
+                        j.setLobMaxSize (args[i]); break;
+                    case 'b':
+                        j.p.base64Binary = args[i].equals ("base64"); break;
+                    case 'T':
+                        if (j.p.tableFilter == null) {
+                            j.p.tableFilter = new NameFilter ();
+                        }
+                        j.p.tableFilter.add (args[i]); break;
+                    case 'k':
+                        j.setRowIdentity (args[i]); break;
+                    case 'K':
+                        j.addIdentityColumns (args[i]); break;
+                    case 'E':
+                        if (args[i].equals ("compact")) {
+                            j.p.enc = new CompactEncoding ();
+                        } else if (!args[i].equals ("pa")) {
+                            throw new IndexOutOfBoundsException ();
+                        }
+                        break;
+                    case 'n':
+                        j.setSampling (args[i]); break;
+                    case 'C':
+                        if (j.p.columnFilter == null) {
+                            j.p.columnFilter = new NameFilter ();
+                        }
+                        j.p.columnFilter.add (args[i]); break;
+				}
+			}
+			return j;
+		}
+
+        /**
+         * Set the shard mode from its command line option.
+         * @param mode 'table', 'range:&lt;rows&gt;' or 'triples:&lt;count&gt;'
+         * @throws IndexOutOfBoundsException if the mode is invalid
+         */
+		void setShardMode (String mode) {
+			int colon = mode.indexOf (':');
+			String name = (colon < 0) ? mode : mode.substring (0, colon);
+			int size = (colon < 0) ? 0
+			                       : Integer.parseInt (mode.substring (colon+1));
+			if (name.equals ("table")) {
+				shardMode = ShardedDump.PER_TABLE;
+			} else if (name.equals ("range") && size > 0) {
+				shardMode = ShardedDump.PER_RANGE;
+			} else if (name.equals ("triples") && size > 0) {
+				shardMode = ShardedDump.PER_TRIPLES;
+			} else {
+				throw new IndexOutOfBoundsException ();
+			}
+			shardSize = size;
+		}
+
+        /**
+         * Set the pairs of foreign keys rule 4 applies to from its command
+         * line option.
+         * @param mode 'all', 'links' or 'none'
+         * @throws IndexOutOfBoundsException if the mode is invalid
+         */
+        void setForeignKeyPairs (String mode) {
+            if (mode.equals ("all")) {
+                p.foreignKeyPairs = DbInfo.PAIRS_ALL;
+            } else if (mode.equals ("links")) {
+                p.foreignKeyPairs = DbInfo.PAIRS_LINK_TABLES;
+            } else if (mode.equals ("none")) {
+                p.foreignKeyPairs = DbInfo.PAIRS_NONE;
+            } else {
+                throw new IndexOutOfBoundsException ();
+            }
+        }
+
+        /**
+         * Set the maximum size of large objects from its command line
+         * option.
+         * @param mode the size, possibly followed by ':skip' or ':truncate'
+         * @throws IndexOutOfBoundsException if the mode is invalid
+         */
+        void setLobMaxSize (String mode) {
+            int colon = mode.indexOf (':');
+            String size = (colon < 0) ? mode : mode.substring (0, colon);
+            String policy = (colon < 0) ? "truncate" : mode.substring (colon+1);
+            p.lobMaxSize = Long.parseLong (size);
+            if (p.lobMaxSize <= 0) throw new IndexOutOfBoundsException ();
+            if (policy.equals ("truncate")) {
+                p.lobPolicy = DbInfo.LOB_TRUNCATE;
+            } else if (policy.equals ("skip")) {
+                p.lobPolicy = DbInfo.LOB_SKIP;
+            } else {
+                throw new IndexOutOfBoundsException ();
+            }
+        }
+
+        /**
+         * Set the sampling of the rows from its command line option.
+         * @param mode 'first:&lt;rows&gt;', 'bernoulli:&lt;percent&gt;' or
+         *             'range:&lt;rows&gt;'
+         * @throws IndexOutOfBoundsException if the mode is invalid
+         */
+        void setSampling (String mode) {
+            int colon = mode.indexOf (':');
+            if (colon < 0) throw new IndexOutOfBoundsException ();
+            String name = mode.substring (0, colon);
+            String size = mode.substring (colon+1);
+            if (name.equals ("first")) {
+                p.sampling = DbInfo.SAMPLE_FIRST;
+                p.sampleSize = Integer.parseInt (size);
+            } else if (name.equals ("bernoulli")) {
+                p.sampling = DbInfo.SAMPLE_BERNOULLI;
+                p.samplePercent = Double.parseDouble (size);
+            } else if (name.equals ("range")) {
+                p.sampling = DbInfo.SAMPLE_RANDOM_RANGE;
+                p.sampleSize = Integer.parseInt (size);
+            } else {
+                throw new IndexOutOfBoundsException ();
+            }
+            if (p.sampleSize <= 0 || p.samplePercent <= 0) {
+                throw new IndexOutOfBoundsException ();
+            }
+        }
+
+        /**
+         * Set how to identify the rows of tables without a primary key from
+         * its command line option.
+         * @param mode 'pk', 'unique' or 'rowid'
+         * @throws IndexOutOfBoundsException if the mode is invalid
+         */
+        void setRowIdentity (String mode) {
+            if (mode.equals ("pk")) {
+                p.rowIdentity = DbInfo.ROWS_PRIMARY_KEY;
+            } else if (mode.equals ("unique")) {
+                p.rowIdentity = DbInfo.ROWS_UNIQUE_INDEX;
+            } else if (mode.equals ("rowid")) {
+                p.rowIdentity = DbInfo.ROWS_ROW_ID;
+            } else {
+                throw new IndexOutOfBoundsException ();
+            }
+        }
+
+        /**
+         * Add the columns identifying the rows of a table from their command
+         * line option.
+         * @param spec the name of the table, a colon and the names of the
+         *             columns separated by commas
+         * @throws IndexOutOfBoundsException if the option is invalid
+         */
+        void addIdentityColumns (String spec) {
+            int colon = spec.indexOf (':');
+            if (colon <= 0) throw new IndexOutOfBoundsException ();
+            if (p.identityColumns == null) p.identityColumns = new HashMap ();
+            p.identityColumns.put (spec.substring (0, colon),
+                                   spec.substring (colon+1).split (","));
+        }
+
+        /**
+         * Run this dump.
+         * @return the number of triples written in shards, or -1 if the
+         *         output is not sharded
+         * @throws Exception
+         */
+		public long run () throws Exception {
+			Model m = makeModel (p, type, properties);
+			if (shardDir != null && type == ABOX) {
+				ShardedDump sd = new ShardedDump ((ABoxGraph) m.getGraph (),
+				                                  new File (shardDir));
+				sd.setMode (shardMode, shardSize);
+				sd.setThreads (shardThreads);
+				sd.setBinary (syntax.equals (BINARY));
+				sd.setGzip (gzipThreads > 0);
+				long triples = 0;
+				Iterator i = sd.run ().iterator ();
+				while (i.hasNext ()) {
+					String line[] = ((String) i.next ()).split ("\t");
+					triples += Long.parseLong (line[2]);
+				}
+				return triples;
+			}
+			OutputStream out = openOutput (output, gzipThreads);
+			if (syntax.equals (BINARY)) {
+				write (m.getGraph (), new BinaryRdfWriter (out));
+			} else {
+				m.write(out, syntax);
+				out.close ();
+			}
+			return -1;
+		}
+	}
+
+    /**
+     * Split a line of a job file into arguments, separated by white spaces;
+     * an argument containing white spaces can be enclosed in double quotes.
+     * @param line a line
+     * @return the arguments
+     */
+	static String[] splitArguments (String line) {
+		LinkedList r = new LinkedList ();
+		StringBuffer arg = null;
+		boolean quoted = false;
+		for (int k = 0; k < line.length (); k++) {
+			char c = line.charAt (k);
+			if (c == '"') {
+				quoted = !quoted;
+				if (arg == null) arg = new StringBuffer ();
+			} else if (!quoted && Character.isWhitespace (c)) {
+				if (arg != null) r.add (arg.toString ());
+				arg = null;
+			} else {
+				if (arg == null) arg = new StringBuffer ();
+				arg.append (c);
+			}
+		}
+		if (arg != null) r.add (arg.toString ());
+		return (String[]) r.toArray (new String[r.size ()]);
+	}
+
+    /**
+     * Run all the jobs of the given job file in this JVM, with at most
+     * <code>threads</code> jobs at a time, sharing a connection pool of
+     * <code>threads</code> connections.
+     * @param jobFile the name of the job file
+     * @param threads the maximum number of jobs running at a time
+     * @throws Exception
+     * @see #batch(String, int, int)
+     */
+	public static void batch (String jobFile, int threads) throws Exception {
+		batch (jobFile, threads, threads);
+	}
+
+    /**
+     * Run all the jobs of the given job file in this JVM, with at most
+     * <code>threads</code> jobs at a time, sharing a connection pool which
+     * bounds the number of connections in use by all the jobs.
+     * The concurrent shard writers (-j) and introspection connections (-I)
+     * of each job are reduced to its share of the connections. Since a job
+     * waits for the connections it needs, jobs writing a syntax which looks
+     * the graph up while writing it (e.g. RDF/XML-ABBREV), hence may hold
+     * several connections, can block each other when the pool is small.
+     * Each line of the file holds the arguments of one dump (as on the
+     * command line), which must write to a file (-o) or a directory (-O);
+     * empty lines and lines starting with '#' are ignored.
+     * A report is written on standard output, with one tab separated line
+     * per job, in the order of the file: the line number, the status, the
+     * duration in seconds, the size of the output file in bytes (-1 for
+     * shards) and the number of triples (-1 if not counted).
+     * @param jobFile the name of the job file
+     * @param threads the maximum number of jobs running at a time
+     * @param connections the maximum number of connections in use at a time
+     * @throws Exception
+     */
+	public static void batch (String jobFile, int threads, int connections)
+	throws Exception {
+		int share = Math.max (1, connections / threads);
+		LinkedList jobs = new LinkedList ();
+		LinkedList lines = new LinkedList ();
+		BufferedReader in = new BufferedReader (new FileReader (jobFile));
+		String line;
+		int n = 0;
+		while ((line = in.readLine ()) != null) {
+			n += 1;
+			line = line.trim ();
+			if (line.length () == 0 || line.startsWith ("#")) continue;
+			Job j;
+			try {
+				j = Job.parse (splitArguments (line));
+			}
+			catch (RuntimeException ex) {
+				throw new IllegalArgumentException (
+					jobFile + ":" + n + ": invalid job");
+			}
+			if (j.output == null && j.shardDir == null) {
+				throw new IllegalArgumentException (
+					jobFile + ":" + n + ": no output file (-o) or directory (-O)");
+			}
+			j.shardThreads = Math.min (j.shardThreads, share);
+			j.p.introspectionThreads = Math.min (j.p.introspectionThreads,
+			                                     share);
+			jobs.add (j);
+			lines.add (new Integer (n));
+		}
+		in.close ();
+
+		final ConnectionPool pool = new ConnectionPool (connections,
+		                                                connections);
+		ExecutorService workers = Executors.newFixedThreadPool (threads);
+		LinkedList reports = new LinkedList ();
+		Iterator i = jobs.iterator ();
+		Iterator l = lines.iterator ();
+		while (i.hasNext ()) {
+			final Job j = (Job) i.next ();
+			final Integer ln = (Integer) l.next ();
+			j.p.connectionPool = pool;
+			reports.add (workers.submit (new Callable () {
+				public Object call () {
+					long start = System.currentTimeMillis ();
+					String status = "ok";
+					long triples = -1;
+					try {
+						triples = j.run ();
+					}
+					catch (Throwable ex) {
+						status = "error: " + ex;
+						System.err.println ("job at line " + ln + ": " + ex);
+					}
+					long bytes = (j.output == null) ? -1
+					                                : new File (j.output).length ();
+					return ln + "\t" + status
+						+ "\t" + (System.currentTimeMillis () - start) / 1000.0
+						+ "\t" + bytes + "\t" + triples;
 				}
+			}));
+		}
+		workers.shutdown ();
+		i = reports.iterator ();
+		while (i.hasNext ()) {
+			System.out.println ((String) ((Future) i.next ()).get ());
+		}
+		pool.close ();
+	}
+
+	public static void main(String[] args) throws Exception {
+		Job j = null;
+		try {
+			if (args[0].equals ("batch")) {
+				int threads = 4;
+				int connections = 0;
+				for (int i = 2; i < args.length; i += 2) {
+					if (args[i].equals ("-j")) {
+						threads = Integer.parseInt (args[i+1]);
+					} else if (args[i].equals ("-c")) {
+						connections = Integer.parseInt (args[i+1]);
+					} else {
+						throw new IndexOutOfBoundsException ();
+					}
+				}
+				batch (args[1], threads,
+				       (connections > 0) ? connections : threads);
+				return;
 			}
+			j = Job.parse (args);
 		}
 		catch (IndexOutOfBoundsException ex) {
 			help ();
 			System.exit (-1);
 		}
-
-		makeModel (p, type).write(System.out, syntax);
+		catch (NumberFormatException ex) {
+			help ();
+			System.exit (-1);
+		}
+		j.run ();
 	}
 }
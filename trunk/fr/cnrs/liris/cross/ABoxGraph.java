@@ -6,8 +6,14 @@ package fr.cnrs.liris.cross;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
 
 import com.hp.hpl.jena.graph.Graph;
 import com.hp.hpl.jena.graph.Node;
@@ -15,6 +21,7 @@ import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.graph.TripleMatch;
 import com.hp.hpl.jena.graph.impl.GraphBase;
 import com.hp.hpl.jena.shared.ReificationStyle;
+import com.hp.hpl.jena.util.iterator.ClosableIterator;
 import com.hp.hpl.jena.util.iterator.ExtendedIterator;
 import com.hp.hpl.jena.vocabulary.OWL;
 import com.hp.hpl.jena.vocabulary.RDF;
@@ -26,6 +33,12 @@ import com.hp.hpl.jena.vocabulary.RDFS;
  * <p>The graph corresponding to the ABox for a database.</p>
  * <p>This class implements <code>com.hp.hpl.jena.graph.Graph</code>, around which
  * RDF models can be created.</p> 
+ * <p>An ABoxGraph can be used by many threads at a time, for instance on
+ * virtual threads: each iterator it returns has its own state and its own
+ * connection (released when the iterator is exhausted or closed), and
+ * uses the description of the database current when it was created, even
+ * if DbInfo is refreshed meanwhile. An iterator must not be shared by
+ * several threads.</p>
  * 
  * @see fr.cnrs.liris.cross.DbInfo
  * @see fr.cnrs.liris.cross.TBoxGraph
@@ -37,6 +50,14 @@ public class ABoxGraph extends GraphBase implements Graph {
      */
 	private DbInfo info;
 
+    /**
+     * The URIs of the properties this graph is restricted to, or
+     * <code>null</code> if all properties are to be generated.
+     */
+    private HashSet properties = null;
+
+    private Statistics statistics = null;
+
     /**
      * Construct the ABoxGraph for the given DbInfo. 
      * @param info the description of the database
@@ -55,55 +76,490 @@ public class ABoxGraph extends GraphBase implements Graph {
 		super ();
 		this.info = info;
 	}
+
+    /**
+     * Construct the ABoxGraph for the given DbInfo, restricted to the given
+     * properties.
+     * Only the triples whose predicate is in <code>properties</code> are
+     * generated, and only the columns and joins they need are queried.
+     * @param info the description of the database
+     * @param properties a collection of property URIs (as Strings)
+     */
+    public ABoxGraph (DbInfo info, Collection properties) {
+        super ();
+        this.info = info;
+        this.properties = new HashSet (properties);
+    }
         
 
 	/* (non-Javadoc)
 	 * @see com.hp.hpl.jena.graph.Graph#find(com.hp.hpl.jena.graph.TripleMatch)
 	 */
 	public ExtendedIterator find(TripleMatch m) {
-		// TODO LATER This could be optimized...
-		return new com.hp.hpl.jena.graph.TripleMatchIterator (
-			m.asTriple(), new ABoxIterator ());
+        Triple pattern = m.asTriple();
+        Node s = pattern.getSubject ();
+        // the same snapshot is used for the whole iteration
+        Schema schema = info.getSchema ();
+        ABoxIterator it;
+        if (s.isURI ()) {
+            // only the rows which can produce triples about s are read
+            it = new ABoxIterator (projection (pattern, schema),
+                                   scansForSubject (s.getURI (), schema),
+                                   true, null, null);
+        } else {
+            it = new ABoxIterator (projection (pattern, schema),
+                                   scans (schema.tables.values ()),
+                                   true, null, null);
+        }
+		return new com.hp.hpl.jena.graph.TripleMatchIterator (pattern, it);
 	}
+
+    /**
+     * Return the statistics of this graph, estimated from the number of rows
+     * of the tables. The counts are shared by the graphs of the same
+     * DbInfo, and kept until DbInfo.refreshStatistics is called.
+     * @return the statistics of this graph
+     * @see fr.cnrs.liris.cross.DbInfo#refreshStatistics()
+     */
+    public Statistics getStatistics () {
+        if (statistics == null) {
+            statistics = new ABoxStatistics (info, properties);
+        }
+        return statistics;
+    }
+
+    /**
+     * Return the scans needed to find the triples whose subject is the
+     * given URI: the row it identifies (rules 1 to 3), and the rows of the
+     * tables whose foreign key pairs start with a foreign key referencing
+     * this row (rule 4).
+     * If the URI does not identify a row, no scan is returned, since only
+     * the header triples can have it as their subject.
+     * @param uri the URI of a subject
+     * @param schema the snapshot of the description of the database
+     * @return a collection of Scans
+     */
+    private Collection scansForSubject (String uri, Schema schema) {
+        LinkedHashMap r = new LinkedHashMap ();
+        Object o;
+        try {
+            o = info.getEnc ().decodeUri (uri, info);
+        }
+        catch (RuntimeException ex) {
+            o = null;
+        }
+        if (!(o instanceof String[])) return r.values ();
+        String row[] = (String[]) o;
+        Table table = schema.getTable (row[0]);
+        if (table == null || table.primaryKey.size () != row.length - 1) {
+            return r.values ();
+        }
+        String values[] = new String[row.length - 1];
+        System.arraycopy (row, 1, values, 0, values.length);
+
+        Column key[] = new Column[values.length];
+        for (int k = 0; k < key.length; k++) {
+            key[k] = table.primaryKey.getColumn (k+1);
+        }
+        Scan scan = new Scan (table);
+        scan.addCondition (key, values);
+        r.put (table, scan);
+
+        Iterator i = schema.tables.values ().iterator ();
+        while (i.hasNext ()) {
+            Table t = (Table) i.next ();
+            HashSet done = new HashSet ();
+            Iterator j = t.fkPairs.iterator ();
+            while (j.hasNext ()) {
+                ForeignKey fk = ((ForeignKeyPair) j.next ()).first;
+                if (fk.foreignColumnSet ().table () != table) continue;
+                if (!done.add (fk)) continue;
+                scan = (Scan) r.get (t);
+                if (scan == null) {
+                    scan = new Scan (t);
+                    r.put (t, scan);
+                }
+                if (!fk.referencesPrimaryKey ()) {
+                    // the referenced columns are not the key in the URI,
+                    // so all the rows of t have to be read
+                    scan.unbounded = true;
+                    continue;
+                }
+                Column local[] = new Column[values.length];
+                for (int k = 0; k < local.length; k++) {
+                    local[k] = fk.localColumn (key[k]);
+                }
+                scan.addCondition (local, values);
+            }
+        }
+        return r.values ();
+    }
+
+    /**
+     * Return the names of the tables which contribute triples to this graph,
+     * in alphabetical order.
+     * @return a list of table names
+     */
+    public List getTableNames () {
+        Schema schema = info.getSchema ();
+        Projection proj = projection (ANY, schema);
+        LinkedList r = new LinkedList ();
+        Iterator i = schema.tables.values ().iterator ();
+        while (i.hasNext ()) {
+            Table t = (Table) i.next ();
+            if (proj.includes (t)) r.add (t.name);
+        }
+        Collections.sort (r);
+        return r;
+    }
+
+    /**
+     * Return the triples describing the ABox itself (its type, comment and
+     * imported TBox), which find also returns before the triples of the
+     * tables.
+     * @return an iterator over the header triples
+     */
+    public ExtendedIterator findHeader () {
+        return new com.hp.hpl.jena.graph.TripleMatchIterator (
+            ANY, new ABoxIterator (projection (ANY, info.getSchema ()),
+                                   Collections.EMPTY_LIST,
+                                   true, null, null));
+    }
+
+    /**
+     * Return the triples generated from the rows of the given table.
+     * @param tableName the name of a table
+     * @return an iterator over the triples
+     * @see #getTableNames()
+     */
+    public ExtendedIterator findInTable (String tableName) {
+        return findInTable (tableName, null, null);
+    }
+
+    /**
+     * Return the triples generated from the rows of the given table whose
+     * primary key is strictly greater than <code>after</code> and lower than
+     * or equal to <code>upTo</code>.
+     * Iterators over disjoint ranges of the same table can be consumed
+     * concurrently, each using its own connection.
+     * The bulk export facility of the database is not used for ranges.
+     * @param tableName the name of a table
+     * @param after the lower bound of the range, or <code>null</code>
+     * @param upTo the upper bound of the range, or <code>null</code>
+     * @return an iterator over the triples
+     * @see #splitTable(String, int)
+     */
+    public ExtendedIterator findInTable (String tableName,
+                                         Object[] after, Object[] upTo) {
+        Schema schema = info.getSchema ();
+        return new com.hp.hpl.jena.graph.TripleMatchIterator (
+            ANY, new ABoxIterator (projection (ANY, schema),
+                                   scans (Collections.singletonList (
+                                       table (schema, tableName))),
+                                   false, after, upTo));
+    }
+
+    /**
+     * Split the given table into ranges of the given number of rows, in the
+     * order of its primary key.
+     * Only the primary key is read, which most databases do with the index.
+     * @param tableName the name of a table
+     * @param rows the number of rows of each range
+     * @return the bounds of the ranges, as arrays of primary key values (in
+     *         the order of the primary key columns); with bounds
+     *         <em>b1</em>...<em>bn</em>, the ranges are
+     *         <code>(null, b1]</code>, <code>(b1, b2]</code>...
+     *         <code>(bn, null]</code>
+     * @throws SQLException
+     * @see #findInTable(String, Object[], Object[])
+     */
+    public List splitTable (String tableName, int rows) throws SQLException {
+        Table table = table (info.getSchema (), tableName);
+        SelectBuilder select = new SelectBuilder (info, table);
+        int pos[] = new int[table.primaryKey.size ()];
+        for (int k = 0; k < pos.length; k++) {
+            pos[k] = select.addColumn (table.primaryKey.getColumn (k+1));
+        }
+        select.orderByPrimaryKey ();
+
+        LinkedList r = new LinkedList ();
+        java.sql.Connection cx = info.openConnection ();
+        try {
+            java.sql.Statement stmt = info.dialect
+                .createStreamingStatement (cx, info.getFetchSize ());
+            ResultSet rs = stmt.executeQuery (select.toString ());
+            Object bound[] = null;
+            int n = 0;
+            while (rs.next ()) {
+                // a bound is only kept if rows follow it
+                if (bound != null) {
+                    r.add (bound);
+                    bound = null;
+                }
+                if (++n % rows == 0) {
+                    bound = new Object[pos.length];
+                    for (int k = 0; k < pos.length; k++) {
+                        bound[k] = rs.getObject (pos[k]);
+                    }
+                }
+            }
+            rs.close ();
+            stmt.close ();
+            info.dialect.endStreaming (cx);
+        }
+        finally {
+            info.releaseConnection (cx);
+        }
+        return r;
+    }
+
+    private static Table table (Schema schema, String tableName) {
+        Table r = schema.getTable (tableName);
+        if (r == null) {
+            throw new IllegalArgumentException ("Unknown table " + tableName);
+        }
+        return r;
+    }
+
+    private static final Triple ANY = new Triple (Node.ANY, Node.ANY, Node.ANY);
+
+    /**
+     * A table to be read by an ABoxIterator, with the conditions restricting
+     * the rows to read (a row is read if it satisfies any of them).
+     */
+    private static class Scan {
+        final Table table;
+        final LinkedList columns = new LinkedList ();
+        final LinkedList values = new LinkedList ();
+        /**
+         * Whether all the rows have to be read, whatever the conditions.
+         */
+        boolean unbounded = false;
+
+        Scan (Table table) {
+            this.table = table;
+        }
+
+        void addCondition (Column[] columns, String[] values) {
+            this.columns.add (columns);
+            this.values.add (values);
+        }
+
+        /**
+         * Add the conditions of this scan to the given query.
+         * @param select a query on the table of this scan
+         */
+        void restrict (SelectBuilder select) {
+            if (unbounded) return;
+            Iterator i = columns.iterator ();
+            Iterator j = values.iterator ();
+            while (i.hasNext ()) {
+                select.addCondition ((Column[]) i.next (), (String[]) j.next ());
+            }
+        }
+    }
+
+    /**
+     * Return scans of all the given tables, with no condition.
+     * @param tables a collection of Tables
+     * @return a collection of Scans
+     */
+    private static Collection scans (Collection tables) {
+        LinkedList r = new LinkedList ();
+        Iterator i = tables.iterator ();
+        while (i.hasNext ()) r.add (new Scan ((Table) i.next ()));
+        return r;
+    }
+
+    /**
+     * Return the projection needed to answer the given pattern, taking into
+     * account the properties this graph is restricted to.
+     * @param pattern a triple pattern
+     * @param schema the snapshot of the description of the database
+     * @return the corresponding projection
+     */
+    private Projection projection (Triple pattern, Schema schema) {
+        Node p = pattern.getPredicate ();
+        Projection r = new Projection (schema);
+        if (p.isURI ()) {
+            if (properties == null || properties.contains (p.getURI ())) {
+                r.addPredicate (p.getURI (), pattern.getObject ());
+            }
+        } else if (properties != null) {
+            Iterator i = properties.iterator ();
+            while (i.hasNext ()) {
+                r.addPredicate ((String) i.next (), Node.ANY);
+            }
+        } else {
+            r = Projection.ALL;
+        }
+        return r;
+    }
 	
-	private class ABoxIterator implements java.util.Iterator {
+	private class ABoxIterator implements ClosableIterator {
+        private Projection proj;
 		private Iterator tables;
+		private Scan scan;
 		private Table table;
-		private ResultSet rs;
+        private java.sql.Connection cx = null;
+		private RowSource rs = null;
 		private Iterator triples;
 		private boolean hasNext = true;
 
-		ABoxIterator () {
-			tables = info.tables.values ().iterator ();
-			try {
-				fillResultSet ();
-                LinkedList header = new LinkedList();
-                Node ont = Node.createURI(info.getABoxUri());
-                //Node ont = Node.createURI("");
-                header.add (new Triple(ont,
-                                       RDF.type.asNode(),
-                                       OWL.Ontology.asNode()));
-                header.add (new Triple(ont,
-                                       RDFS.comment.asNode(),
-                                       Node.createLiteral(
-                                           "Generated by Cross", null, null)));
-                header.add (new Triple(ont,
-                                       OWL.imports.asNode(),
-                                       Node.createURI(
-                                           info.getImportedTboxUri())));
-                triples = header.iterator();
-				findNext ();
-			}
-			catch (SQLException ex) {
-				throw new RuntimeException (ex);
-			}
+        /*
+         * The query plan of the current table: the columns (rule 2), foreign
+         * keys (rule 3) and foreign key pairs (rule 4) required by proj.
+         */
+        private boolean types;
+        private Column[] columns;
+        private ForeignKey[] links;
+        private ForeignKeyPair[] pairs;
+        /*
+         * The nodes of the plan, computed once per table: the class of the
+         * table, the properties of the columns, and the properties of the
+         * foreign keys (owl:sameAs for rule 3b).
+         */
+        private Node typeNode;
+        private Node[] columnNodes;
+        private Node[] linkNodes;
+        /*
+         * The foreign keys required by rule 3 or rule 4, each once, and the
+         * tables they reference; the indexes in needed of the foreign keys
+         * of links and pairs.
+         */
+        private ForeignKey[] needed;
+        private Table[] neededTables;
+        private int[] linkIndexes;
+        private int[][] pairIndexes;
+        /*
+         * The positions, in the rows of the current query, of the primary
+         * key, of the columns of the plan, and of the columns holding the
+         * primary key of the rows referenced by each needed foreign key.
+         */
+        private int[] keyPositions;
+        private int[] columnPositions;
+        private int[][] neededPositions;
+        /*
+         * The nodes of the rows referenced by the needed foreign keys in the
+         * current row, computed once per row.
+         */
+        private Node[] fkNodes;
+        /**
+         * The query of the current table.
+         */
+        private SelectBuilder select;
+        /*
+         * Keyset pagination state: the number of rows read in the current
+         * page, and the primary key of the last row read.
+         */
+        private int pageRows;
+        private Object[] lastKey;
+        /*
+         * The range of primary keys to read, or null if unbounded.
+         */
+        private Object[] rangeStart;
+        private Object[] rangeEnd;
+        /*
+         * The query settings of the current table: the size of the pages
+         * (0 if not paged) and the maximum number of rows per query (0 for
+         * no limit).
+         */
+        private int pageSize;
+        private int limit;
+        /*
+         * Sampling state: the random start of the current table, if sampled
+         * by random range, and the percentage of the rows to keep when a
+         * Bernoulli sample is not performed by the database (0 if none).
+         */
+        private Object[] sampleStart;
+        private double keptPercent;
+        private final Random random = new Random ();
+
+        /**
+         * @param proj the projection
+         * @param candidates the Scans to perform, if their table is included
+         *                   in proj
+         * @param withHeader whether to generate the header triples
+         * @param rangeStart the (exclusive) lower bound of the primary keys
+         *                   to read, or <code>null</code>
+         * @param rangeEnd the (inclusive) upper bound of the primary keys to
+         *                 read, or <code>null</code>
+         */
+        ABoxIterator (Projection proj, Collection candidates,
+                      boolean withHeader,
+                      Object[] rangeStart, Object[] rangeEnd) {
+            this.proj = proj;
+            this.rangeStart = rangeStart;
+            this.rangeEnd = rangeEnd;
+            LinkedList scanned = new LinkedList ();
+            Iterator i = candidates.iterator ();
+            while (i.hasNext ()) {
+                Scan sc = (Scan) i.next ();
+                if (proj.includes (sc.table)) scanned.add (sc);
+            }
+			tables = scanned.iterator ();
+            LinkedList header = new LinkedList();
+            Node ont = Node.createURI(info.getABoxUri());
+            //Node ont = Node.createURI("");
+            if (withHeader) {
+                if (proj.includesPredicate (RDF.type.asNode())) {
+                    header.add (new Triple(ont,
+                                           RDF.type.asNode(),
+                                           OWL.Ontology.asNode()));
+                }
+                if (proj.includesPredicate (RDFS.comment.asNode())) {
+                    header.add (new Triple(ont,
+                                           RDFS.comment.asNode(),
+                                           Node.createLiteral(
+                                               "Generated by Cross", null, null)));
+                }
+                if (proj.includesPredicate (OWL.imports.asNode())) {
+                    header.add (new Triple(ont,
+                                           OWL.imports.asNode(),
+                                           Node.createURI(
+                                               info.getImportedTboxUri())));
+                }
+            }
+            triples = header.iterator();
+            advance ();
 		}
 		
+        /**
+         * Move to the next triple. If this fails, the connection is released
+         * before the exception is thrown, since the caller may not be able
+         * to close this iterator (e.g. if this happens in the constructor).
+         */
+        private void advance () {
+            try {
+                findNext ();
+            }
+            catch (SQLException ex) {
+                abort ();
+                throw new RuntimeException (ex);
+            }
+            catch (RuntimeException ex) {
+                abort ();
+                throw ex;
+            }
+        }
+
+        private void abort () {
+            hasNext = false;
+            try {
+                close ();
+            }
+            catch (RuntimeException ex) {
+                info.verbose (1, "could not release a connection: "
+                                 + ex.getMessage ());
+            }
+        }
+
 		private void findNext () throws SQLException {
 			while (!triples.hasNext ()) {
-				while (!rs.next ()) {
+				while (rs == null || !nextRow ()) {
 					if (!tables.hasNext ()) {
 						hasNext = false;
+                        close ();
 						return;
 					}
 					fillResultSet ();
@@ -111,142 +567,401 @@ public class ABoxGraph extends GraphBase implements Graph {
 				fillTriples ();
 			}
 		}
+
+        /**
+         * Compute the query plan of the current table.
+         */
+        private void plan () {
+            types = proj.includesType (table);
+
+            LinkedList l = new LinkedList ();
+            Iterator i = table.columnList.iterator ();
+            while (i.hasNext ()) {
+                Column c = (Column) i.next ();
+                if (!c.rowId && proj.includes (c)) l.add (c);
+            }
+            columns = (Column[]) l.toArray (new Column[l.size ()]);
+
+            l.clear ();
+            i = table.foreignKeys.values ().iterator ();
+            while (i.hasNext ()) {
+                ForeignKey fk = (ForeignKey) i.next ();
+                if (proj.includes (fk)) l.add (fk);
+            }
+            links = (ForeignKey[]) l.toArray (new ForeignKey[l.size ()]);
+
+            l.clear ();
+            i = table.fkPairs.iterator ();
+            while (i.hasNext ()) {
+                ForeignKeyPair pair = (ForeignKeyPair) i.next ();
+                if (proj.includes (pair)) l.add (pair);
+            }
+            pairs = (ForeignKeyPair[]) l.toArray (new ForeignKeyPair[l.size ()]);
+
+            typeNode = Node.createURI (table.uri);
+            columnNodes = new Node[columns.length];
+            for (int k = 0; k < columns.length; k++) {
+                columnNodes[k] = Node.createURI (columns[k].uri);
+            }
+            linkNodes = new Node[links.length];
+            for (int k = 0; k < links.length; k++) {
+                linkNodes[k] = links[k].subsumesPrimaryKey ()
+                             ? OWL.sameAs.asNode ()
+                             : Node.createURI (links[k].uri);
+            }
+
+            // the foreign keys needed by rule 3 or rule 4
+            LinkedHashMap indexes = new LinkedHashMap ();
+            linkIndexes = new int[links.length];
+            for (int k = 0; k < links.length; k++) {
+                linkIndexes[k] = index (indexes, links[k]);
+            }
+            pairIndexes = new int[pairs.length][2];
+            for (int k = 0; k < pairs.length; k++) {
+                pairIndexes[k][0] = index (indexes, pairs[k].first);
+                pairIndexes[k][1] = index (indexes, pairs[k].second);
+            }
+            needed = (ForeignKey[]) indexes.keySet ().toArray (
+                new ForeignKey[indexes.size ()]);
+            neededTables = new Table[needed.length];
+            for (int k = 0; k < needed.length; k++) {
+                neededTables[k] = needed[k].foreignColumnSet ().table ();
+            }
+            fkNodes = new Node[needed.length];
+        }
+
+        /* (non javadoc)
+         * Return the index of fk in the given map of indexes, adding it if
+         * needed.
+         */
+        private int index (LinkedHashMap indexes, ForeignKey fk) {
+            Integer r = (Integer) indexes.get (fk);
+            if (r == null) {
+                r = new Integer (indexes.size ());
+                indexes.put (fk, r);
+            }
+            return r.intValue ();
+        }
 		
 		private void fillResultSet () throws SQLException {
-			table = (Table) tables.next();
-			String table_name = table.sqlname;
-			StringBuffer select = new StringBuffer ("SELECT ");
-			StringBuffer from = new StringBuffer (" FROM " + table_name);
-			boolean first = true;
-			Iterator i = table.columnList.iterator();
-			
-			while (i.hasNext ()) {
-				Column column = (Column) i.next ();
-				if (first) first = false;
-				else select.append (",");
-				select.append(table_name)
-				      .append(".")
-				      .append (column.sqlname)
-					  .append(" AS ")
-					  .append (column.sqlname);
-			}
-			i = table.foreignKeys.values().iterator();
-			
-			while (i.hasNext ()) {
-				ForeignKey fk = (ForeignKey) i.next ();
-				Table ft = fk.foreignColumnSet().table();
-				
-				Iterator j = ft.primaryKey.columnList.iterator();
-				while (j.hasNext()) {
-					Column c = (Column) j.next();
-					select.append(",")
-						  .append(fk.sqlname)
-						  .append(".")
-						  .append(c.sqlname)
-						  .append(" AS ")
-						  .append(info.quote)
-                              .append(fk.name).append("_").append(c.name)
-                          .append(info.quote);
-				}
-				
-				from.append(" LEFT JOIN ")
-					.append(ft.sqlname)
-					.append(" ")
-					.append(fk.sqlname)
-				    .append(" ON(");
-				first = true;
-				j = fk.columnList.iterator();
-				while (j.hasNext()) {
-					if (first) first = false;
-					else from.append(",");
-					Column c0 = (Column) j.next();
-					Column c1 = (Column) fk.mapping.get(c0);
-					from.append(table_name)
-					    .append(".")
-					    .append(c0.sqlname)
-					    .append("=")
-					    .append(fk.sqlname)
-					    .append(".")
-					    .append(c1.sqlname);
-				}
-				from.append (") ");
-			}
-			select.append (from);
-			java.sql.Connection cx = info.openConnection();
-			java.sql.Statement s = cx.createStatement();
-            // System.err.println(select); // DEBUG
-			rs = s.executeQuery(select.toString ());
+			scan = (Scan) tables.next();
+			table = scan.table;
+            plan ();
+            SelectBuilder select = new SelectBuilder (info, table);
+            scan.restrict (select);
+
+            // the local columns to select
+            keyPositions = new int[table.primaryKey.size ()];
+            for (int k = 0; k < keyPositions.length; k++) {
+                keyPositions[k] =
+                    select.addColumn (table.primaryKey.getColumn (k+1));
+            }
+            columnPositions = new int[columns.length];
+            for (int k = 0; k < columns.length; k++) {
+                columnPositions[k] = select.addColumn (columns[k]);
+            }
+
+            // foreign keys referencing a primary key are read from their
+            // local columns; only the others need a join
+            neededPositions = new int[needed.length][];
+            for (int n = 0; n < needed.length; n++) {
+                ForeignKey fk = needed[n];
+                if (fk.referencesPrimaryKey ()) {
+                    PrimaryKey fpk = neededTables[n].primaryKey;
+                    int pos[] = new int[fpk.size ()];
+                    for (int k = 0; k < pos.length; k++) {
+                        Column c = fk.localColumn (fpk.getColumn (k+1));
+                        pos[k] = select.addColumn (c);
+                    }
+                    neededPositions[n] = pos;
+                } else {
+                    neededPositions[n] = select.addJoin (fk);
+                }
+            }
+
+            this.select = select;
+            lastKey = new Object[table.primaryKey.size ()];
+            pageSize = info.getPageSize ();
+            limit = pageSize;
+            sampleStart = null;
+            if (info.getSampling () != DbInfo.SAMPLE_NONE
+             && !select.hasConditions ()) {
+                sample ();
+            }
+            execute (false);
 		}
+
+        /**
+         * Set up the sampling of the current table, whose rows are not
+         * restricted by conditions.
+         * Foreign keys are still read from the sampled rows, so the URIs of
+         * the referenced rows are the same as in a full extraction, whether
+         * or not those rows are in the sample.
+         * @see fr.cnrs.liris.cross.DbInfo.Parameters#sampling
+         */
+        private void sample () throws SQLException {
+            switch (info.getSampling ()) {
+                case DbInfo.SAMPLE_RANDOM_RANGE:
+                    if (rangeStart == null && rangeEnd == null) {
+                        sampleStart = randomKey ();
+                        select.orderByPrimaryKey ();
+                    }
+                    // the first rows following the random start
+                case DbInfo.SAMPLE_FIRST:
+                    pageSize = 0;
+                    limit = info.getSampleSize ();
+                    break;
+                case DbInfo.SAMPLE_BERNOULLI:
+                    select.setSample (info.getSamplePercent ());
+                    break;
+            }
+        }
+
+        /**
+         * Return the primary key of a random row of the current table,
+         * chosen as the first row whose first key column is greater than or
+         * equal to a random value between its minimum and its maximum. Both
+         * are read through the index of the primary key.
+         * @return a primary key, or <code>null</code> if the table is empty
+         *         or the first key column is not numeric
+         */
+        private Object[] randomKey () throws SQLException {
+            if (cx == null) cx = info.openConnection ();
+            PrimaryKey pk = table.primaryKey;
+            String first = "t0." + pk.getColumn (1).sqlname;
+            Object min;
+            Object max;
+            java.sql.Statement stmt = cx.createStatement ();
+            try {
+                ResultSet r = stmt.executeQuery ("SELECT MIN(" + first
+                    + "),MAX(" + first + ") FROM " + table.sqlname + " t0");
+                r.next ();
+                min = r.getObject (1);
+                max = r.getObject (2);
+                r.close ();
+            }
+            finally {
+                stmt.close ();
+            }
+            if (!(min instanceof Number) || !(max instanceof Number)) {
+                info.verbose (2, "no random range for table " + table.name
+                                 + ", sampling its first rows");
+                return null;
+            }
+            double lo = ((Number) min).doubleValue ();
+            double v = lo + random.nextDouble ()
+                            * (((Number) max).doubleValue () - lo);
+            Object start;
+            if (min instanceof java.math.BigDecimal || min instanceof Double
+             || min instanceof Float) {
+                start = new Double (v);
+            } else {
+                start = new Long ((long) v);
+            }
+
+            StringBuffer sql = new StringBuffer ("SELECT ");
+            StringBuffer order = new StringBuffer (" ORDER BY ");
+            for (int k = 0; k < pk.size (); k++) {
+                String c = "t0." + pk.getColumn (k+1).sqlname;
+                sql.append ((k > 0) ? "," : "").append (c);
+                order.append ((k > 0) ? "," : "").append (c);
+            }
+            sql.append (" FROM ").append (table.sqlname).append (" t0 WHERE ")
+               .append (first).append (">=?").append (order);
+            boolean limited = info.dialect.appendLimit (sql, 1);
+            java.sql.PreparedStatement ps = cx.prepareStatement (sql.toString ());
+            try {
+                ps.setObject (1, start);
+                if (!limited) ps.setMaxRows (1);
+                ResultSet r = ps.executeQuery ();
+                Object key[] = null;
+                if (r.next ()) {
+                    key = new Object[pk.size ()];
+                    for (int k = 0; k < key.length; k++) {
+                        key[k] = r.getObject (k+1);
+                    }
+                }
+                r.close ();
+                return key;
+            }
+            finally {
+                ps.close ();
+            }
+        }
+
+        /**
+         * Execute the query of the current table.
+         * @param after whether to read the page following lastKey
+         */
+        private void execute (boolean after) throws SQLException {
+            closeRowSource ();
+            if (cx == null) cx = info.openConnection ();
+            Object start[] = after ? lastKey
+                           : (rangeStart != null) ? rangeStart : sampleStart;
+            boolean lower = start != null;
+            boolean upper = rangeEnd != null;
+            boolean bound = lower || upper || select.hasConditions ();
+            if (info.getBulkExtraction () && !bound && limit == 0
+             && info.getSampling () == DbInfo.SAMPLE_NONE) {
+                rs = info.dialect.bulkExport (cx, select.toString ());
+                if (rs != null) return;
+            }
+            if (pageSize > 0) select.orderByPrimaryKey ();
+            select.setLimit (limit);
+            select.setLowerBound (lower);
+            select.setUpperBound (upper);
+            String sql = select.toString ();
+            keptPercent = (select.getSample () > 0 && !select.isSampled ())
+                        ? select.getSample () : 0;
+            // System.err.println(sql); // DEBUG
+            java.sql.Statement stmt;
+            ResultSet r;
+            if (bound) {
+                java.sql.PreparedStatement ps = info.dialect
+                    .prepareStreamingStatement (cx, sql, info.getFetchSize ());
+                try {
+                    int first = select.bindConditions (ps) + 1;
+                    int n = lastKey.length;
+                    int params[] = select.getParameters ();
+                    for (int k = 0; k < params.length; k++) {
+                        ps.setObject (first + k,
+                                      (params[k] < n) ? start[params[k]]
+                                                      : rangeEnd[params[k]-n]);
+                    }
+                    if (limit > 0 && !select.isLimited ()) {
+                        ps.setMaxRows (limit);
+                    }
+                    r = ps.executeQuery ();
+                }
+                catch (SQLException ex) {
+                    ps.close ();
+                    throw ex;
+                }
+                catch (RuntimeException ex) {
+                    ps.close ();
+                    throw ex;
+                }
+                stmt = ps;
+            } else {
+                stmt = info.dialect
+                    .createStreamingStatement (cx, info.getFetchSize ());
+                if (limit > 0 && !select.isLimited ()) stmt.setMaxRows (limit);
+                r = stmt.executeQuery (sql);
+            }
+            rs = new JdbcRowSource (stmt, r);
+            pageRows = 0;
+        }
+
+        /**
+         * Move to the next row of the current table, fetching the next page
+         * if needed, and skipping the rows left out of a Bernoulli sample
+         * when the database could not sample them.
+         * @return <code>false</code> if there are no more rows
+         */
+        private boolean nextRow () throws SQLException {
+            boolean paged = pageSize > 0 && rs instanceof JdbcRowSource;
+            while (rs.next ()) {
+                if (paged) {
+                    pageRows += 1;
+                    for (int k = 0; k < lastKey.length; k++) {
+                        lastKey[k] = rs.getObject (keyPositions[k]);
+                    }
+                }
+                if (keptPercent > 0
+                 && 100 * random.nextDouble () >= keptPercent) {
+                    continue;
+                }
+                return true;
+            }
+            if (paged && pageRows == pageSize) {
+                execute (true);
+                return nextRow ();
+            }
+            return false;
+        }
+
+        private void closeRowSource () throws SQLException {
+            if (rs != null) rs.close ();
+            rs = null;
+        }
+
+        /**
+         * Release the database resources used by this iterator.
+         * This is done automatically when the iterator is exhausted.
+         */
+        public void close () {
+            try {
+                closeRowSource ();
+                if (cx != null) {
+                    java.sql.Connection c = cx;
+                    cx = null;
+                    try {
+                        info.dialect.endStreaming (c);
+                    }
+                    finally {
+                        info.releaseConnection (c);
+                    }
+                }
+            }
+            catch (SQLException ex) {
+                throw new RuntimeException (ex);
+            }
+        }
 		
 		private void fillTriples () throws SQLException {
             LinkedList list = new LinkedList ();
             
 			// rule 1
-            Iterator col_it =
-            new TransformIterator(table.primaryKey.columnList.iterator()) {
-                public Object transform (Object o) {
-                    return ((Column)o).name;
-                }
-            };
-			Node s = Node.createURI(info.uri(rs, col_it, table));
-            Node table_node = Node.createURI(table.uri);
-            list.add (new Triple (s, RDF.type.asNode(), table_node));
+			Node s = Node.createURI(info.uri(values (keyPositions), table));
+            if (types) {
+                list.add (new Triple (s, RDF.type.asNode(), typeNode));
+            }
             
             // rule 2
-			Iterator i = table.columnList.iterator();
-			while (i.hasNext()) {
-				Column c = (Column) i.next();
-				String value = rs.getString (c.name);
+			for (int i = 0; i < columns.length; i++) {
+				ColumnReader reader = columns[i].reader;
+				String value = rs.getLiteral (columnPositions[i], reader);
                 if (value == null) continue;
-				Node p = Node.createURI(c.uri);
-				Node o = Node.createLiteral(value,
-				                            null,
-				                            Datatypes.xsdType(c.type));
-                list.add (new Triple (s, p, o));
+				Node o = Node.createLiteral(value, null, reader.type);
+                list.add (new Triple (s, columnNodes[i], o));
 			}
+
+            // the rows referenced by the foreign keys, once for rules 3 and 4
+            for (int n = 0; n < needed.length; n++) {
+                String uri = info.uri (values (neededPositions[n]),
+                                       neededTables[n]);
+                fkNodes[n] = (uri == null) ? null : Node.createURI (uri);
+            }
             
-            // rule 3
-            i = table.foreignKeys.values().iterator();
-            while (i.hasNext()) {
-                ForeignKey fk = (ForeignKey) i.next();
-                Node o = nodeForFK (fk);
+            // rule 3 (3a, or 3b with owl:sameAs)
+            for (int i = 0; i < links.length; i++) {
+                Node o = fkNodes[linkIndexes[i]];
                 if (o == null) continue;
-                
-                if (!fk.subsumesPrimaryKey()) {
-                    // rule 3a
-                    Node p = Node.createURI(fk.uri);
-                    list.add (new Triple (s, p, o));
-                } else {
-                    // rule 3b
-                    list.add (new Triple (s, OWL.sameAs.asNode(), o));
-                }
+                list.add (new Triple (s, linkNodes[i], o));
             }
             
             // rule 4
-            i = table.fkPairs.iterator();
-            while (i.hasNext ()) {
-                final ForeignKey[] pair = (ForeignKey[]) i.next();
-                Node p = Node.createURI (info.uri (pair[0], pair[1], table));
-                Node s0 = nodeForFK (pair[0]);
-                Node o = nodeForFK (pair[1]);
+            for (int i = 0; i < pairs.length; i++) {
+                Node s0 = fkNodes[pairIndexes[i][0]];
+                Node o = fkNodes[pairIndexes[i][1]];
                 if (s0 == null || o == null) continue;
-                list.add (new Triple (s0, p, o));
+                list.add (new Triple (s0, pairs[i].node, o));
             }
             
             triples = list.iterator();
 		}
-        
-        private Node nodeForFK (final ForeignKey fk) {
-            Table ft = fk.foreignColumnSet().table();
-            Iterator fk_it =
-            new TransformIterator(ft.primaryKey.columnList.iterator()) {
-                public Object transform (Object o) {
-                    return fk.name+"_"+((Column)o).name;
-                }
-            };
-            String uri = info.uri (rs, fk_it, ft);
-            if (uri == null) return null;
-            else return Node.createURI(uri);
+
+        /**
+         * Return the values of the given columns in the current row.
+         * @param positions the positions of the columns
+         * @return the values
+         */
+        private String[] values (int[] positions) throws SQLException {
+            String r[] = new String[positions.length];
+            for (int k = 0; k < r.length; k++) {
+                r[k] = rs.getString (positions[k]);
+            }
+            return r;
         }
 		
 		public boolean hasNext () {
@@ -255,8 +970,7 @@ public class ABoxGraph extends GraphBase implements Graph {
 		
 		public Object next () {
 			Object r = triples.next ();
-			try { findNext (); }
-			catch (SQLException ex) { throw new RuntimeException(ex); }
+			advance ();
 			return r;
 		}
 		
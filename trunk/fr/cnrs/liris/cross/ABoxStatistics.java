@@ -0,0 +1,199 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.vocabulary.OWL;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+/**
+ * @author agent
+ *
+ * <p>The statistics of an ABoxGraph, derived from the number of rows of the
+ * tables and from the TBox.</p>
+ * <p>Each row produces one rdf:type triple, at most one triple per column
+ * and foreign key, since those properties are functional, and one
+ * owl:sameAs triple per foreign key subsuming the primary key. Hence the
+ * number of triples of a predicate is the number of rows of its table,
+ * and a concrete subject, or a concrete object of an inverse functional
+ * property, matches at most one triple per property, except for the
+ * properties of foreign key pairs (rule 4): the subject of those is the
+ * row referenced by each row of the link table. These are upper bounds,
+ * since NULL values produce no triple.</p>
+ *
+ * @see fr.cnrs.liris.cross.RowCounts
+ */
+class ABoxStatistics implements Statistics {
+
+    private final DbInfo info;
+    /**
+     * The URIs of the properties the graph is restricted to, or
+     * <code>null</code>.
+     */
+    private final Collection properties;
+
+    /**
+     * @param info the description of the database
+     * @param properties the URIs of the properties the graph is restricted
+     *                   to, or <code>null</code>
+     */
+    ABoxStatistics (DbInfo info, Collection properties) {
+        this.info = info;
+        this.properties = properties;
+    }
+
+    public long getStatistic (Node s, Node p, Node o) {
+        if (s.isLiteral () || s.isBlank ()) return 0;
+        Schema schema = info.getSchema ();
+        if (p.isURI ()) {
+            if (properties != null && !properties.contains (p.getURI ())) {
+                return 0;
+            }
+            return predicate (schema, s, p.getURI (), o);
+        }
+        if (p.isConcrete ()) return 0;
+
+        long r = 0;
+        if (properties != null) {
+            Iterator i = properties.iterator ();
+            while (i.hasNext ()) {
+                long n = predicate (schema, s, (String) i.next (), o);
+                if (n == UNKNOWN) return UNKNOWN;
+                r += n;
+            }
+            return r;
+        }
+        HashMap pairs = null;
+        if (s.isConcrete ()) {
+            pairs = pairTriples (schema);
+            if (pairs == null) return UNKNOWN;
+        }
+        Iterator i = schema.tables.values ().iterator ();
+        while (i.hasNext ()) {
+            Table table = (Table) i.next ();
+            // rdf:type, columns and foreign keys (including owl:sameAs)
+            long width = 1 + table.foreignKeys.size ();
+            Iterator j = table.columnList.iterator ();
+            while (j.hasNext ()) {
+                if (!((Column) j.next ()).rowId) width += 1;
+            }
+            if (s.isConcrete ()) {
+                Long n = (Long) pairs.get (table);
+                if (n != null) width += n.longValue ();
+                r = Math.max (r, width);
+                continue;
+            }
+            long rows = info.rowCounts.get (table);
+            if (rows == UNKNOWN) return UNKNOWN;
+            r += rows * (width + table.fkPairs.size ());
+        }
+        return r;
+    }
+
+    /* (non javadoc)
+     * Return a map whose keys are tables and values are the maximum numbers
+     * of rule 4 triples whose subject is one of their rows (as Longs): for
+     * each foreign key pair whose first key references the table, one per
+     * row of the link table, or one if that key is unique. Return null if
+     * a number of rows is unknown.
+     */
+    private HashMap pairTriples (Schema schema) {
+        HashMap r = new HashMap ();
+        Iterator i = schema.tables.values ().iterator ();
+        while (i.hasNext ()) {
+            Table link = (Table) i.next ();
+            Iterator j = link.fkPairs.iterator ();
+            while (j.hasNext ()) {
+                ForeignKey first = ((ForeignKeyPair) j.next ()).first;
+                long n = 1;
+                if (!first.unique) {
+                    n = info.rowCounts.get (link);
+                    if (n == UNKNOWN) return null;
+                }
+                Table table = first.foreignColumnSet ().table ();
+                Long old = (Long) r.get (table);
+                if (old != null) n += old.longValue ();
+                r.put (table, new Long (n));
+            }
+        }
+        return r;
+    }
+
+    /* (non javadoc)
+     * Return the estimation for a pattern whose predicate is the given URI.
+     */
+    private long predicate (Schema schema, Node s, String uri, Node o) {
+        if (uri.equals (RDF.type.getURI ())) {
+            long r;
+            if (o.isURI ()) {
+                Schema.Term term = schema.getTerm (o.getURI ());
+                if (term == null || term.role != Schema.Term.TABLE) return 0;
+                r = info.rowCounts.get (term.table);
+            } else if (o.isConcrete ()) {
+                return 0;
+            } else {
+                r = 0;
+                Iterator i = schema.tables.values ().iterator ();
+                while (i.hasNext ()) {
+                    long n = info.rowCounts.get ((Table) i.next ());
+                    if (n == UNKNOWN) return UNKNOWN;
+                    r += n;
+                }
+            }
+            return s.isConcrete () ? Math.min (r, 1) : r;
+        }
+        if (uri.equals (OWL.sameAs.getURI ())) {
+            long r = 0;
+            long fks = 0;
+            Iterator i = schema.tables.values ().iterator ();
+            while (i.hasNext ()) {
+                Table table = (Table) i.next ();
+                long n = 0;
+                Iterator j = table.foreignKeys.values ().iterator ();
+                while (j.hasNext ()) {
+                    if (((ForeignKey) j.next ()).subsumesPrimaryKey ()) n += 1;
+                }
+                if (n == 0) continue;
+                long rows = info.rowCounts.get (table);
+                if (rows == UNKNOWN) return UNKNOWN;
+                r += n * rows;
+                fks = Math.max (fks, n);
+            }
+            return (s.isConcrete () || o.isConcrete ()) ? Math.min (r, fks)
+                                                        : r;
+        }
+
+        Schema.Term term = schema.getTerm (uri);
+        if (term == null) return 0;
+        long r = info.rowCounts.get (term.table);
+        if (r == UNKNOWN) return UNKNOWN;
+        boolean single = s.isConcrete ();
+        switch (term.role) {
+            case Schema.Term.COLUMN:
+                Column column = (Column) term.object;
+                if (o.isURI () || o.isBlank ()) return 0;
+                single |= o.isConcrete () && column.unique;
+                break;
+            case Schema.Term.FOREIGN_KEY:
+                ForeignKey fk = (ForeignKey) term.object;
+                if (fk.subsumesPrimaryKey () || o.isLiteral ()) return 0;
+                single |= o.isConcrete () && fk.unique;
+                break;
+            case Schema.Term.FOREIGN_KEY_PAIR:
+                ForeignKeyPair pair = (ForeignKeyPair) term.object;
+                if (o.isLiteral ()) return 0;
+                single = (s.isConcrete () && pair.first.unique)
+                      || (o.isConcrete () && pair.second.unique);
+                break;
+            default:
+                return 0;
+        }
+        return single ? Math.min (r, 1) : r;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import com.hp.hpl.jena.datatypes.TypeMapper;
+import com.hp.hpl.jena.graph.Factory;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.AnonId;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+
+/**
+ * @author agent
+ *
+ * <p>A reader for the binary serialization produced by BinaryRdfWriter.</p>
+ * <p>Triples can be read one at a time with readTriple, or all at once into
+ * a Jena Graph.</p>
+ *
+ * @see fr.cnrs.liris.cross.BinaryRdfWriter
+ */
+public class BinaryRdfReader {
+
+    private final DataInputStream in;
+    private final ArrayList prefixes = new ArrayList ();
+    private final ArrayList terms = new ArrayList ();
+    private Node lastSubject = null;
+    private boolean ended = false;
+
+    /**
+     * @param in the stream to read from
+     * @throws IOException if the stream does not start with the expected
+     *         magic number
+     */
+    public BinaryRdfReader (InputStream in) throws IOException {
+        this.in = new DataInputStream (new BufferedInputStream (in, 1 << 16));
+        byte magic[] = new byte[BinaryRdfWriter.MAGIC.length];
+        this.in.readFully (magic);
+        for (int i = 0; i < magic.length; i++) {
+            if (magic[i] != BinaryRdfWriter.MAGIC[i]) {
+                throw new IOException ("Not a Cross binary RDF stream");
+            }
+        }
+        prefixes.add ("");
+    }
+
+    /**
+     * Read the next triple.
+     * @return the next triple, or <code>null</code> at the end of the stream
+     * @throws IOException
+     */
+    public Triple readTriple () throws IOException {
+        while (!ended) {
+            int tag = in.read ();
+            switch (tag) {
+                case BinaryRdfWriter.PREFIX:
+                    prefixes.add (readString ());
+                    break;
+                case BinaryRdfWriter.TERM:
+                    terms.add (Node.createURI (readUri ()));
+                    break;
+                case BinaryRdfWriter.TRIPLE:
+                    Node s = readNode ();
+                    Node p = readNode ();
+                    Node o = readNode ();
+                    lastSubject = s;
+                    return new Triple (s, p, o);
+                case BinaryRdfWriter.END:
+                    ended = true;
+                    break;
+                case -1:
+                    throw new EOFException ("Unexpected end of stream");
+                default:
+                    throw new IOException ("Invalid record tag " + tag);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read all the remaining triples into the given graph.
+     * @param g a graph
+     * @return g
+     * @throws IOException
+     */
+    public Graph read (Graph g) throws IOException {
+        Triple t;
+        while ((t = readTriple ()) != null) g.add (t);
+        return g;
+    }
+
+    /**
+     * Read a whole binary RDF stream into a new in-memory graph.
+     * @param in a binary RDF stream
+     * @return the graph
+     * @throws IOException
+     */
+    public static Graph readGraph (InputStream in) throws IOException {
+        return new BinaryRdfReader (in).read (Factory.createDefaultGraph ());
+    }
+
+    private Node readNode () throws IOException {
+        int code = readVarint ();
+        switch (code) {
+            case BinaryRdfWriter.URI:
+                return Node.createURI (readUri ());
+            case BinaryRdfWriter.BLANK:
+                return Node.createAnon (new AnonId (readString ()));
+            case BinaryRdfWriter.LITERAL:
+                String lex = readString ();
+                int dt = readVarint ();
+                String lang = readString ();
+                return Node.createLiteral (
+                    lex,
+                    lang.length () == 0 ? null : lang,
+                    dt == 0 ? null : TypeMapper.getInstance ()
+                        .getSafeTypeByName (term (dt - 1).getURI ()));
+            case BinaryRdfWriter.TYPED_LITERAL:
+                lex = readString ();
+                return Node.createLiteral (lex, null, TypeMapper.getInstance ()
+                                              .getSafeTypeByName (readUri ()));
+            case BinaryRdfWriter.SAME_SUBJECT:
+                if (lastSubject == null) {
+                    throw new IOException ("No previous subject");
+                }
+                return lastSubject;
+            default:
+                return term (code - BinaryRdfWriter.FIRST_TERM);
+        }
+    }
+
+    private Node term (int id) throws IOException {
+        if (id < 0 || id >= terms.size ()) {
+            throw new IOException ("Undefined term " + id);
+        }
+        return (Node) terms.get (id);
+    }
+
+    private String readUri () throws IOException {
+        int pr = readVarint ();
+        if (pr < 0 || pr >= prefixes.size ()) {
+            throw new IOException ("Undefined prefix " + pr);
+        }
+        return (String) prefixes.get (pr) + readString ();
+    }
+
+    private int readVarint () throws IOException {
+        int r = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte ();
+            r |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return r;
+    }
+
+    private String readString () throws IOException {
+        byte b[] = new byte[readVarint ()];
+        in.readFully (b);
+        return new String (b, "UTF-8");
+    }
+
+    /**
+     * Convert a binary RDF stream read on standard input into the given Jena
+     * syntax (default N-TRIPLE) on standard output.
+     * @param args the optional syntax
+     * @throws IOException
+     */
+    public static void main (String[] args) throws IOException {
+        String syntax = (args.length > 0) ? args[0] : "N-TRIPLE";
+        Model m = ModelFactory.createModelForGraph (readGraph (System.in));
+        m.write (System.out, syntax);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+
+import com.hp.hpl.jena.datatypes.TypeMapper;
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.Factory;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.AnonId;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+/**
+ * @author agent
+ *
+ * Round-trip tests of BinaryRdfWriter and BinaryRdfReader: a graph written
+ * in the binary format and read back must be isomorphic to the same graph
+ * written in N-Triples and read back by Jena.
+ */
+public class BinaryRdfTest extends TestCase {
+
+    private static final String NS = "http://example.org/test#";
+
+    public void testRoundTrip () throws Exception {
+        Graph g = Factory.createDefaultGraph ();
+        Node a = Node.createURI (NS + "a");
+        Node b = Node.createURI ("http://example.org/other/b");
+        Node blank = Node.createAnon (new AnonId ("x1"));
+        Node p = Node.createURI (NS + "p");
+        Node q = Node.createURI (NS + "q");
+        g.add (new Triple (a, RDF.type.asNode (), Node.createURI (NS + "C")));
+        g.add (new Triple (a, p, Node.createLiteral ("42", null,
+                                                     XSDDatatype.XSDinteger)));
+        g.add (new Triple (a, p, Node.createLiteral ("chat", "fr", null)));
+        g.add (new Triple (a, q, Node.createLiteral ("plain", null, null)));
+        g.add (new Triple (a, q, Node.createLiteral (
+            "caf\u00e9 \"quoted\"\n\ud83d\ude00", "en-GB", null)));
+        g.add (new Triple (a, q, b));
+        g.add (new Triple (b, p, blank));
+        g.add (new Triple (blank, q, Node.createLiteral ("", null,
+                                                  XSDDatatype.XSDstring)));
+        g.add (new Triple (blank, RDF.type.asNode (), b));
+        g.add (new Triple (Node.createURI ("urn:no-namespace"), p, a));
+        check (g);
+    }
+
+    public void testDictionaryOverflow () throws Exception {
+        // more predicates, datatypes and namespaces than the dictionaries
+        // can hold
+        Graph g = Factory.createDefaultGraph ();
+        Node s = Node.createURI (NS + "s");
+        int n = BinaryRdfWriter.MAX_ENTRIES + 10;
+        for (int i = 0; i < n; i++) {
+            Node p = Node.createURI ("http://example.org/p" + i + "#p");
+            Node o = Node.createURI ("http://example.org/o" + i + "/o");
+            g.add (new Triple (s, p, o));
+        }
+        for (int i = 0; i < 10; i++) {
+            Node p = Node.createURI ("http://example.org/q" + i + "#q");
+            Node dt = Node.createURI ("http://example.org/dt" + i + "#t");
+            g.add (new Triple (s, p, Node.createLiteral ("v" + i, null,
+                TypeMapper.getInstance ().getSafeTypeByName (dt.getURI ()))));
+            g.add (new Triple (s, RDF.type.asNode (),
+                               Node.createURI ("http://example.org/c" + i + "#C")));
+            g.add (new Triple (s, RDF.type.asNode (),
+                               Node.createLiteral ("1", null,
+                                                   XSDDatatype.XSDinteger)));
+        }
+        check (g);
+    }
+
+    /* (non javadoc)
+     * Check that g survives a round trip through the binary format, and that
+     * the result is the graph read back from its N-Triples serialization.
+     */
+    private static void check (Graph g) throws Exception {
+        ByteArrayOutputStream binary = new ByteArrayOutputStream ();
+        write (g, new BinaryRdfWriter (binary));
+        Graph fromBinary = BinaryRdfReader.readGraph (
+            new ByteArrayInputStream (binary.toByteArray ()));
+
+        ByteArrayOutputStream text = new ByteArrayOutputStream ();
+        write (g, new NTriplesWriter (text));
+        Model fromText = ModelFactory.createDefaultModel ();
+        fromText.read (new ByteArrayInputStream (text.toByteArray ()), "",
+                       "N-TRIPLE");
+
+        assertEquals (g.size (), fromBinary.size ());
+        assertTrue (fromBinary.isIsomorphicWith (g));
+        assertTrue (fromBinary.isIsomorphicWith (fromText.getGraph ()));
+    }
+
+    private static void write (Graph g, TripleWriter w) throws Exception {
+        Iterator i = g.find (Node.ANY, Node.ANY, Node.ANY);
+        while (i.hasNext ()) w.write ((Triple) i.next ());
+        w.close ();
+    }
+}
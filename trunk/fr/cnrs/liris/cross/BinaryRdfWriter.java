@@ -0,0 +1,225 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+/**
+ * @author agent
+ *
+ * <p>A TripleWriter producing a compact binary serialization of RDF.</p>
+ * <p>The stream starts with the four bytes <code>CRB1</code>, followed by
+ * records, each starting with a tag byte:
+ * <table>
+ * <tr><td>PREFIX</td><td><em>string</em></td>
+ *     <td>defines the next prefix id (ids start at 1, 0 being the empty
+ *         prefix)</td></tr>
+ * <tr><td>TERM</td><td><em>prefix id</em> <em>string</em></td>
+ *     <td>defines the next term id (starting at 0) as a URI</td></tr>
+ * <tr><td>TRIPLE</td><td><em>node</em> <em>node</em> <em>node</em></td>
+ *     <td>a triple</td></tr>
+ * <tr><td>END</td><td></td><td>the end of the stream</td></tr>
+ * </table>
+ * Integers are unsigned varints (7 bits per byte, low bits first), strings
+ * are a varint byte length followed by the UTF-8 bytes. A node starts with
+ * a varint code:
+ * <table>
+ * <tr><td>0</td><td>a URI: <em>prefix id</em> <em>string</em></td></tr>
+ * <tr><td>1</td><td>a blank node: <em>string</em></td></tr>
+ * <tr><td>2</td><td>a literal: <em>string</em> <em>datatype</em>
+ *                   <em>string</em>, where datatype is 0 or a term id + 1,
+ *                   and the last string is the language (possibly
+ *                   empty)</td></tr>
+ * <tr><td>3</td><td>the subject of the previous triple</td></tr>
+ * <tr><td>4</td><td>a typed literal whose datatype is not in the term
+ *                   dictionary: <em>string</em> <em>prefix id</em>
+ *                   <em>string</em>, the last two giving the datatype URI
+ *                   </td></tr>
+ * <tr><td><em>n</em> &gt; 4</td><td>the term with id <em>n</em>-5</td></tr>
+ * </table></p>
+ * <p>Predicates, rdf:type objects and datatypes are put in the term
+ * dictionary; other URIs are written inline, with their namespace in the
+ * prefix dictionary. Both dictionaries are bounded, so the memory used does
+ * not depend on the size of the graph: once the term dictionary is full,
+ * new terms are written inline, and once the prefix dictionary is full,
+ * new URIs are written with the empty prefix.</p>
+ *
+ * @see fr.cnrs.liris.cross.BinaryRdfReader
+ */
+public class BinaryRdfWriter implements TripleWriter {
+
+    static final byte[] MAGIC = { 'C', 'R', 'B', '1' };
+
+    static final int PREFIX = 1;
+    static final int TERM = 2;
+    static final int TRIPLE = 3;
+    static final int END = 0;
+
+    static final int URI = 0;
+    static final int BLANK = 1;
+    static final int LITERAL = 2;
+    static final int SAME_SUBJECT = 3;
+    static final int TYPED_LITERAL = 4;
+    static final int FIRST_TERM = 5;
+
+    /**
+     * The maximum number of entries of each dictionary.
+     */
+    static final int MAX_ENTRIES = 1 << 16;
+
+    private final DataOutputStream out;
+    private final HashMap prefixes = new HashMap ();
+    private final HashMap terms = new HashMap ();
+    private Node lastSubject = null;
+
+    /**
+     * @param out the stream to write to
+     * @throws IOException
+     */
+    public BinaryRdfWriter (OutputStream out) throws IOException {
+        this.out = new DataOutputStream (new BufferedOutputStream (out, 1 << 16));
+        this.out.write (MAGIC);
+    }
+
+    public void write (Triple t) throws IOException {
+        Node s = t.getSubject ();
+        Node p = t.getPredicate ();
+        Node o = t.getObject ();
+        // dictionary entries must be defined before the triple record
+        int pt = term (p);
+        int ot = -1;
+        if (o.isURI () && RDF.type.getURI ().equals (p.getURI ())) {
+            ot = term (o);
+        }
+        int dt = -1;
+        String datatype = o.isLiteral () ? o.getLiteral ().getDatatypeURI ()
+                                         : null;
+        if (datatype != null) {
+            dt = term (Node.createURI (datatype));
+        }
+        boolean same = s.equals (lastSubject);
+        int sp = (s.isURI () && !same) ? prefix (s.getURI ()) : -1;
+        int pp = (pt < 0) ? prefix (p.getURI ()) : -1;
+        int op = -1;
+        if (o.isURI () && ot < 0) {
+            op = prefix (o.getURI ());
+        } else if (datatype != null && dt < 0) {
+            // the datatype is written inline, with this prefix
+            op = prefix (datatype);
+        }
+
+        out.write (TRIPLE);
+        if (same) {
+            writeVarint (SAME_SUBJECT);
+        } else {
+            writeNode (s, -1, sp, -1);
+        }
+        writeNode (p, pt, pp, -1);
+        writeNode (o, ot, op, dt);
+        lastSubject = s;
+    }
+
+    public void close () throws IOException {
+        out.write (END);
+        out.close ();
+    }
+
+    /* (non javadoc)
+     * Write node n, either as the term id t, or inline with prefix id pr or
+     * datatype id dt; if dt is -1 for a typed literal, its datatype is
+     * written inline with prefix id pr.
+     */
+    private void writeNode (Node n, int t, int pr, int dt) throws IOException {
+        if (t >= 0) {
+            writeVarint (FIRST_TERM + t);
+        } else if (n.isURI ()) {
+            writeVarint (URI);
+            String uri = n.getURI ();
+            writeVarint (pr);
+            writeString (pr == 0 ? uri : uri.substring (prefixLength (uri)));
+        } else if (n.isBlank ()) {
+            writeVarint (BLANK);
+            writeString (n.getBlankNodeId ().toString ());
+        } else if (n.isLiteral () && dt < 0
+                   && n.getLiteral ().getDatatypeURI () != null) {
+            writeVarint (TYPED_LITERAL);
+            writeString (n.getLiteral ().getLexicalForm ());
+            String uri = n.getLiteral ().getDatatypeURI ();
+            writeVarint (pr);
+            writeString (pr == 0 ? uri : uri.substring (prefixLength (uri)));
+        } else if (n.isLiteral ()) {
+            writeVarint (LITERAL);
+            writeString (n.getLiteral ().getLexicalForm ());
+            writeVarint (dt + 1);
+            String lang = n.getLiteral ().language ();
+            writeString (lang == null ? "" : lang);
+        } else {
+            throw new IllegalArgumentException ("Can not write node " + n);
+        }
+    }
+
+    /* (non javadoc)
+     * Return the term id of the given URI node, defining it if needed, or -1
+     * if the dictionary is full.
+     */
+    private int term (Node n) throws IOException {
+        Integer id = (Integer) terms.get (n.getURI ());
+        if (id != null) return id.intValue ();
+        if (terms.size () >= MAX_ENTRIES) return -1;
+        String uri = n.getURI ();
+        int pr = prefix (uri);
+        out.write (TERM);
+        writeVarint (pr);
+        writeString (pr == 0 ? uri : uri.substring (prefixLength (uri)));
+        id = new Integer (terms.size ());
+        terms.put (uri, id);
+        return id.intValue ();
+    }
+
+    /* (non javadoc)
+     * Return the prefix id of the given URI, defining it if needed, or 0
+     * (the empty prefix) if the dictionary is full.
+     */
+    private int prefix (String uri) throws IOException {
+        int len = prefixLength (uri);
+        if (len == 0) return 0;
+        String ns = uri.substring (0, len);
+        Integer id = (Integer) prefixes.get (ns);
+        if (id != null) return id.intValue ();
+        if (prefixes.size () >= MAX_ENTRIES) return 0;
+        out.write (PREFIX);
+        writeString (ns);
+        id = new Integer (prefixes.size () + 1);
+        prefixes.put (ns, id);
+        return id.intValue ();
+    }
+
+    private static int prefixLength (String uri) {
+        int i = Math.max (uri.lastIndexOf ('#'), uri.lastIndexOf ('/'));
+        return i + 1;
+    }
+
+    private void writeVarint (int v) throws IOException {
+        while ((v & ~0x7f) != 0) {
+            out.write ((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out.write (v);
+    }
+
+    private void writeString (String s) throws IOException {
+        byte b[] = s.getBytes ("UTF-8");
+        writeVarint (b.length);
+        out.write (b);
+    }
+}
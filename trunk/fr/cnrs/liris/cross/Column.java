@@ -35,29 +35,44 @@ class Column {
 	final int type;
     /**
      * Whether this column allows NULL value.
-     * Note: this is set by DbInfo constructor, <em>not</em> by the
-     * Column constructor.
      */
-	boolean canBeNull = true;
+	final boolean canBeNull;
     /**
      * Whether this column's value has to be unique for each row.
-     * Note: this is set by DbInfo constructor, <em>not</em> by the
-     * Column constructor.
      */
-	boolean unique = false;
+	final boolean unique;
+    /**
+     * The reader of the values of this column as literals.
+     */
+    final ColumnReader reader;
+    /**
+     * Whether this is the row id pseudo column of the dialect, which
+     * identifies the rows of a table without a primary key, but is not
+     * described as a property.
+     * @see fr.cnrs.liris.cross.Dialect#rowIdColumn()
+     */
+    final boolean rowId;
 	
     /**
      * @param table the table containing the column
      * @param name the name of the column
      * @param type the JDBC code for the column's datatype
+     * @param canBeNull whether the column allows NULL value
+     * @param unique whether the column's value is unique for each row
+     * @param rowId whether this is the row id pseudo column of the dialect
      */
-	Column (Table table, String name, int type)
+	Column (Table table, String name, int type, boolean canBeNull,
+	        boolean unique, boolean rowId)
 	{
 		this.table = table;
 		this.name = name ;
 		this.type = type ;
+		this.canBeNull = canBeNull;
+		this.unique = unique;
+        this.reader = ColumnReader.forType (table.info, type);
+        this.rowId = rowId;
         DbInfo info = table.info;
         this.uri = info.uri (this);
-        this.sqlname = info.quote + name + info.quote;
+        this.sqlname = info.quote (name);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,581 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+
+/**
+ * @author agent
+ *
+ * <p>The way to read the values of a column as literals, chosen once per
+ * column according to its SQL datatype.</p>
+ * <p>A reader gets values from a JDBC result set with the getter matching
+ * their type (getLong, getBigDecimal, getDate...) rather than getString,
+ * so that their lexical form does not depend on the formatting of the
+ * driver, and produces the canonical lexical form of their XML Schema
+ * datatype. Values in text form (e.g. from a PostgreSQL COPY) are
+ * normalized to the same lexical form. Times and timestamps are the
+ * exception: they are read as text and normalized likewise, since the
+ * java.sql types would lose their time zone or fractional seconds.</p>
+ * <p>Readers have no state, so that a single instance per datatype is
+ * shared by all the columns and all the threads.</p>
+ * <p>Large objects (BLOB, CLOB, LONGVARBINARY and LONGVARCHAR) are read in
+ * chunks from getBinaryStream or getCharacterStream and encoded as they are
+ * read, and never beyond the maximum size set in the parameters: larger
+ * values are skipped or truncated. Hence the memory used per row is bounded,
+ * however large the objects in the database.</p>
+ *
+ * @see fr.cnrs.liris.cross.Column#reader
+ * @see fr.cnrs.liris.cross.RowSource#getLiteral(int, ColumnReader)
+ */
+abstract class ColumnReader {
+
+    /**
+     * The XML Schema datatype of the literals, or <code>null</code> for
+     * plain literals.
+     */
+    final XSDDatatype type;
+
+    private ColumnReader (XSDDatatype type) {
+        this.type = type;
+    }
+
+    /**
+     * Return the lexical form of the given column of the current row.
+     * @param rs a result set
+     * @param column the position of the column
+     * @return the lexical form, or <code>null</code> if the value is NULL
+     *         (or has no lexical form in the datatype)
+     * @throws SQLException
+     */
+    abstract String read (ResultSet rs, int column) throws SQLException;
+
+    /**
+     * Return the lexical form corresponding to the given text, as produced
+     * by the database for a value of that column.
+     * @param text the value of the column as text (not <code>null</code>)
+     * @return the lexical form, or <code>null</code> if the value has no
+     *         lexical form in the datatype
+     */
+    String fromText (String text) {
+        return text;
+    }
+
+    /**
+     * Return the reader for columns of the given SQL datatype.
+     * @param info the DbInfo the columns belong to
+     * @param sqlDataType the JDBC code of an SQL datatype
+     * @return the corresponding reader
+     */
+    static ColumnReader forType (DbInfo info, int sqlDataType) {
+        XSDDatatype type = Datatypes.xsdType (sqlDataType);
+        switch (sqlDataType) {
+            case Types.BIGINT:
+            case Types.INTEGER:
+            case Types.SMALLINT:
+            case Types.TINYINT:
+                return (type == XSDDatatype.XSDinteger) ? INTEGER : SHORT;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+            case Types.REAL:
+                return DECIMAL;
+            case Types.DOUBLE:
+                return DOUBLE;
+            case Types.FLOAT:
+                return FLOAT;
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return BOOLEAN;
+            case Types.TIMESTAMP:
+                return TIMESTAMP;
+            case Types.DATE:
+                return DATE;
+            case Types.TIME:
+                return TIME;
+            case Types.BINARY:
+            case Types.VARBINARY:
+                return info.getBase64Binary () ? BASE64_BINARY : HEX_BINARY;
+            case Types.BLOB:
+            case Types.LONGVARBINARY:
+                return new BinaryLob (info);
+            case Types.CLOB:
+            case Types.LONGVARCHAR:
+                return new CharacterLob (info);
+            case Types.CHAR:
+            case Types.VARCHAR:
+                return STRING;
+        }
+        return (type == null) ? PLAIN : new Text (type);
+    }
+
+    /* (non javadoc)
+     * Integers, read with getLong.
+     */
+    private static class Integral extends ColumnReader {
+        Integral (XSDDatatype type) { super (type); }
+
+        String read (ResultSet rs, int column) throws SQLException {
+            long v = rs.getLong (column);
+            return rs.wasNull () ? null : Long.toString (v);
+        }
+
+        String fromText (String text) {
+            if (text.length () > 1 && text.charAt (0) == '+') {
+                return text.substring (1);
+            }
+            return text;
+        }
+    }
+
+    /* (non javadoc)
+     * Values read with getString, and whose text is used as is.
+     */
+    private static class Text extends ColumnReader {
+        Text (XSDDatatype type) { super (type); }
+
+        String read (ResultSet rs, int column) throws SQLException {
+            return rs.getString (column);
+        }
+    }
+
+    private static final ColumnReader INTEGER =
+        new Integral (XSDDatatype.XSDinteger);
+
+    private static final ColumnReader SHORT =
+        new Integral (XSDDatatype.XSDshort);
+
+    private static final ColumnReader STRING = new Text (XSDDatatype.XSDstring);
+
+    private static final ColumnReader PLAIN = new Text (null);
+
+    private static final ColumnReader DECIMAL =
+        new ColumnReader (XSDDatatype.XSDdecimal) {
+            String read (ResultSet rs, int column) throws SQLException {
+                BigDecimal v = rs.getBigDecimal (column);
+                return (v == null) ? null : decimal (v);
+            }
+
+            String fromText (String text) {
+                try {
+                    return decimal (new BigDecimal (text));
+                }
+                catch (NumberFormatException ex) {
+                    // e.g. NaN, which is not a decimal
+                    return null;
+                }
+            }
+        };
+
+    private static final ColumnReader DOUBLE =
+        new ColumnReader (XSDDatatype.XSDdouble) {
+            String read (ResultSet rs, int column) throws SQLException {
+                double v = rs.getDouble (column);
+                return rs.wasNull () ? null : floating (v);
+            }
+
+            String fromText (String text) {
+                return floating (text);
+            }
+        };
+
+    private static final ColumnReader FLOAT =
+        new ColumnReader (XSDDatatype.XSDfloat) {
+            String read (ResultSet rs, int column) throws SQLException {
+                double v = rs.getDouble (column);
+                return rs.wasNull () ? null : floating (v);
+            }
+
+            String fromText (String text) {
+                return floating (text);
+            }
+        };
+
+    private static final ColumnReader BOOLEAN =
+        new ColumnReader (XSDDatatype.XSDboolean) {
+            String read (ResultSet rs, int column) throws SQLException {
+                boolean v = rs.getBoolean (column);
+                return rs.wasNull () ? null : String.valueOf (v);
+            }
+
+            String fromText (String text) {
+                // PostgreSQL writes t and f
+                if (text.equals ("t") || text.equals ("1")) return "true";
+                if (text.equals ("f") || text.equals ("0")) return "false";
+                return text;
+            }
+        };
+
+    private static final ColumnReader TIMESTAMP =
+        new ColumnReader (XSDDatatype.XSDdateTime) {
+            String read (ResultSet rs, int column) throws SQLException {
+                // not getTimestamp, which would convert the value to the
+                // default time zone and lose its own (timestamptz)
+                String v = rs.getString (column);
+                return (v == null) ? null : time (v);
+            }
+
+            String fromText (String text) {
+                return time (text);
+            }
+        };
+
+    private static final ColumnReader DATE =
+        new ColumnReader (XSDDatatype.XSDdate) {
+            String read (ResultSet rs, int column) throws SQLException {
+                java.sql.Date v = rs.getDate (column);
+                return (v == null) ? null : v.toString ();
+            }
+        };
+
+    private static final ColumnReader TIME =
+        new ColumnReader (XSDDatatype.XSDtime) {
+            String read (ResultSet rs, int column) throws SQLException {
+                // not getTime, which drops the fractional seconds
+                String v = rs.getString (column);
+                return (v == null) ? null : time (v);
+            }
+
+            String fromText (String text) {
+                return time (text);
+            }
+        };
+
+    /* (non javadoc)
+     * Binary values, encoded in hexadecimal or base64.
+     */
+    private static class Binary extends ColumnReader {
+        private final boolean base64;
+
+        Binary (boolean base64) {
+            super (base64 ? XSDDatatype.XSDbase64Binary
+                          : XSDDatatype.XSDhexBinary);
+            this.base64 = base64;
+        }
+
+        String read (ResultSet rs, int column) throws SQLException {
+            byte[] v = rs.getBytes (column);
+            if (v == null) return null;
+            StringBuffer sb = new StringBuffer (2 * v.length);
+            encode (v, v.length, sb);
+            return sb.toString ();
+        }
+
+        String fromText (String text) {
+            // PostgreSQL writes bytea as \x followed by hex digits
+            if (text.startsWith ("\\x")) text = text.substring (2);
+            if (!base64) return text.toUpperCase ();
+            byte[] v = new byte[text.length () / 2];
+            for (int k = 0; k < v.length; k++) {
+                v[k] = (byte) ((Character.digit (text.charAt (2*k), 16) << 4)
+                             | Character.digit (text.charAt (2*k+1), 16));
+            }
+            StringBuffer sb = new StringBuffer (2 * v.length);
+            encode (v, v.length, sb);
+            return sb.toString ();
+        }
+
+        /* (non javadoc)
+         * Encode the len first bytes of b at the end of sb; unless it is the
+         * last chunk of a value, len must be a multiple of 3 in base64.
+         */
+        void encode (byte[] b, int len, StringBuffer sb) {
+            if (base64) base64 (b, len, sb);
+            else hex (b, len, sb);
+        }
+    }
+
+    /* (non javadoc)
+     * Binary large objects, streamed from getBinaryStream.
+     */
+    private static class BinaryLob extends Binary {
+        private final DbInfo info;
+        private final long maxSize;
+
+        BinaryLob (DbInfo info) {
+            super (info.getBase64Binary ());
+            this.info = info;
+            this.maxSize = info.getLobMaxSize ();
+        }
+
+        String read (ResultSet rs, int column) throws SQLException {
+            InputStream in = rs.getBinaryStream (column);
+            if (in == null) return null;
+            try {
+                byte[] buf = new byte[CHUNK_SIZE];
+                StringBuffer sb = new StringBuffer ();
+                long remaining = maxSize;
+                while (remaining > 0) {
+                    int n = fill (in, buf, (int) Math.min (buf.length,
+                                                           remaining));
+                    if (n == 0) break;
+                    encode (buf, n, sb);
+                    remaining -= n;
+                }
+                if (remaining == 0 && in.read () != -1) {
+                    if (info.getLobPolicy () == DbInfo.LOB_SKIP) {
+                        info.verbose (3, "skipping binary value larger than "
+                                         + maxSize + " bytes");
+                        return null;
+                    }
+                    info.verbose (3, "truncating binary value to "
+                                     + maxSize + " bytes");
+                }
+                return sb.toString ();
+            }
+            catch (IOException ex) {
+                throw new SQLException (ex.toString ());
+            }
+            finally {
+                try {
+                    in.close ();
+                }
+                catch (IOException ex) {
+                    // the value has been read anyway
+                }
+            }
+        }
+
+        String fromText (String text) {
+            int start = text.startsWith ("\\x") ? 2 : 0;
+            if ((text.length () - start) / 2 > maxSize) {
+                if (info.getLobPolicy () == DbInfo.LOB_SKIP) return null;
+                text = text.substring (start, start + (int) (2 * maxSize));
+            }
+            return super.fromText (text);
+        }
+    }
+
+    /* (non javadoc)
+     * Character large objects, streamed from getCharacterStream.
+     */
+    private static class CharacterLob extends ColumnReader {
+        private final DbInfo info;
+        private final long maxSize;
+
+        CharacterLob (DbInfo info) {
+            super (XSDDatatype.XSDstring);
+            this.info = info;
+            this.maxSize = info.getLobMaxSize ();
+        }
+
+        String read (ResultSet rs, int column) throws SQLException {
+            Reader in = rs.getCharacterStream (column);
+            if (in == null) return null;
+            try {
+                char[] buf = new char[CHUNK_SIZE];
+                StringBuffer sb = new StringBuffer ();
+                long remaining = maxSize;
+                int n;
+                while (remaining > 0
+                       && (n = in.read (buf, 0, (int) Math.min (buf.length,
+                                                                remaining)))
+                          != -1) {
+                    sb.append (buf, 0, n);
+                    remaining -= n;
+                }
+                if (remaining == 0 && in.read () != -1) {
+                    return truncated (sb);
+                }
+                return sb.toString ();
+            }
+            catch (IOException ex) {
+                throw new SQLException (ex.toString ());
+            }
+            finally {
+                try {
+                    in.close ();
+                }
+                catch (IOException ex) {
+                    // the value has been read anyway
+                }
+            }
+        }
+
+        String fromText (String text) {
+            if (text.length () <= maxSize) return text;
+            return truncated (new StringBuffer (text.substring (0,
+                                                       (int) maxSize)));
+        }
+
+        /* (non javadoc)
+         * Return the value of a text longer than maxSize, whose beginning is
+         * in sb, according to the LOB policy.
+         */
+        private String truncated (StringBuffer sb) {
+            if (info.getLobPolicy () == DbInfo.LOB_SKIP) {
+                info.verbose (3, "skipping text value larger than "
+                                 + maxSize + " characters");
+                return null;
+            }
+            info.verbose (3, "truncating text value to "
+                             + maxSize + " characters");
+            return sb.append (info.getLobMarker ()).toString ();
+        }
+    }
+
+    /**
+     * The size of the chunks in which large objects are read; a multiple of
+     * 3, so that chunks can be encoded in base64 independently.
+     */
+    static final int CHUNK_SIZE = 3 * 2730;
+
+    /* (non javadoc)
+     * Read from in into buf, up to len bytes or the end of the stream.
+     * Return the number of bytes read.
+     */
+    private static int fill (InputStream in, byte[] buf, int len)
+    throws IOException {
+        int n = 0;
+        while (n < len) {
+            int r = in.read (buf, n, len - n);
+            if (r == -1) break;
+            n += r;
+        }
+        return n;
+    }
+
+    private static final ColumnReader HEX_BINARY = new Binary (false);
+
+    private static final ColumnReader BASE64_BINARY = new Binary (true);
+
+    /**
+     * Return the canonical lexical form of the given decimal: no exponent,
+     * no trailing zeros, and at least one digit after the decimal point.
+     * @param v a decimal
+     * @return the canonical lexical form of v in xsd:decimal
+     */
+    static String decimal (BigDecimal v) {
+        if (v.signum () == 0) return "0.0";
+        String s = v.stripTrailingZeros ().toPlainString ();
+        return (s.indexOf ('.') < 0) ? s + ".0" : s;
+    }
+
+    /**
+     * Return the lexical form of the given number in xsd:double.
+     * @param v a number
+     * @return the lexical form of v in xsd:double or xsd:float
+     */
+    static String floating (double v) {
+        if (Double.isNaN (v)) return "NaN";
+        if (Double.isInfinite (v)) return (v > 0) ? "INF" : "-INF";
+        return Double.toString (v);
+    }
+
+    /**
+     * Normalize the textual form of a floating point number, as written
+     * by Java or SQL, to the lexical form of xsd:double.
+     * @param text a floating point number
+     * @return its lexical form in xsd:double or xsd:float
+     */
+    static String floating (String text) {
+        if (text.equals ("Infinity")) return "INF";
+        if (text.equals ("-Infinity")) return "-INF";
+        return text;
+    }
+
+    /**
+     * Normalize the textual form of a time or timestamp, as written by
+     * java.sql.Timestamp or SQL, to the lexical form of xsd:time or
+     * xsd:dateTime: a 'T' between the date and the time, no trailing zeros
+     * in the fractional seconds, and a time zone as <code>+hh:mm</code>.
+     * @param text a time or a timestamp
+     * @return its lexical form in xsd:time or xsd:dateTime
+     */
+    static String time (String text) {
+        int len = text.length ();
+        StringBuffer sb = new StringBuffer (len + 3);
+        int i = 0;
+        // the date and the time, up to the fractional seconds
+        for (; i < len; i++) {
+            char c = text.charAt (i);
+            if (c == '.' || ((c == '+' || c == '-' || c == 'Z')
+                             && sb.indexOf (":") >= 0)) {
+                break;
+            }
+            sb.append ((c == ' ') ? 'T' : c);
+        }
+        // the fractional seconds, without trailing zeros
+        if (i < len && text.charAt (i) == '.') {
+            int start = i;
+            i += 1;
+            while (i < len && Character.isDigit (text.charAt (i))) i += 1;
+            int end = i;
+            while (end > start + 1 && text.charAt (end - 1) == '0') end -= 1;
+            if (end > start + 1) sb.append (text.substring (start, end));
+        }
+        // the time zone
+        if (i < len) {
+            String tz = text.substring (i);
+            if (tz.equals ("+00") || tz.equals ("+00:00")) {
+                sb.append ('Z');
+            } else if (tz.length () == 3) {
+                sb.append (tz).append (":00");
+            } else {
+                sb.append (tz);
+            }
+        }
+        return sb.toString ();
+    }
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray ();
+
+    /**
+     * Append the canonical lexical form of the given bytes in xsd:hexBinary
+     * to the given buffer.
+     * @param v an array of bytes
+     * @param len the number of bytes of v to encode
+     * @param sb the buffer
+     */
+    static void hex (byte[] v, int len, StringBuffer sb) {
+        for (int k = 0; k < len; k++) {
+            sb.append (HEX[(v[k] >> 4) & 0x0f]);
+            sb.append (HEX[v[k] & 0x0f]);
+        }
+    }
+
+    private static final char[] BASE64 =
+        ("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/")
+        .toCharArray ();
+
+    /**
+     * Append the canonical lexical form of the given bytes in
+     * xsd:base64Binary to the given buffer. Padding is only added when len
+     * is not a multiple of 3, so that a value can be encoded chunk by chunk.
+     * @param v an array of bytes
+     * @param len the number of bytes of v to encode
+     * @param sb the buffer
+     */
+    static void base64 (byte[] v, int len, StringBuffer sb) {
+        int k = 0;
+        for (; k + 2 < len; k += 3) {
+            int b = ((v[k] & 0xff) << 16) | ((v[k+1] & 0xff) << 8)
+                  | (v[k+2] & 0xff);
+            sb.append (BASE64[(b >> 18) & 0x3f]);
+            sb.append (BASE64[(b >> 12) & 0x3f]);
+            sb.append (BASE64[(b >> 6) & 0x3f]);
+            sb.append (BASE64[b & 0x3f]);
+        }
+        if (len - k == 1) {
+            int b = (v[k] & 0xff) << 16;
+            sb.append (BASE64[(b >> 18) & 0x3f]);
+            sb.append (BASE64[(b >> 12) & 0x3f]);
+            sb.append ("==");
+        } else if (len - k == 2) {
+            int b = ((v[k] & 0xff) << 16) | ((v[k+1] & 0xff) << 8);
+            sb.append (BASE64[(b >> 18) & 0x3f]);
+            sb.append (BASE64[(b >> 12) & 0x3f]);
+            sb.append (BASE64[(b >> 6) & 0x3f]);
+            sb.append ('=');
+        }
+    }
+}
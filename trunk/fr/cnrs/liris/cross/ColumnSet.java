@@ -5,8 +5,11 @@
 package fr.cnrs.liris.cross;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -14,10 +17,22 @@ import java.util.Iterator;
  *
  * The common implementation of the description of tables, primary keys and
  * foreign keys.
+ * <p>Column sets are filled by SchemaBuilder, then frozen: their columns
+ * are read only afterwards.</p>
  */
 abstract class ColumnSet {
-	final HashMap columnMap = new HashMap ();
-	final ArrayList columnList = new ArrayList ();
+	private final HashMap map = new HashMap ();
+	private final ArrayList list = new ArrayList ();
+	private boolean frozen = false;
+    /**
+     * A read only map whose keys are column names and values are the
+     * corresponding Column instances.
+     */
+	final Map columnMap = Collections.unmodifiableMap (map);
+    /**
+     * A read only list of the Column instances, by position.
+     */
+	final List columnList = Collections.unmodifiableList (list);
 
     /**
      * Add column c to this column set.
@@ -25,11 +40,29 @@ abstract class ColumnSet {
      * that it belongs to the correct table.
      * @param c the column to add
      * @param position the position of the column in this column set
+     * @throws java.lang.IllegalStateException if this column set is frozen
      */
 	void addColumn (Column c, int position) {
-		columnMap.put (c.name, c);
-		while (columnList.size () < position) columnList.add (null); 
-		columnList.set (position-1, c);
+		checkNotFrozen ();
+		map.put (c.name, c);
+		while (list.size () < position) list.add (null); 
+		list.set (position-1, c);
+	}
+
+    /**
+     * Forbid any further change to this column set.
+     * SchemaBuilder freezes everything it builds before publishing it, so
+     * that it can be read by several threads without synchronization.
+     */
+	void freeze () {
+		frozen = true;
+	}
+
+    /**
+     * @throws java.lang.IllegalStateException if this column set is frozen
+     */
+	void checkNotFrozen () {
+		if (frozen) throw new IllegalStateException ("frozen column set");
 	}
 	
     /**
@@ -0,0 +1,143 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+/**
+ * @author agent
+ *
+ * <p>An Encoding generating short row URIs, for large ABoxes.</p>
+ * <p>The URIs of tables, columns and keys are those of PaEncoding, since
+ * there are few of them. The URI of a row is
+ * <em>table</em>.<em>value_1</em>.<em>value_2</em>... where the values are
+ * those of the primary key, and the table name and the values are encoded
+ * as below. Hence the URI of a row only depends on the name of its table
+ * and its key, and not on the other tables of the database.</p>
+ * <p>Values are encoded as follows: letters and digits (ASCII) are left as
+ * is; other characters are written as '_' followed by 2 hexadecimal digits
+ * if their code is lower than 256, or as '-' followed by 4 hexadecimal
+ * digits; the empty string is written "-". Hence an integer key takes no
+ * more room than its digits, and URIs remain XML-friendly and N3-friendly
+ * like those of PaEncoding.</p>
+ * <p>Since PaEncoding never produces a '.', both forms can be decoded.</p>
+ */
+public class CompactEncoding extends PaEncoding {
+
+    public static final char VALUE_SEPARATOR = '.';
+
+    public String uri (String[] values, Table table, String base) {
+        StringBuffer r = new StringBuffer (base.length ()
+                                           + table.name.length ()
+                                           + 8 * values.length);
+        r.append (base);
+        encodeValue (table.name, r);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) return null;
+            r.append (VALUE_SEPARATOR);
+            encodeValue (values[i], r);
+        }
+        return r.toString ();
+    }
+
+    public Object decodeUri (String uri, DbInfo info) {
+        String aboxBase = info.getABoxBaseUri ();
+        int start = aboxBase.length ();
+        int dot = uri.indexOf (VALUE_SEPARATOR, start);
+        if (!uri.startsWith (aboxBase) || dot < 0) {
+            return super.decodeUri (uri, info);
+        }
+        StringBuffer sb = new StringBuffer ();
+        decodeValue (uri, start, dot, sb);
+        Table table = info.getSchema ().getTable (sb.toString ());
+        if (table == null) return null;
+
+        int count = 1;
+        for (int i = dot; i >= 0; i = uri.indexOf (VALUE_SEPARATOR, i + 1)) {
+            count += 1;
+        }
+        String rw[] = new String[count];
+        rw[0] = table.name;
+        int k = 1;
+        while (dot >= 0) {
+            int next = uri.indexOf (VALUE_SEPARATOR, dot + 1);
+            int end = (next < 0) ? uri.length () : next;
+            sb.setLength (0);
+            decodeValue (uri, dot + 1, end, sb);
+            rw[k++] = sb.toString ();
+            dot = next;
+        }
+        return rw;
+    }
+
+    /**
+     * Append the encoded form of the given value to the given buffer.
+     * @param value a value
+     * @param sb the buffer
+     */
+    static void encodeValue (String value, StringBuffer sb) {
+        if (value.length () == 0) {
+            sb.append ('-');
+            return;
+        }
+        for (int i = 0; i < value.length (); i++) {
+            char c = value.charAt (i);
+            if (('a' <= c && c <= 'z') || ('A' <= c && c <= 'Z')
+             || ('0' <= c && c <= '9')) {
+                sb.append (c);
+            } else if (c < 0x100) {
+                sb.append ('_').append (HEX[c >> 4]).append (HEX[c & 0xf]);
+            } else {
+                sb.append ('-').append (HEX[c >> 12])
+                  .append (HEX[(c >> 8) & 0xf])
+                  .append (HEX[(c >> 4) & 0xf])
+                  .append (HEX[c & 0xf]);
+            }
+        }
+    }
+
+    /**
+     * Append the value encoded in str[start..end[ to the given buffer.
+     * @param str a string
+     * @param start the start of the encoded value
+     * @param end the end of the encoded value
+     * @param sb the buffer
+     * @throws IllegalArgumentException if the value is not validly encoded
+     */
+    static void decodeValue (String str, int start, int end, StringBuffer sb) {
+        if (end - start == 1 && str.charAt (start) == '-') return;
+        int i = start;
+        while (i < end) {
+            char c = str.charAt (i);
+            if (('a' <= c && c <= 'z') || ('A' <= c && c <= 'Z')
+             || ('0' <= c && c <= '9')) {
+                sb.append (c);
+                i += 1;
+            } else if (c == '_' && i + 3 <= end) {
+                sb.append ((char) hex (str, i + 1, i + 3));
+                i += 3;
+            } else if (c == '-' && i + 5 <= end) {
+                sb.append ((char) hex (str, i + 1, i + 5));
+                i += 5;
+            } else {
+                throw new IllegalArgumentException ("Invalid value "
+                    + str.substring (start, end));
+            }
+        }
+    }
+
+    private static int hex (String str, int start, int end) {
+        int r = 0;
+        for (int i = start; i < end; i++) {
+            int d = Character.digit (str.charAt (i), 16);
+            if (d < 0) {
+                throw new IllegalArgumentException ("Invalid character "
+                                                    + str.charAt (i));
+            }
+            r = 16 * r + d;
+        }
+        return r;
+    }
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray ();
+}
@@ -0,0 +1,164 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * @author agent
+ *
+ * Round-trip tests of CompactEncoding: decodeUri must give back the table
+ * and the values a row URI was built from, for any values; and the URI of
+ * a row must not change when other tables are added.
+ */
+public class CompactEncodingTest extends TestCase {
+
+    /**
+     * Two names with the same CRC32, which a hash of the names would not
+     * tell apart; the second one is only created by testRefresh.
+     */
+    private static final String COLLIDING[] = {"plumless", "buckeroo"};
+
+    /**
+     * The characters random values are made of, a surrogate pair counting
+     * as one.
+     */
+    private static final String CHARS[] = {
+        "a", "Z", "0", "9", ".", "_", "-", " ", "~", "/", "#", "%",
+        "\u00e9", "\u00ff", "\u0100", "\u20ac", "\ud83d\ude00",
+    };
+
+    private static final String EDGE_CASES[] = {
+        "", ".", "_", "-", "..", "__", "--", "-_", "_-", "a.b", "a-", "-a",
+        "\u00ff", "\u0100", "\ud83d\ude00", "x\ud83d\ude00y", "2e", "-2e",
+    };
+
+    private HsqldbFixture db;
+    private DbInfo info;
+    private Encoding enc;
+
+    protected void setUp () throws Exception {
+        db = HsqldbFixture.open ("compact");
+        db.execute ("CREATE TABLE \"plumless\""
+                  + " (\"id\" VARCHAR(20) PRIMARY KEY)");
+        db.execute ("CREATE TABLE \"single\" (\"id\" VARCHAR(20) PRIMARY KEY,"
+                  + " \"ref\" VARCHAR(20) REFERENCES \"plumless\" (\"id\"))");
+        db.execute ("CREATE TABLE \"multi\" (\"a\" VARCHAR(20),"
+                  + " \"b\" VARCHAR(20), \"n\" INTEGER,"
+                  + " PRIMARY KEY (\"a\", \"b\", \"n\"))");
+
+        DbInfo.Parameters p = db.parameters ();
+        // the same base for both boxes, so that row and term URIs can meet
+        p.tboxBaseUri = "http://example.org/db#";
+        p.aboxBaseUri = "http://example.org/db#";
+        p.enc = new CompactEncoding ();
+        info = new DbInfo (p);
+        enc = info.getEnc ();
+    }
+
+    protected void tearDown () throws Exception {
+        db.close ();
+    }
+
+    public void testTableNames () {
+        Schema schema = info.getSchema ();
+        String uri = info.uri (new String[] {"x"}, schema.getTable ("single"));
+        assertEquals (info.getABoxBaseUri () + "single.x", uri);
+        uri = info.uri (new String[] {"1", "2", "3"},
+                        schema.getTable ("multi"));
+        assertEquals (info.getABoxBaseUri () + "multi.1.2.3", uri);
+    }
+
+    public void testRefresh () throws Exception {
+        String values[] = {"x.y"};
+        String before = info.uri (values,
+                                  info.getSchema ().getTable (COLLIDING[0]));
+        db.execute ("CREATE TABLE \"" + COLLIDING[1] + "\""
+                  + " (\"id\" VARCHAR(20) PRIMARY KEY)");
+        assertTrue (info.refresh ().contains (COLLIDING[1]));
+
+        Schema schema = info.getSchema ();
+        Table first = schema.getTable (COLLIDING[0]);
+        Table second = schema.getTable (COLLIDING[1]);
+        assertNotNull (second);
+        assertEquals (before, info.uri (values, first));
+        assertFalse (before.equals (info.uri (values, second)));
+        check (first, values);
+        check (second, values);
+    }
+
+    public void testEdgeCases () {
+        Iterator i = info.getSchema ().tables.values ().iterator ();
+        while (i.hasNext ()) {
+            Table table = (Table) i.next ();
+            for (int k = 0; k < EDGE_CASES.length; k++) {
+                String values[] = new String[table.primaryKey.size ()];
+                for (int j = 0; j < values.length; j++) {
+                    values[j] = EDGE_CASES[(k + j) % EDGE_CASES.length];
+                }
+                check (table, values);
+            }
+        }
+    }
+
+    public void testRandomValues () {
+        Random random = new Random (47);
+        Iterator i = info.getSchema ().tables.values ().iterator ();
+        while (i.hasNext ()) {
+            Table table = (Table) i.next ();
+            for (int n = 0; n < 2000; n++) {
+                String values[] = new String[table.primaryKey.size ()];
+                for (int j = 0; j < values.length; j++) {
+                    StringBuffer sb = new StringBuffer ();
+                    int len = random.nextInt (8);
+                    for (int c = 0; c < len; c++) {
+                        sb.append (CHARS[random.nextInt (CHARS.length)]);
+                    }
+                    values[j] = sb.toString ();
+                }
+                check (table, values);
+            }
+        }
+    }
+
+    public void testTerms () {
+        Iterator i = info.getSchema ().tables.values ().iterator ();
+        while (i.hasNext ()) {
+            Table table = (Table) i.next ();
+            assertSame (table, enc.decodeUri (table.uri, info));
+            Iterator j = table.columnList.iterator ();
+            while (j.hasNext ()) {
+                Column column = (Column) j.next ();
+                assertSame (column, enc.decodeUri (column.uri, info));
+            }
+            j = table.foreignKeys.values ().iterator ();
+            while (j.hasNext ()) {
+                ForeignKey fk = (ForeignKey) j.next ();
+                assertSame (fk, enc.decodeUri (fk.uri, info));
+            }
+        }
+    }
+
+    /* (non javadoc)
+     * Check that the URI of the given row decodes to its table and values,
+     * and is not the URI of a table, column or key.
+     */
+    private void check (Table table, String[] values) {
+        String uri = info.uri (values, table);
+        assertNotNull (uri);
+        assertNull (uri, info.getSchema ().getTerm (uri));
+        String expected[] = new String[values.length + 1];
+        expected[0] = table.name;
+        System.arraycopy (values, 0, expected, 1, values.length);
+        Object decoded = enc.decodeUri (uri, info);
+        assertTrue (uri, decoded instanceof String[]);
+        assertTrue (uri + " " + Arrays.asList ((String[]) decoded),
+                    Arrays.equals (expected, (String[]) decoded));
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author agent
+ *
+ * <p>A pool of JDBC connections, shared by several DbInfo.</p>
+ * <p>Connections are pooled by URL and credentials, so DbInfo describing
+ * different schemas of the same database reuse the same connections.
+ * At most <code>maxIdle</code> idle connections are kept for each
+ * database; the others are closed when released.</p>
+ * <p>The number of connections in use at a time can be bounded, in which
+ * case getConnection waits for a connection to be released. A thread must
+ * then never wait for a second connection while holding one; it can use
+ * tryGetConnection instead, which does not wait.</p>
+ * <p>This class is thread safe, and lock free apart from that wait (a
+ * semaphore), so that it can be used by many virtual threads: no monitor
+ * is ever held, in particular while talking to the database.</p>
+ *
+ * @see fr.cnrs.liris.cross.DbInfo.Parameters#connectionPool
+ */
+public class ConnectionPool {
+
+    private final int maxIdle;
+    private final int maxActive;
+    /**
+     * The permits for the connections in use, or <code>null</code> if
+     * their number is not bounded.
+     */
+    private final Semaphore active;
+    /**
+     * A map whose keys are the database keys and values are queues of idle
+     * connections.
+     */
+    private final ConcurrentHashMap idle = new ConcurrentHashMap ();
+    /**
+     * A map whose keys are the connections in use and values are their
+     * database keys.
+     */
+    private final ConcurrentHashMap used = new ConcurrentHashMap ();
+    private final AtomicInteger opened = new AtomicInteger ();
+    private volatile boolean closed = false;
+
+    /**
+     * Create a pool which does not bound the number of connections in use.
+     * @param maxIdle the maximum number of idle connections kept for each
+     *                database
+     */
+    public ConnectionPool (int maxIdle) {
+        this (maxIdle, 0);
+    }
+
+    /**
+     * @param maxIdle the maximum number of idle connections kept for each
+     *                database
+     * @param maxActive the maximum number of connections in use at a time,
+     *                  over all databases, or 0 for no bound
+     */
+    public ConnectionPool (int maxIdle, int maxActive) {
+        this.maxIdle = maxIdle;
+        this.maxActive = maxActive;
+        this.active = (maxActive > 0) ? new Semaphore (maxActive, true) : null;
+    }
+
+    /**
+     * Return a connection to the given database, idle or new, waiting for
+     * one to be released if the maximum number of connections is in use.
+     * @param url the JDBC URL of the database
+     * @param username the user name, or <code>null</code>
+     * @param password the password, or <code>null</code>
+     * @return a connection, to be given back with release
+     * @throws SQLException
+     */
+    public Connection getConnection (String url, String username,
+                                     String password)
+    throws SQLException {
+        if (closed) throw new SQLException ("Connection pool closed");
+        if (active != null) {
+            try {
+                active.acquire ();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread ().interrupt ();
+                throw new SQLException ("Interrupted while waiting for a connection");
+            }
+        }
+        return open (url, username, password);
+    }
+
+    /**
+     * Return a connection to the given database, idle or new, unless the
+     * maximum number of connections is in use. This never waits, so it can
+     * be called by a thread holding a connection.
+     * @param url the JDBC URL of the database
+     * @param username the user name, or <code>null</code>
+     * @param password the password, or <code>null</code>
+     * @return a connection, to be given back with release, or
+     *         <code>null</code> if none is available
+     * @throws SQLException
+     */
+    public Connection tryGetConnection (String url, String username,
+                                        String password)
+    throws SQLException {
+        if (closed) throw new SQLException ("Connection pool closed");
+        if (active != null && !active.tryAcquire ()) return null;
+        return open (url, username, password);
+    }
+
+    /* (non javadoc)
+     * Return an idle or new connection, a permit having been acquired.
+     */
+    private Connection open (String url, String username, String password)
+    throws SQLException {
+        try {
+            String key = url + '\0' + username + '\0' + password;
+            ConcurrentLinkedQueue q = (ConcurrentLinkedQueue) idle.get (key);
+            Connection cx = null;
+            while (q != null && (cx = (Connection) q.poll ()) != null) {
+                if (!cx.isClosed ()) break;
+            }
+            if (cx == null) {
+                cx = java.sql.DriverManager.getConnection (url, username,
+                                                           password);
+                opened.incrementAndGet ();
+            }
+            used.put (cx, key);
+            return cx;
+        }
+        catch (SQLException ex) {
+            if (active != null) active.release ();
+            throw ex;
+        }
+        catch (RuntimeException ex) {
+            if (active != null) active.release ();
+            throw ex;
+        }
+    }
+
+    /**
+     * Give back a connection obtained from this pool.
+     * It is kept for later use, or closed if enough connections are idle.
+     * Connections which have been closed are simply forgotten.
+     * @param cx a connection
+     * @throws SQLException
+     */
+    public void release (Connection cx) throws SQLException {
+        String key = (String) used.remove (cx);
+        if (key == null) {
+            throw new IllegalArgumentException (
+                "Connection not obtained from this pool");
+        }
+        try {
+            if (cx.isClosed ()) return;
+            if (!closed) {
+                ConcurrentLinkedQueue q = (ConcurrentLinkedQueue) idle.get (key);
+                if (q == null) {
+                    idle.putIfAbsent (key, new ConcurrentLinkedQueue ());
+                    q = (ConcurrentLinkedQueue) idle.get (key);
+                }
+                // the size is approximate, which is harmless
+                if (q.size () < maxIdle) {
+                    q.offer (cx);
+                    // close may have drained the queue in the meantime
+                    if (closed && q.remove (cx)) cx.close ();
+                    return;
+                }
+            }
+            cx.close ();
+        }
+        finally {
+            if (active != null) active.release ();
+        }
+    }
+
+    /**
+     * Return the maximum number of connections in use at a time.
+     * @return the maximum number of connections, or 0 if not bounded
+     */
+    public int getMaxActive () {
+        return maxActive;
+    }
+
+    /**
+     * Return the number of connections opened by this pool so far.
+     * @return the number of connections opened
+     */
+    public int getOpened () {
+        return opened.get ();
+    }
+
+    /**
+     * Close all idle connections. Connections in use are closed when they
+     * are released.
+     * @throws SQLException
+     */
+    public void close () throws SQLException {
+        closed = true;
+        SQLException failure = null;
+        Iterator i = idle.values ().iterator ();
+        while (i.hasNext ()) {
+            ConcurrentLinkedQueue q = (ConcurrentLinkedQueue) i.next ();
+            Connection cx;
+            while ((cx = (Connection) q.poll ()) != null) {
+                try {
+                    cx.close ();
+                }
+                catch (SQLException ex) {
+                    failure = ex;
+                }
+            }
+        }
+        if (failure != null) throw failure;
+    }
+}
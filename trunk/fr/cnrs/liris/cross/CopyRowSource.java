@@ -0,0 +1,234 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+
+/**
+ * @author agent
+ *
+ * <p>A RowSource parsing the output of a PostgreSQL
+ * <code>COPY (SELECT ...) TO STDOUT</code> command, in text format.</p>
+ * <p>In that format, each row is a line, fields are separated by a tab,
+ * NULL is represented by <code>\N</code>, and backslash escapes are used
+ * for special characters. The data is assumed to be encoded in UTF-8.</p>
+ * <p>Rows are parsed in place: next only records the boundaries of the
+ * fields in the row buffer, and getString decodes the requested field
+ * directly from that buffer, through a reusable character buffer.</p>
+ * <p>Since values are written by PostgreSQL in their text form, literals
+ * are normalized by their column reader (e.g. t and f for booleans, a space
+ * between the date and the time in timestamps).</p>
+ *
+ * @see fr.cnrs.liris.cross.PostgresDialect
+ */
+class CopyRowSource implements RowSource {
+
+    /**
+     * A stream of rows in COPY text format.
+     */
+    interface Stream {
+        /**
+         * Return the next row, with or without its trailing newline.
+         * The returned array is not modified by the caller.
+         * @return the bytes of the next row, or <code>null</code> at the end
+         *         of the stream
+         * @throws SQLException
+         */
+        byte[] readRow () throws SQLException;
+
+        /**
+         * Release the resources used by this stream, aborting the copy if
+         * it is not finished.
+         * @throws SQLException
+         */
+        void close () throws SQLException;
+    }
+
+    private final Stream stream;
+    private byte[] row = null;
+    private int count = 0;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private char[] chars = new char[256];
+
+    /**
+     * @param stream the stream to parse
+     */
+    CopyRowSource (Stream stream) {
+        this.stream = stream;
+    }
+
+    /**
+     * Return a stream reading rows from the given input stream, e.g. a file
+     * recorded with <code>psql -c "COPY (SELECT ...) TO STDOUT"</code>.
+     * @param in an input stream in COPY text format
+     * @return the corresponding Stream
+     */
+    static Stream stream (final InputStream in) {
+        return new Stream () {
+            private byte[] buffer = new byte[1024];
+
+            public byte[] readRow () throws SQLException {
+                try {
+                    int len = 0;
+                    int b;
+                    while ((b = in.read ()) != -1 && b != '\n') {
+                        if (len == buffer.length) {
+                            byte[] tmp = new byte[2 * len];
+                            System.arraycopy (buffer, 0, tmp, 0, len);
+                            buffer = tmp;
+                        }
+                        buffer[len++] = (byte) b;
+                    }
+                    if (b == -1 && len == 0) return null;
+                    byte[] r = new byte[len];
+                    System.arraycopy (buffer, 0, r, 0, len);
+                    return r;
+                }
+                catch (IOException ex) {
+                    throw new SQLException (ex.toString ());
+                }
+            }
+
+            public void close () throws SQLException {
+                try {
+                    in.close ();
+                }
+                catch (IOException ex) {
+                    throw new SQLException (ex.toString ());
+                }
+            }
+        };
+    }
+
+    public boolean next () throws SQLException {
+        row = stream.readRow ();
+        if (row == null
+         || (row.length >= 2 && row[0] == '\\' && row[1] == '.'
+             && (row.length == 2 || row[2] == '\n'))) {
+            // end of data marker
+            row = null;
+            count = 0;
+            return false;
+        }
+        int len = row.length;
+        if (len > 0 && row[len-1] == '\n') len -= 1;
+        count = 0;
+        int start = 0;
+        for (int i = 0; i < len; i++) {
+            if (row[i] == '\t') {
+                addField (start, i);
+                start = i + 1;
+            }
+        }
+        addField (start, len);
+        return true;
+    }
+
+    private void addField (int start, int end) {
+        if (count == starts.length) {
+            int tmp[] = new int[2 * count];
+            System.arraycopy (starts, 0, tmp, 0, count);
+            starts = tmp;
+            tmp = new int[2 * count];
+            System.arraycopy (ends, 0, tmp, 0, count);
+            ends = tmp;
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count += 1;
+    }
+
+    public String getString (int column) throws SQLException {
+        if (row == null) throw new SQLException ("No current row");
+        if (column < 1 || column > count) {
+            throw new SQLException ("No column " + column + " in COPY row");
+        }
+        int s = starts[column-1];
+        int e = ends[column-1];
+        if (e - s == 2 && row[s] == '\\' && row[s+1] == 'N') return null;
+        return decode (s, e);
+    }
+
+    public String getLiteral (int column, ColumnReader reader)
+    throws SQLException {
+        String text = getString (column);
+        return (text == null) ? null : reader.fromText (text);
+    }
+
+    public Object getObject (int column) throws SQLException {
+        return getString (column);
+    }
+
+    public void close () throws SQLException {
+        row = null;
+        stream.close ();
+    }
+
+    /* (non javadoc)
+     * Decode the UTF-8 bytes row[s..e[, processing backslash escapes.
+     * A field of n bytes never decodes to more than n chars.
+     */
+    private String decode (int s, int e) throws SQLException {
+        if (chars.length < e - s) chars = new char[e - s];
+        int n = 0;
+        int p = s;
+        while (p < e) {
+            int b = row[p++] & 0xff;
+            if (b == '\\' && p < e) {
+                int c = row[p++] & 0xff;
+                switch (c) {
+                    case 'b': chars[n++] = '\b'; break;
+                    case 'f': chars[n++] = '\f'; break;
+                    case 'n': chars[n++] = '\n'; break;
+                    case 'r': chars[n++] = '\r'; break;
+                    case 't': chars[n++] = '\t'; break;
+                    case 'v': chars[n++] = 0x0b; break;
+                    case 'x': {
+                        int v = 0;
+                        for (int k = 0; k < 2 && p < e
+                                        && Character.digit ((char) row[p], 16) >= 0; k++) {
+                            v = 16 * v + Character.digit ((char) row[p++], 16);
+                        }
+                        chars[n++] = (char) v;
+                        break;
+                    }
+                    default:
+                        if ('0' <= c && c <= '7') {
+                            int v = c - '0';
+                            for (int k = 0; k < 2 && p < e
+                                            && '0' <= row[p] && row[p] <= '7'; k++) {
+                                v = 8 * v + (row[p++] - '0');
+                            }
+                            chars[n++] = (char) v;
+                        } else {
+                            chars[n++] = (char) c;
+                        }
+                }
+            } else if (b < 0x80) {
+                chars[n++] = (char) b;
+            } else if ((b >> 5) == 0x06 && p < e) {
+                chars[n++] = (char) (((b & 0x1f) << 6) | (row[p++] & 0x3f));
+            } else if ((b >> 4) == 0x0e && p + 1 < e) {
+                chars[n++] = (char) (((b & 0x0f) << 12)
+                                   | ((row[p++] & 0x3f) << 6)
+                                   | (row[p++] & 0x3f));
+            } else if ((b >> 3) == 0x1e && p + 2 < e) {
+                int cp = ((b & 0x07) << 18)
+                       | ((row[p++] & 0x3f) << 12)
+                       | ((row[p++] & 0x3f) << 6)
+                       | (row[p++] & 0x3f);
+                cp -= 0x10000;
+                chars[n++] = (char) (0xd800 | (cp >> 10));
+                chars[n++] = (char) (0xdc00 | (cp & 0x3ff));
+            } else {
+                throw new SQLException ("Invalid UTF-8 data in COPY row");
+            }
+        }
+        return new String (chars, 0, n);
+    }
+}
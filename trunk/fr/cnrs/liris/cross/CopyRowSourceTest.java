@@ -0,0 +1,164 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.io.InputStream;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Types;
+
+import junit.framework.TestCase;
+
+/**
+ * @author agent
+ *
+ * Tests of the parsing of COPY text streams, against a recorded stream
+ * (CopyRowSourceTest.txt) of the rows of the table below, as written by
+ * <code>COPY (SELECT id, name, note, data, flag FROM t ORDER BY id) TO
+ * STDOUT</code>. The same rows, stored in an HSQLDB database, are read
+ * through JDBC, and both sources must yield the same values.
+ */
+public class CopyRowSourceTest extends TestCase {
+
+    private static final Object[][] ROWS = {
+        {new Integer (1), "plain", null, new byte[] {0x00, (byte) 0xff},
+         Boolean.TRUE},
+        {new Integer (2), "tab\there", "line\nbreak", new byte[0],
+         Boolean.FALSE},
+        {new Integer (3), "back\\slash", null, "Hello".getBytes (),
+         Boolean.TRUE},
+        {new Integer (4), "caf\u00e9 \u2014 \u65e5\u672c \ud83d\ude00",
+         "cr\rand \\n", new byte[] {0x7f}, null},
+        {new Integer (5), "", "", new byte[0], Boolean.FALSE},
+    };
+
+    private HsqldbFixture db;
+    private DbInfo info;
+
+    protected void setUp () throws Exception {
+        db = HsqldbFixture.open ("copy");
+        db.execute ("CREATE TABLE t (id INTEGER PRIMARY KEY,"
+                  + " name VARCHAR(40), note VARCHAR(40),"
+                  + " data VARBINARY(16), flag BOOLEAN)");
+        PreparedStatement ps = db.cx.prepareStatement (
+            "INSERT INTO t VALUES (?, ?, ?, ?, ?)");
+        for (int i = 0; i < ROWS.length; i++) {
+            for (int k = 0; k < ROWS[i].length; k++) {
+                ps.setObject (k+1, ROWS[i][k]);
+            }
+            ps.executeUpdate ();
+        }
+        ps.close ();
+
+        info = db.info ();
+    }
+
+    protected void tearDown () throws Exception {
+        db.close ();
+    }
+
+    public void testFixture () throws Exception {
+        Table table = info.getSchema ().getTable ("T");
+        String names[] = {"ID", "NAME", "NOTE", "DATA", "FLAG"};
+        Column columns[] = new Column[names.length];
+        for (int k = 0; k < names.length; k++) {
+            columns[k] = table.getColumn (names[k]);
+        }
+
+        Statement s = db.cx.createStatement ();
+        RowSource jdbc = new JdbcRowSource (s, s.executeQuery (
+            "SELECT id, name, note, data, flag FROM t ORDER BY id"));
+        InputStream in = getClass ().getResourceAsStream (
+            "CopyRowSourceTest.txt");
+        assertNotNull (in);
+        RowSource copy = new CopyRowSource (CopyRowSource.stream (in));
+
+        int rows = 0;
+        while (jdbc.next ()) {
+            assertTrue (copy.next ());
+            for (int k = 1; k <= columns.length; k++) {
+                String where = "row " + (rows+1) + ", column " + names[k-1];
+                assertEquals (where,
+                              jdbc.getLiteral (k, columns[k-1].reader),
+                              copy.getLiteral (k, columns[k-1].reader));
+                if (k <= 3) {
+                    assertEquals (where, jdbc.getString (k),
+                                  copy.getString (k));
+                }
+            }
+            rows += 1;
+        }
+        assertFalse (copy.next ());
+        assertEquals (ROWS.length, rows);
+        jdbc.close ();
+        copy.close ();
+    }
+
+    public void testEndOfDataMarker () throws Exception {
+        RowSource copy = new CopyRowSource (stream (new String[] {
+            "1\ta", "\\.", "2\tb"}));
+        assertTrue (copy.next ());
+        assertEquals ("a", copy.getString (2));
+        assertFalse (copy.next ());
+        copy.close ();
+    }
+
+    public void testTimeZones () throws Exception {
+        // pgjdbc reports timestamptz columns as TIMESTAMP
+        db.execute ("CREATE TABLE tz (id INTEGER PRIMARY KEY,"
+                  + " at TIMESTAMP(6) WITH TIME ZONE, t TIME(6))");
+        db.execute ("INSERT INTO tz VALUES (1,"
+                  + " TIMESTAMP '2026-10-19 12:34:56.5+02:00',"
+                  + " TIME '12:34:56.25')");
+        db.execute ("INSERT INTO tz VALUES (2,"
+                  + " TIMESTAMP '2000-01-01 01:59:59+02:00',"
+                  + " TIME '00:00:00')");
+        ColumnReader at = ColumnReader.forType (info, Types.TIMESTAMP);
+        ColumnReader t = ColumnReader.forType (info, Types.TIME);
+        // as written by COPY in a session whose time zone is UTC+2
+        RowSource copy = new CopyRowSource (stream (new String[] {
+            "1\t2026-10-19 12:34:56.5+02\t12:34:56.25",
+            "2\t2000-01-01 01:59:59+02\t00:00:00"}));
+
+        Statement s = db.cx.createStatement ();
+        RowSource jdbc = new JdbcRowSource (s, s.executeQuery (
+            "SELECT id, at, t FROM tz ORDER BY id"));
+        String expected[][] = {
+            {"2026-10-19T12:34:56.5+02:00", "12:34:56.25"},
+            {"2000-01-01T01:59:59+02:00", "00:00:00"}};
+        for (int k = 0; k < expected.length; k++) {
+            assertTrue (jdbc.next ());
+            assertTrue (copy.next ());
+            assertEquals (expected[k][0], jdbc.getLiteral (2, at));
+            assertEquals (expected[k][0], copy.getLiteral (2, at));
+            assertEquals (expected[k][1], jdbc.getLiteral (3, t));
+            assertEquals (expected[k][1], copy.getLiteral (3, t));
+        }
+        assertFalse (copy.next ());
+        jdbc.close ();
+        copy.close ();
+    }
+
+    /* (non javadoc)
+     * Return a stream of the given COPY lines.
+     */
+    private static CopyRowSource.Stream stream (String[] lines)
+    throws Exception {
+        final byte[][] rows = new byte[lines.length][];
+        for (int k = 0; k < lines.length; k++) {
+            rows[k] = lines[k].getBytes ("UTF-8");
+        }
+        return new CopyRowSource.Stream () {
+            private int next = 0;
+
+            public byte[] readRow () {
+                return (next < rows.length) ? rows[next++] : null;
+            }
+
+            public void close () {
+            }
+        };
+    }
+}
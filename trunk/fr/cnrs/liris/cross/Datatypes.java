@@ -29,9 +29,10 @@ public abstract class Datatypes {
 			case Types.BIGINT:        return XSDDatatype.XSDinteger;
 			case Types.BINARY:        return XSDDatatype.XSDhexBinary;
 			case Types.BIT:           return XSDDatatype.XSDboolean;
+			case Types.BLOB:          return XSDDatatype.XSDhexBinary;
 			case Types.BOOLEAN:       return XSDDatatype.XSDboolean;
 			case Types.CHAR:          return XSDDatatype.XSDstring;
-			case Types.CLOB:          return null;
+			case Types.CLOB:          return XSDDatatype.XSDstring;
 			case Types.DATALINK:      return null;
 			case Types.DATE:          return XSDDatatype.XSDdate;
 			case Types.DECIMAL:       return XSDDatatype.XSDdecimal;
@@ -5,26 +5,96 @@
 package fr.cnrs.liris.cross;
 
 import java.sql.DatabaseMetaData;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.TreeMap;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @author Pierre-Antoine Champin
  *
  * <p>This class is a central component of Cross: it provides to other classes
  * specialized description of the database to be converted to OWL.</p>
+ * <p>The description itself is an immutable Schema, which readers get once
+ * and share without locking; refresh replaces it atomically. The Parameters
+ * are not modified, and should not be modified once given to a DbInfo.</p>
  */
 public class DbInfo {
+
+    /**
+     * Rule 4 applies to all the pairs of foreign keys of each table.
+     * @see Parameters#foreignKeyPairs
+     */
+    public static final int PAIRS_ALL = 0;
+    /**
+     * Rule 4 only applies to the pairs of foreign keys of link tables,
+     * i.e. tables whose primary key is made of foreign key columns.
+     * @see Parameters#foreignKeyPairs
+     */
+    public static final int PAIRS_LINK_TABLES = 1;
+    /**
+     * Rule 4 does not apply.
+     * @see Parameters#foreignKeyPairs
+     */
+    public static final int PAIRS_NONE = 2;
+    /**
+     * Large objects larger than the maximum size are truncated.
+     * @see Parameters#lobPolicy
+     */
+    public static final int LOB_TRUNCATE = 0;
+    /**
+     * Large objects larger than the maximum size are skipped.
+     * @see Parameters#lobPolicy
+     */
+    public static final int LOB_SKIP = 1;
+    /**
+     * All the rows are extracted.
+     * @see Parameters#sampling
+     */
+    public static final int SAMPLE_NONE = 0;
+    /**
+     * Only the first rows of each table are extracted.
+     * @see Parameters#sampling
+     */
+    public static final int SAMPLE_FIRST = 1;
+    /**
+     * Each row is extracted with a given probability.
+     * @see Parameters#sampling
+     */
+    public static final int SAMPLE_BERNOULLI = 2;
+    /**
+     * Only the rows of a random range of primary keys of each table are
+     * extracted.
+     * @see Parameters#sampling
+     */
+    public static final int SAMPLE_RANDOM_RANGE = 3;
+    /**
+     * Only tables with a primary key (or given identity columns) are
+     * described.
+     * @see Parameters#rowIdentity
+     */
+    public static final int ROWS_PRIMARY_KEY = 0;
+    /**
+     * The rows of a table without a primary key are identified by a unique
+     * index of NOT NULL columns.
+     * @see Parameters#rowIdentity
+     */
+    public static final int ROWS_UNIQUE_INDEX = 1;
+    /**
+     * The rows of a table without a primary key are identified by a unique
+     * index of NOT NULL columns, or else by the row id of the dialect.
+     * @see Parameters#rowIdentity
+     */
+    public static final int ROWS_ROW_ID = 2;
     	
 	/**
 	 * @author Pierre-Antoine Champin
 	 *
 	 * The set of parameters used to initialize a DbInfo.
 	 */
-	public static class Parameters {
+	public static class Parameters implements Cloneable {
 
 		/**
 		 * The name of the JDBC driver class to be used.
@@ -109,6 +179,184 @@ public class DbInfo {
          * 0 means no message at all; this is default.
          */
         public int verbosity = 0;
+
+        /**
+         * The SQL dialect of the database.
+         * If unset, it is guessed from the jdbcUrl.
+         * @see fr.cnrs.liris.cross.Dialect#forUrl(java.lang.String)
+         */
+        public Dialect dialect = null;
+
+        /**
+         * The number of rows fetched at a time when reading a table.
+         * Default to 1000.
+         */
+        public int fetchSize = 1000;
+
+        /**
+         * If strictly positive, tables are read in pages of that many rows,
+         * ordered by primary key (keyset pagination), rather than with a
+         * single query. This avoids long running cursors on databases that
+         * do not stream result sets.
+         * Default to 0.
+         */
+        public int pageSize = 0;
+
+        /**
+         * Whether to extract tables with the bulk export facility of the
+         * database (e.g. PostgreSQL COPY) rather than through JDBC result
+         * sets, when the dialect supports it. Keyset pagination does not
+         * apply to bulk extraction.
+         * Default to <code>false</code>.
+         * @see #pageSize
+         */
+        public boolean bulkExtraction = false;
+
+        /**
+         * The pool in which to get connections to the database.
+         * If unset, a new connection is opened each time one is needed, and
+         * closed afterwards.
+         */
+        public ConnectionPool connectionPool = null;
+
+        /**
+         * The number of connections reading the description of the tables
+         * at a time, when it is read table by table: when the dialect does
+         * not support bulk metadata, and on refresh. It is bounded by the
+         * size of the connection pool, if any.
+         * Default to 1.
+         * @see Dialect#supportsBulkMetadata()
+         */
+        public int introspectionThreads = 1;
+
+        /**
+         * Whether to check the SELECT privileges of the user on tables and
+         * columns, ignoring those which can not be read. They can be left
+         * unchecked when the account is trusted to read everything, which
+         * saves the privilege metadata queries.
+         * Default to <code>true</code>.
+         */
+        public boolean checkPrivileges = true;
+
+        /**
+         * Which pairs of foreign keys rule 4 applies to: PAIRS_ALL,
+         * PAIRS_LINK_TABLES or PAIRS_NONE. A table with <em>n</em> foreign
+         * keys has <em>n(n-1)/2</em> pairs, each producing a triple per row,
+         * so wide tables which are not link tables may rather be excluded.
+         * Default to PAIRS_ALL.
+         */
+        public int foreignKeyPairs = PAIRS_ALL;
+
+        /**
+         * The maximum size of the large objects (BLOB, CLOB, LONGVARBINARY
+         * and LONGVARCHAR columns) read, in bytes for binary ones and in
+         * characters for text ones. Larger values are handled according to
+         * lobPolicy, so that the memory used per row remains bounded.
+         * Default to 16 MB.
+         */
+        public long lobMaxSize = 16 * 1024 * 1024;
+
+        /**
+         * What to do with large objects larger than lobMaxSize: LOB_TRUNCATE
+         * or LOB_SKIP. Truncated text values end with lobMarker; truncated
+         * binary values are only their first lobMaxSize bytes, since a
+         * marker would make them invalid.
+         * Default to LOB_TRUNCATE.
+         */
+        public int lobPolicy = LOB_TRUNCATE;
+
+        /**
+         * The string appended to truncated text values.
+         * Default to " [truncated]".
+         */
+        public String lobMarker = " [truncated]";
+
+        /**
+         * Whether binary values are encoded in base64 (xsd:base64Binary)
+         * rather than hexadecimal (xsd:hexBinary), which makes them 1/3
+         * shorter.
+         * Default to <code>false</code>.
+         */
+        public boolean base64Binary = false;
+
+        /**
+         * If set, only the tables whose name it accepts are described and
+         * extracted; the others are not even queried for their metadata.
+         * Default to <code>null</code>.
+         */
+        public NameFilter tableFilter = null;
+
+        /**
+         * If set, only the columns it accepts (as <em>table.column</em>) are
+         * described and extracted, except for the columns of primary keys,
+         * which are always kept. Foreign keys involving an excluded column
+         * are ignored.
+         * Default to <code>null</code>.
+         */
+        public NameFilter columnFilter = null;
+
+        /**
+         * How to sample the rows of the tables, for a quick preview of the
+         * ABox: SAMPLE_NONE, SAMPLE_FIRST (the first sampleSize rows),
+         * SAMPLE_BERNOULLI (samplePercent % of the rows, with TABLESAMPLE
+         * when the database supports it) or SAMPLE_RANDOM_RANGE (the
+         * sampleSize rows following a random primary key, when the first
+         * column of the primary key is numeric, else the first ones).
+         * Sampling does not apply to the lookup of given subjects. The
+         * foreign keys of the sampled rows are extracted as usual, so they
+         * reference the same URIs as in a full extraction.
+         * Default to SAMPLE_NONE.
+         */
+        public int sampling = SAMPLE_NONE;
+
+        /**
+         * The number of rows extracted per table (or per range of a sharded
+         * dump) by SAMPLE_FIRST and SAMPLE_RANDOM_RANGE.
+         * Default to 100.
+         */
+        public int sampleSize = 100;
+
+        /**
+         * The percentage of rows extracted by SAMPLE_BERNOULLI.
+         * Default to 1.
+         */
+        public double samplePercent = 1;
+
+        /**
+         * How to identify the rows of the tables without a primary key:
+         * ROWS_PRIMARY_KEY (such tables are ignored), ROWS_UNIQUE_INDEX or
+         * ROWS_ROW_ID. The identifying columns are then used as a primary
+         * key. Row ids (e.g. PostgreSQL ctid) only identify a row until it
+         * is updated, so URIs based on them are not stable.
+         * Default to ROWS_PRIMARY_KEY, so that the classes, properties and
+         * URIs generated do not change unless asked to.
+         * @see Dialect#rowIdColumn()
+         */
+        public int rowIdentity = ROWS_PRIMARY_KEY;
+
+        /**
+         * A map whose keys are the names of tables without a primary key and
+         * values are the names of the columns identifying their rows (as
+         * String arrays), which take precedence over rowIdentity. Those
+         * columns should be indexed and unique.
+         * Default to <code>null</code>.
+         */
+        public Map identityColumns = null;
+
+        /**
+         * Return a copy of these parameters, sharing their values (pool,
+         * filters, maps...), e.g. to change some of them without modifying
+         * parameters given to a DbInfo.
+         * @return a copy
+         */
+        public Parameters copy () {
+            try {
+                return (Parameters) clone ();
+            }
+            catch (CloneNotSupportedException ex) {
+                throw new RuntimeException (ex);
+            }
+        }
 	}
 
     private final Parameters params;
@@ -128,10 +376,30 @@ public class DbInfo {
      */
     final String quote;
     /**
-     * A map whose keys are (unqualified) table names and whose values are
-     * Table instances.
+     * The SQL dialect of the database.
+     */
+    final Dialect dialect;
+    /**
+     * The base URI of the TBox, the base URI of the ABox and the URI of the
+     * imported TBox, defaulting as explained in Parameters.
+     */
+    private final String tboxBaseUri;
+    private final String aboxBaseUri;
+    private final String importedTboxUri;
+    /**
+     * The current description of the database.
+     */
+    private volatile Schema schema;
+    /**
+     * The builder of the current description, which knows the fingerprints
+     * of the tables; only used by refresh, and only replaced by install.
+     */
+    private volatile SchemaBuilder builder;
+
+    /**
+     * The number of rows of the tables, for the statistics of the ABox.
      */
-    final HashMap tables = new HashMap ();
+    final RowCounts rowCounts = new RowCounts (this);
 
     /**
      * Create a DbInfo with the given parameters.
@@ -144,200 +412,111 @@ public class DbInfo {
     throws ClassNotFoundException, java.sql.SQLException
     {
     	this.params = params;
+        this.dialect = (params.dialect != null)
+                     ? params.dialect
+                     : Dialect.forUrl (params.jdbcUrl);
     	
     	if ( params.jdbcDriver != null ) {
 			Class.forName(params.jdbcDriver);
     	}
         
-        if ( params.tboxBaseUri == null) {
-            params.tboxBaseUri = params.jdbcUrl + "/cross/tbox#";
-        }
-        
-        if ( params.aboxBaseUri == null) {
-            params.aboxBaseUri = params.jdbcUrl + "/cross/abox#";
-        }
-        
-        if ( params.importedTboxUri == null) {
-            params.importedTboxUri = ns2uri(params.tboxBaseUri);
-        }
+        tboxBaseUri = (params.tboxBaseUri != null)
+                    ? params.tboxBaseUri
+                    : params.jdbcUrl + "/cross/tbox#";
+        aboxBaseUri = (params.aboxBaseUri != null)
+                    ? params.aboxBaseUri
+                    : params.jdbcUrl + "/cross/abox#";
+        importedTboxUri = (params.importedTboxUri != null)
+                        ? params.importedTboxUri
+                        : ns2uri (tboxBaseUri);
 
 		java.sql.Connection cx = openConnection ();
-		DatabaseMetaData md = cx.getMetaData();
-		
-        catalogAtStart = md.isCatalogAtStart();
-        catalogSep = md.getCatalogSeparator();
-        quote = md.getIdentifierQuoteString();
-        
-		
-		// create tables
-		ResultSet rs = md.getTables (params.catalog,
-									 params.schemaPattern,
-									 params.tablePattern,
-									 params.tableTypes);
-		while (rs.next ()) {
-            String cat = rs.getString("table_cat");
-            String schem = rs.getString("table_schem");
-            String name = rs.getString("table_name");
-            if (checkPriviledge(md, cat, schem, name)) {
-                Table table = new Table (this, cat, schem, name);
-                tables.put (table.name, table);
-                verbose (2, "table "+name+" created");
-            } else {
-                verbose (1, "table "+name+" not accessible");
-            }
+		try {
+			DatabaseMetaData md = cx.getMetaData();
+			
+	        catalogAtStart = md.isCatalogAtStart();
+	        catalogSep = md.getCatalogSeparator();
+	        quote = dialect.identifierQuote (md);
+	        verbose (2, "using "+dialect.getName()+" dialect");
+
+	        builder = new SchemaBuilder (this).read (cx);
+	        schema = builder.build ();
 		}
+		finally {
+			releaseConnection (cx);
+		}
+    }
 
-		// for each table
-		Iterator i = tables.values().iterator();
-		while (i.hasNext()) {
-			Table table = (Table) i.next ();
-			
-			// create columns
-			rs = md.getColumns (table.catalog, table.schema, table.name, "%");
-			while (rs.next ())
-			{
-                String name = rs.getString ("column_name");
-                if (checkPriviledge(md, table, name)) {
-                    Column column = new Column (table,
-                                                rs.getString ("column_name"),
-                                                rs.getInt ("data_type"));
-                    table.addColumn (column, rs.getInt ("ordinal_position"));
-                    if (rs.getInt("nullable")==DatabaseMetaData.columnNoNulls)
-                    {
-                        column.canBeNull = false;
-                    }
-                    verbose (4, "column "+table.name+"."+name+" created");
-                } else {
-                    verbose (3, "column "+table.name+"."+name+" not accessible");
-                }
-			}
-			
-			// create primary key
-			rs = md.getPrimaryKeys(table.catalog, table.schema, table.name);
-			while (rs.next ()) {
-				if (table.primaryKey == null) {
-					table.primaryKey =
-						new PrimaryKey (rs.getString ("pk_name"));
-				} 
-				Column c = table.getColumn (rs.getString ("column_name"));
-                if (c == null) {
-                    // TODO LATER any better idea?
-                    throw new RuntimeException ("Column "
-                        + table.name +"." + rs.getString ("column_name")
-                        + " is not accessible, though part of the primary key.\n"
-                        + "Cross does not know (yet?) how to handle this.");
-                }
-				table.primaryKey.addColumn (c, rs.getInt ("key_seq"));
-                verbose (3, "primary key for "+table.name+" created");
-			}
-            if (table.primaryKey == null) {
-                verbose (1, "table "+table.name+" removed, because it has no primary key");
-                // TODO LATER find another way of identifying rows so that we
-                // can accept tables without a primary key
-                i.remove();
+    /**
+     * Update the description of the database, e.g. after columns or tables
+     * have been added, and replace the current one with it once complete.
+     * Only the tables whose metadata fingerprint changed are read again.
+     * Readers which got the previous description keep using it, and graphs
+     * built on this DbInfo use the new one for their next operations.
+     * No lock is held while the database is read; a refresh overtaken by
+     * another one reads the database again.
+     * @return the names of the tables whose description changed (including
+     *         the tables added or removed, and the tables with a foreign key
+     *         referencing one of those), empty if nothing changed
+     * @throws SQLException
+     * @see fr.cnrs.liris.cross.Dialect#tableFingerprintsQuery()
+     */
+    public Set refresh () throws SQLException {
+        HashSet affected = new HashSet ();
+        while (true) {
+            // read and build without holding the monitor, then install the
+            // result unless another refresh installed its own meanwhile
+            SchemaBuilder base = builder;
+            SchemaBuilder b;
+            affected.clear ();
+            java.sql.Connection cx = openConnection ();
+            try {
+                b = base.update (cx, affected);
             }
-		}		
-
-		// now that all tables are created with all their columns
-		// for each table
-		i = tables.values().iterator();
-		while (i.hasNext()) {
-			Table table = (Table) i.next ();
-			
-			// create foreign keys
-			rs = md.getImportedKeys(table.catalog, table.schema, table.name);
-			ForeignKey foreignKey = null;
-			Table foreignTable = null;
-            boolean skipCurrent = false;
-			while (rs.next ()) {
-                int key_seq = rs.getInt ("key_seq");
-				String fk_name = rs.getString ("fk_name");
-                
-				if (key_seq == 1) {
-                    if (foreignKey != null && !skipCurrent) {
-                        table.foreignKeys.put (foreignKey.name, foreignKey);
-                        verbose (3, "foreign key "+table.name+"."+foreignKey.name+" created");
-                    }
-                    
-                    if (fk_name == null
-                     // MySQL JDBC driver has the strange habit of returning
-                     // the string "not available" instead of null
-                     || fk_name.equals ("not_available")) {
-                        // may be not the better possible ID, but...
-                        fk_name = "__fk_"+rs.getString ("pktable_name")+"_"+rs.getString ("pkcolumn_name");
-                    }
-					foreignKey = new ForeignKey (this, table, fk_name);
-					foreignTable = (Table)
-					    tables.get (rs.getString ("pktable_name"));
-                    skipCurrent = (foreignTable == null);
-                    if (skipCurrent) verbose (2, "no foreign table for "+table.name+"."+fk_name);                        
-				}
-                
-                if (skipCurrent) continue;
-                
-				Column c = table.getColumn (rs.getString ("fkcolumn_name"));
-				Column fc =
-				    foreignTable.getColumn (rs.getString ("pkcolumn_name"));
-                if (c != null && fc != null) {
-                    foreignKey.addColumn (c, rs.getInt ("key_seq"), fc);
-                    verbose (5, "foreign key column "+table.name+"."+foreignKey.name+"."+rs.getString("fkcolumn_name")+" created");
-                } else {
-                    skipCurrent = true;
-                    verbose (3, "column unreachable for "+table.name+"."+fk_name); // DEBUG                        
-                }
-			}
-            // add last foreign key if needed 
-            if (foreignKey != null && !skipCurrent) {
-                table.foreignKeys.put (foreignKey.name, foreignKey);
-                verbose (3, "foreign key "+table.name+"."+foreignKey.name+" created");
+            finally {
+                releaseConnection (cx);
             }
-			
-			// create foreign key pairs
-			TreeMap tm = new TreeMap ();
-			Iterator j = table.foreignKeys.values ().iterator();
-			while (j.hasNext ()) {
-				ForeignKey fk = (ForeignKey) j.next ();
-				if (!fk.subsumesPrimaryKey()) tm.put (fk.name, fk);
-			}
-			int s = tm.size();
-			table.fkPairs.ensureCapacity( (s*(s-1))/2 );
-			j = tm.values ().iterator();
-			ForeignKey pair[] = new ForeignKey[2];
-			while (j.hasNext ()) {
-				pair[0] = (ForeignKey) j.next ();
-				Iterator k = tm.tailMap (pair[0].name).values ().iterator ();
-				k.next (); // skip 1st element, which is pair[0]
-				while (k.hasNext ()) {
-					pair[1] = (ForeignKey) k.next ();
-					table.fkPairs.add (pair.clone ());
-				}
-			}
-			
-			// detect unique columns and unique foreign keys
-			rs = md.getIndexInfo(table.catalog, table.schema, table.name, true, false);
-            skipCurrent = false;
-			ColumnSet index = null;
-			while (rs.next ()) {
-				int position = rs.getInt ("ordinal_position");
-				if (position == 0) continue; // TODO LATER are those indices useful? 
-				if (position == 1) {
-					if (index != null && !skipCurrent) {
-                         register_unique_index (index, table);
-                    }
-                    skipCurrent = false;
-					index = new ColumnSet () {};
-				}
-				Column c = (Column) table.getColumn (rs.getString ("column_name"));
-                if (c != null) {
-                    index.addColumn (c, position);
-                } else {
-                    skipCurrent = true;
-                }
-			}
-			if (index != null) register_unique_index (index, table);
-		}
-		
-		cx.close();
+            Schema s = affected.isEmpty () ? null : b.build ();
+            if (install (base, b, s)) break;
+        }
+        rowCounts.forget (affected);
+        verbose (2, "description refreshed, "+affected.size ()+" tables changed");
+        return Collections.unmodifiableSet (affected);
+    }
+
+    /**
+     * Replace the current description with the given one, if the current
+     * builder is still the given base.
+     * @return false if another refresh replaced the description meanwhile
+     */
+    private synchronized boolean install (SchemaBuilder base,
+                                          SchemaBuilder b, Schema s) {
+        if (builder != base) return false;
+        if (s != null) {
+            schema = s;
+            builder = b;
+        }
+        return true;
+    }
+
+    /**
+     * Forget the number of rows of the tables, so that the statistics of
+     * the ABox reflect the current content of the database.
+     * The description of the database is not changed.
+     * @see fr.cnrs.liris.cross.ABoxGraph#getStatistics()
+     */
+    public void refreshStatistics () {
+        rowCounts.clear ();
+    }
+
+    /**
+     * Return the current description of the database.
+     * Callers should get it once, and use it for the whole of an operation,
+     * so as to have a consistent view in case of a refresh.
+     * @return the current Schema
+     */
+    Schema getSchema () {
+        return schema;
     }
     
     /**
@@ -389,22 +568,126 @@ public class DbInfo {
      * @return the value of this parameter
      * @see fr.cnrs.liris.cross.DbInfo.Parameters
      */
-	public String getTBoxBaseUri () { return params.tboxBaseUri; }
+	public String getTBoxBaseUri () { return tboxBaseUri; }
     /**
      * @return the value of this parameter
      * @see fr.cnrs.liris.cross.DbInfo.Parameters
      */
-    public String getABoxBaseUri () { return params.aboxBaseUri; }
+    public String getABoxBaseUri () { return aboxBaseUri; }
     /**
      * @return the value of this parameter
      * @see fr.cnrs.liris.cross.DbInfo.Parameters
      */
-    public String getImportedTboxUri () { return params.importedTboxUri; }
+    public String getImportedTboxUri () { return importedTboxUri; }
     /**
      * @return the value of this parameter
      * @see fr.cnrs.liris.cross.DbInfo.Parameters
      */
     public int getVerbosity () { return params.verbosity; }
+    /**
+     * @return the dialect of the database
+     * @see fr.cnrs.liris.cross.DbInfo.Parameters
+     */
+    public Dialect getDialect () { return dialect; }
+    /**
+     * @return the value of this parameter
+     * @see fr.cnrs.liris.cross.DbInfo.Parameters
+     */
+    public int getFetchSize () { return params.fetchSize; }
+    /**
+     * @return the value of this parameter
+     * @see fr.cnrs.liris.cross.DbInfo.Parameters
+     */
+    public int getPageSize () { return params.pageSize; }
+    /**
+     * @return the value of this parameter
+     * @see fr.cnrs.liris.cross.DbInfo.Parameters
+     */
+    public boolean getBulkExtraction () { return params.bulkExtraction; }
+    /**
+     * @return the value of this parameter
+     * @see fr.cnrs.liris.cross.DbInfo.Parameters
+     */
+    public boolean getCheckPrivileges () { return params.checkPrivileges; }
+    /**
+     * @return the value of this parameter
+     * @see fr.cnrs.liris.cross.DbInfo.Parameters
+     */
+    public int getForeignKeyPairs () { return params.foreignKeyPairs; }
+    /**
+     * @return the value of this parameter
+     * @see fr.cnrs.liris.cross.DbInfo.Parameters
+     */
+    public long getLobMaxSize () { return params.lobMaxSize; }
+    /**
+     * @return the value of this parameter
+     * @see fr.cnrs.liris.cross.DbInfo.Parameters
+     */
+    public int getLobPolicy () { return params.lobPolicy; }
+    /**
+     * @return the value of this parameter
+     * @see fr.cnrs.liris.cross.DbInfo.Parameters
+     */
+    public String getLobMarker () { return params.lobMarker; }
+    /**
+     * @return the value of this parameter
+     * @see fr.cnrs.liris.cross.DbInfo.Parameters
+     */
+    public boolean getBase64Binary () { return params.base64Binary; }
+    /**
+     * @return the value of this parameter
+     * @see fr.cnrs.liris.cross.DbInfo.Parameters
+     */
+    public NameFilter getTableFilter () { return params.tableFilter; }
+    /**
+     * @return the value of this parameter
+     * @see fr.cnrs.liris.cross.DbInfo.Parameters
+     */
+    public NameFilter getColumnFilter () { return params.columnFilter; }
+    /**
+     * @return the value of this parameter
+     * @see fr.cnrs.liris.cross.DbInfo.Parameters
+     */
+    public int getSampling () { return params.sampling; }
+    /**
+     * @return the value of this parameter
+     * @see fr.cnrs.liris.cross.DbInfo.Parameters
+     */
+    public int getSampleSize () { return params.sampleSize; }
+    /**
+     * @return the value of this parameter
+     * @see fr.cnrs.liris.cross.DbInfo.Parameters
+     */
+    public double getSamplePercent () { return params.samplePercent; }
+    /**
+     * @return the value of this parameter
+     * @see fr.cnrs.liris.cross.DbInfo.Parameters
+     */
+    public int getRowIdentity () { return params.rowIdentity; }
+    /**
+     * Return the columns identifying the rows of the given table, according
+     * to the identityColumns parameter.
+     * @param table the name of a table
+     * @return the names of the columns, or <code>null</code>
+     * @see fr.cnrs.liris.cross.DbInfo.Parameters#identityColumns
+     */
+    String[] getIdentityColumns (String table) {
+        if (params.identityColumns == null) return null;
+        return (String[]) params.identityColumns.get (table);
+    }
+    /**
+     * @return the value of this parameter, bounded by the size of the
+     *         connection pool
+     * @see fr.cnrs.liris.cross.DbInfo.Parameters
+     */
+    public int getIntrospectionThreads () {
+        int r = params.introspectionThreads;
+        if (params.connectionPool != null
+         && params.connectionPool.getMaxActive () > 0) {
+            r = Math.min (r, params.connectionPool.getMaxActive ());
+        }
+        return Math.max (r, 1);
+    }
     
     /**
      * Return the URI of the TBox
@@ -412,7 +695,7 @@ public class DbInfo {
      * @return the URI of the TBox
      */
     String getTBoxUri () {
-        return ns2uri (params.tboxBaseUri);
+        return ns2uri (tboxBaseUri);
     }
     
     /**
@@ -421,7 +704,7 @@ public class DbInfo {
      * @return the URI of the ABox
      */
     public String getABoxUri () {
-        return ns2uri (params.aboxBaseUri);
+        return ns2uri (aboxBaseUri);
     }
     
     
@@ -431,11 +714,74 @@ public class DbInfo {
      * @throws SQLException
      */
     java.sql.Connection openConnection () throws SQLException {
+        if (params.connectionPool != null) {
+            return params.connectionPool.getConnection (params.jdbcUrl,
+                                                        params.jdbcUsername,
+                                                        params.jdbcPassword);
+        }
         return java.sql.DriverManager.getConnection(params.jdbcUrl,
                                                     params.jdbcUsername,
                                                     params.jdbcPassword);
     }
 
+    /**
+     * Returns a connection to the database described by this DbInfo, unless
+     * all the connections of the pool are in use. Unlike openConnection,
+     * this never waits, so it can be called while holding a connection.
+     * @return a connection to the database, or <code>null</code>
+     * @throws SQLException
+     */
+    java.sql.Connection tryOpenConnection () throws SQLException {
+        if (params.connectionPool != null) {
+            return params.connectionPool.tryGetConnection (params.jdbcUrl,
+                                                           params.jdbcUsername,
+                                                           params.jdbcPassword);
+        }
+        return openConnection ();
+    }
+
+    /**
+     * Give back a connection returned by openConnection.
+     * It is closed, or returned to the connection pool, if any, once
+     * restored to its default state.
+     * @param cx a connection returned by openConnection
+     * @throws SQLException
+     * @see Parameters#connectionPool
+     */
+    void releaseConnection (java.sql.Connection cx) throws SQLException {
+        if (params.connectionPool == null) {
+            cx.close ();
+            return;
+        }
+        try {
+            dialect.endStreaming (cx);
+        }
+        catch (SQLException ex) {
+            // not reusable
+            cx.close ();
+        }
+        params.connectionPool.release (cx);
+    }
+
+    /**
+     * Quote the given SQL identifier, using the quote string of the database.
+     * Occurrences of the quote string in the identifier are doubled. If the
+     * database does not support quoting, the identifier is returned as is.
+     * @param identifier an SQL identifier (table, column, alias...)
+     * @return the quoted identifier
+     */
+    String quote (String identifier) {
+        if (quote == null || quote.trim ().length () == 0) return identifier;
+        StringBuffer sb = new StringBuffer (quote);
+        int i = 0;
+        int j;
+        while ((j = identifier.indexOf (quote, i)) != -1) {
+            sb.append (identifier.substring (i, j)).append (quote).append (quote);
+            i = j + quote.length ();
+        }
+        return sb.append (identifier.substring (i)).append (quote).toString ();
+    }
+
     /**
      * Return the URI for the given table, according to the Encoding used by
      * this DbInfo.
@@ -445,7 +791,7 @@ public class DbInfo {
      * @see fr.cnrs.liris.cross.Encoding#uri(fr.cnrs.liris.cross.Table, java.lang.String)
      */    
     String uri (Table table) {
-        return params.enc.uri (table, params.tboxBaseUri);
+        return params.enc.uri (table, tboxBaseUri);
     }
 
     /**
@@ -457,7 +803,7 @@ public class DbInfo {
      * @see fr.cnrs.liris.cross.Encoding#uri(fr.cnrs.liris.cross.Column, java.lang.String)
      */    
     String uri (Column column) {
-        return params.enc.uri (column, params.tboxBaseUri);
+        return params.enc.uri (column, tboxBaseUri);
     }
 
     /**
@@ -471,7 +817,7 @@ public class DbInfo {
      * @see fr.cnrs.liris.cross.Encoding#uri(fr.cnrs.liris.cross.ForeignKey, fr.cnrs.liris.cross.Table, java.lang.String)
      */    
     String uri (ForeignKey fk, Table table) {
-        return params.enc.uri (fk, table, params.tboxBaseUri);
+        return params.enc.uri (fk, table, tboxBaseUri);
     }
 
     /**
@@ -486,7 +832,7 @@ public class DbInfo {
      * @see fr.cnrs.liris.cross.Encoding#uri(fr.cnrs.liris.cross.ForeignKey, fr.cnrs.liris.cross.Table, java.lang.String)
      */    
     String uri (ForeignKey fk1, ForeignKey fk2, Table table) {
-        return params.enc.uri (fk1, fk2, table, params.tboxBaseUri);
+        return params.enc.uri (fk1, fk2, table, tboxBaseUri);
     }
 
     /**
@@ -500,63 +846,22 @@ public class DbInfo {
      * @see fr.cnrs.liris.cross.Encoding#uri(java.sql.ResultSet, java.util.Iterator, fr.cnrs.liris.cross.Table, java.lang.String)
      */    
     String uri (java.sql.ResultSet rs, Iterator columnNames, Table table) {
-        return params.enc.uri (rs, columnNames, table, params.aboxBaseUri);
-    }
-    
-    private static void register_unique_index (ColumnSet index, Table table) {
-        if (index.size () == 1) {
-            index.getColumn(1).unique = true;
-        }
-        Iterator it_fk = table.foreignKeys.values ().iterator();
-        while (it_fk.hasNext ()) {
-            ForeignKey fk = (ForeignKey) it_fk.next ();
-            if (fk.unique) continue;
-            if (index.subsetOf (fk)) fk.unique = true;
-        }
+        return params.enc.uri (rs, columnNames, table, aboxBaseUri);
     }
     
-    private static boolean checkPriviledge (DatabaseMetaData md,
-                                            String cat,
-                                            String schem,
-                                            String table_name)
-    throws SQLException {
-        ResultSet rs = md.getTablePrivileges(cat, schem, table_name);
-        return checkPrivilege(md, rs);
+    /**
+     * Return the URI for the row of the given table identified by the given
+     * values, according to the Encoding used by this DbInfo.
+     * It is assumed that the given table belongs to this DbInfo.
+     * @param values the values of the columns identifying the row
+     * @param table the table containing the row to be identified
+     * @return the URI of the row
+     * @see fr.cnrs.liris.cross.Encoding#uri(java.lang.String[], fr.cnrs.liris.cross.Table, java.lang.String)
+     */    
+    String uri (String[] values, Table table) {
+        return params.enc.uri (values, table, aboxBaseUri);
     }
 
-    private static boolean checkPriviledge (DatabaseMetaData md,
-                                            Table table,
-                                            String column_name)
-    throws SQLException {
-        ResultSet rs = md.getColumnPrivileges(table.catalog,
-                                              table.schema,
-                                              table.name,
-                                              column_name);
-        return checkPrivilege(md, rs);
-    }
-    
-    private static boolean checkPrivilege (DatabaseMetaData md, ResultSet rs)
-    throws SQLException {
-        // if result set is empty, we assume that it is a lack of support
-        // for checkPrivilege in the JDBC driver rather than an absence of
-        // privilege, so we return true.
-        // e.g. MySQL does not 
-        // TODO LATER any better idea ?
-        int counter = 0;
-         
-        while (rs.next ()) {
-            counter ++;
-            if ((rs.getString("grantee").equals(md.getUserName())
-              || rs.getString("grantee").equals("PUBLIC"))
-             && rs.getString("privilege").equals("SELECT")) {
-                 // TODO quite unsatisfactory: find a way to detect that a
-                 //      granted group contains current user !
-                 return true;
-             }
-        }
-        return (counter==0);
-    }
-    
     private static String ns2uri (String base) {
         char last = base.charAt(base.length()-1);
         if (last == '/' || last == '#') {
@@ -566,7 +871,7 @@ public class DbInfo {
         }
     }
     
-    private void verbose (int level, String msg) {
+    void verbose (int level, String msg) {
         if (level <= params.verbosity) {
             System.err.println(msg);
         }
@@ -577,7 +882,7 @@ public class DbInfo {
      */
 	public void printDescription ()
 	{
-		Iterator i = tables.values ().iterator();
+		Iterator i = schema.tables.values ().iterator();
 		while (i.hasNext()) {
 			Table t = (Table) i.next ();
 			PrimaryKey pk = t.primaryKey;
@@ -0,0 +1,384 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * @author agent
+ *
+ * <p>The SQL dialect of a database, i.e. everything Cross needs to know about
+ * a database that JDBC does not tell in a portable way: how to stream large
+ * result sets, how to get metadata in bulk, how to page through a table,
+ * and how to quote identifiers.</p>
+ * <p>This class implements the generic behaviour, relying on plain JDBC
+ * only; subclasses override it with faster, database specific
+ * behaviours.</p>
+ *
+ * @see fr.cnrs.liris.cross.DbInfo.Parameters#dialect
+ */
+public class Dialect {
+
+    /**
+     * The generic dialect.
+     */
+    public static final Dialect GENERIC = new Dialect ();
+
+    /**
+     * The SQL query listing the primary key columns of all tables, using the
+     * standard INFORMATION_SCHEMA views.
+     * @see #primaryKeysQuery()
+     */
+    protected static final String INFORMATION_SCHEMA_PRIMARY_KEYS =
+        "SELECT kcu.table_schema AS table_schem,"
+      + " kcu.table_name AS table_name,"
+      + " kcu.column_name AS column_name,"
+      + " kcu.ordinal_position AS key_seq,"
+      + " tc.constraint_name AS pk_name"
+      + " FROM information_schema.table_constraints tc"
+      + " JOIN information_schema.key_column_usage kcu"
+      + " ON (tc.constraint_schema=kcu.constraint_schema"
+      + " AND tc.constraint_name=kcu.constraint_name"
+      + " AND tc.table_name=kcu.table_name)"
+      + " WHERE tc.constraint_type='PRIMARY KEY'";
+
+    /**
+     * A columnPrivilegesQuery based on the information schema.
+     */
+    protected static final String INFORMATION_SCHEMA_COLUMN_PRIVILEGES =
+        "SELECT table_schema AS table_schem,"
+      + " table_name AS table_name,"
+      + " column_name AS column_name,"
+      + " grantee AS grantee,"
+      + " privilege_type AS privilege"
+      + " FROM information_schema.column_privileges";
+
+    /**
+     * An enabledRolesQuery based on the information schema.
+     */
+    protected static final String INFORMATION_SCHEMA_ENABLED_ROLES =
+        "SELECT role_name FROM information_schema.enabled_roles";
+
+    /**
+     * Return the dialect corresponding to the given JDBC URL, or the generic
+     * dialect if the database is not recognized.
+     * @param jdbcUrl a JDBC URL
+     * @return the corresponding dialect
+     */
+    public static Dialect forUrl (String jdbcUrl) {
+        if (jdbcUrl.startsWith ("jdbc:postgresql:")) {
+            return new PostgresDialect ();
+        } else if (jdbcUrl.startsWith ("jdbc:mysql:")) {
+            return new MySqlDialect ();
+        } else if (jdbcUrl.startsWith ("jdbc:hsqldb:")) {
+            return new HsqldbDialect ();
+        } else {
+            return GENERIC;
+        }
+    }
+
+    /**
+     * Return the name of this dialect (used in messages).
+     * @return the name of this dialect
+     */
+    public String getName () {
+        return "generic";
+    }
+
+    /**
+     * Return the string used to quote SQL identifiers.
+     * @param md the metadata of the database
+     * @return the quote string
+     * @throws SQLException
+     */
+    public String identifierQuote (DatabaseMetaData md) throws SQLException {
+        return md.getIdentifierQuoteString ();
+    }
+
+    /**
+     * Create a statement suitable for reading a large result set row by row,
+     * without loading it entirely in memory.
+     * The connection must be given back to endStreaming once the statement
+     * is no longer used.
+     * @param cx a connection
+     * @param fetchSize the number of rows to fetch at a time
+     * @return a forward only, read only statement
+     * @throws SQLException
+     * @see #endStreaming(java.sql.Connection)
+     */
+    public Statement createStreamingStatement (Connection cx, int fetchSize)
+    throws SQLException {
+        Statement s = cx.createStatement (ResultSet.TYPE_FORWARD_ONLY,
+                                          ResultSet.CONCUR_READ_ONLY);
+        s.setFetchSize (fetchSize);
+        return s;
+    }
+
+    /**
+     * Same as createStreamingStatement, but for a prepared statement.
+     * @param cx a connection
+     * @param sql the SQL query
+     * @param fetchSize the number of rows to fetch at a time
+     * @return a forward only, read only prepared statement
+     * @throws SQLException
+     * @see #createStreamingStatement(java.sql.Connection, int)
+     */
+    public java.sql.PreparedStatement prepareStreamingStatement (
+        Connection cx, String sql, int fetchSize)
+    throws SQLException {
+        java.sql.PreparedStatement s =
+            cx.prepareStatement (sql, ResultSet.TYPE_FORWARD_ONLY,
+                                      ResultSet.CONCUR_READ_ONLY);
+        s.setFetchSize (fetchSize);
+        return s;
+    }
+
+    /**
+     * Restore the state of a connection used by streaming statements.
+     * @param cx a connection
+     * @throws SQLException
+     */
+    public void endStreaming (Connection cx) throws SQLException {
+    }
+
+    /**
+     * Start a bulk export of the result of the given query, if the database
+     * supports it (e.g. PostgreSQL <code>COPY ... TO STDOUT</code>).
+     * The columns of the returned source are those of the query.
+     * @param cx a connection
+     * @param sql an SQL query
+     * @return a source of rows, or <code>null</code> if bulk export is not
+     *         supported, in which case the query has to be run through JDBC
+     * @throws SQLException
+     * @see fr.cnrs.liris.cross.DbInfo.Parameters#bulkExtraction
+     */
+    RowSource bulkExport (Connection cx, String sql) throws SQLException {
+        return null;
+    }
+
+    /**
+     * Return whether DatabaseMetaData methods accept patterns matching
+     * several tables at once, and are more efficient that way than when
+     * called for each table.
+     * @return <code>true</code> if so, else <code>false</code>
+     */
+    public boolean supportsBulkMetadata () {
+        return false;
+    }
+
+    /**
+     * Return an SQL query listing the primary key columns of all the tables
+     * at once, or <code>null</code> if getPrimaryKeys has to be called for
+     * each table.
+     * The result set must have the columns <code>table_schem</code>,
+     * <code>table_name</code>, <code>column_name</code>,
+     * <code>key_seq</code> and <code>pk_name</code>, with the same meaning as
+     * in DatabaseMetaData.getPrimaryKeys.
+     * @return an SQL query, or <code>null</code>
+     */
+    public String primaryKeysQuery () {
+        return null;
+    }
+
+    /**
+     * Return an SQL query listing the privileges on the columns of all the
+     * tables at once, or <code>null</code> if getColumnPrivileges has to be
+     * called for each table.
+     * The result set must have the columns <code>table_schem</code>,
+     * <code>table_name</code>, <code>column_name</code>,
+     * <code>grantee</code> and <code>privilege</code>, with the same meaning
+     * as in DatabaseMetaData.getColumnPrivileges.
+     * @return an SQL query, or <code>null</code>
+     */
+    public String columnPrivilegesQuery () {
+        return null;
+    }
+
+    /**
+     * Return an SQL query listing, in its first column, the roles of the
+     * current user, directly or not, or <code>null</code> if the database
+     * has no roles. Privileges granted to those roles are granted to the
+     * user.
+     * @return an SQL query, or <code>null</code>
+     */
+    public String enabledRolesQuery () {
+        return null;
+    }
+
+    /**
+     * Return an SQL query giving a fingerprint of the description of each
+     * table, which changes whenever its columns, keys, indexes or privileges
+     * change, or <code>null</code> if fingerprints have to be computed from
+     * DatabaseMetaData.getColumns, and so only reflect changes of columns.
+     * The result set must have the columns <code>table_schem</code>,
+     * <code>table_name</code> and <code>fingerprint</code>, and be ordered by
+     * schema and table name.
+     * @return an SQL query, or <code>null</code>
+     * @see fr.cnrs.liris.cross.DbInfo#refresh()
+     */
+    public String tableFingerprintsQuery () {
+        return null;
+    }
+
+    /**
+     * Return an SQL query giving an estimation of the number of rows of each
+     * table, as maintained by the database, or <code>null</code> if the rows
+     * have to be counted. Tables missing from the result are counted.
+     * The result set must have the columns <code>table_schem</code>,
+     * <code>table_name</code> and <code>row_count</code>.
+     * @return an SQL query, or <code>null</code>
+     * @see fr.cnrs.liris.cross.RowCounts
+     */
+    public String rowEstimatesQuery () {
+        return null;
+    }
+
+    /**
+     * Return the name of a pseudo column identifying the rows of any table
+     * (e.g. <code>ctid</code> for PostgreSQL or <code>ROWID</code> for
+     * Oracle), or <code>null</code> if the database has none. It is used to
+     * identify the rows of tables with neither a primary key nor a unique
+     * index, and must allow a row to be found quickly given its value.
+     * @return the name of the pseudo column, or <code>null</code>
+     * @see fr.cnrs.liris.cross.DbInfo.Parameters#rowIdentity
+     */
+    public String rowIdColumn () {
+        return null;
+    }
+
+    /**
+     * Append a LIMIT clause to the given SQL query, if supported.
+     * If not, the caller should rely on Statement.setMaxRows.
+     * @param sql an SQL query
+     * @param limit the maximum number of rows
+     * @return <code>true</code> if the clause was appended,
+     *         else <code>false</code>
+     */
+    public boolean appendLimit (StringBuffer sql, int limit) {
+        return false;
+    }
+
+    /**
+     * Append to the given table reference (in a FROM clause) a clause
+     * selecting a Bernoulli sample of its rows, if supported (e.g. the SQL
+     * standard TABLESAMPLE BERNOULLI). If not, the caller should sample the
+     * rows itself.
+     * @param sql an SQL query ending with a table reference
+     * @param percent the percentage of the rows to select
+     * @return <code>true</code> if the clause was appended,
+     *         else <code>false</code>
+     */
+    public boolean appendTableSample (StringBuffer sql, double percent) {
+        return false;
+    }
+
+    /**
+     * Append to the given SQL query a condition selecting the rows whose key
+     * is strictly greater than a given key (keyset pagination).
+     * The values of the given key are represented by '?' parameters.
+     * @param sql an SQL query
+     * @param columns the qualified and quoted names of the key columns, in
+     *                the order of the key
+     * @return for each '?' parameter appended, the index (starting at 0) of
+     *         the key column whose value it stands for
+     */
+    public int[] appendKeysetCondition (StringBuffer sql, String[] columns) {
+        // (c1 > ?) OR (c1 = ? AND c2 > ?) OR ...
+        return appendExpandedCondition (sql, columns, ">", ">");
+    }
+
+    /**
+     * Append to the given SQL query a condition selecting the rows whose key
+     * is lower than or equal to a given key (the upper bound of a range).
+     * It must be written so that the database can use it as a bound of a
+     * scan of the primary key index, hence not as the negation of
+     * appendKeysetCondition.
+     * @param sql an SQL query
+     * @param columns the qualified and quoted names of the key columns, in
+     *                the order of the key
+     * @return for each '?' parameter appended, the index (starting at 0) of
+     *         the key column whose value it stands for
+     * @see #appendKeysetCondition(java.lang.StringBuffer, java.lang.String[])
+     */
+    public int[] appendKeysetUpperCondition (StringBuffer sql,
+                                             String[] columns) {
+        // (c1 < ?) OR (c1 = ? AND c2 < ?) OR ... OR (c1 = ? AND ... cn <= ?)
+        return appendExpandedCondition (sql, columns, "<", "<=");
+    }
+
+    /* (non javadoc)
+     * Append the lexicographic comparison of the key with a given key,
+     * expanded into simple comparisons: op compares the columns but the
+     * last, lastOp the last one.
+     */
+    private static int[] appendExpandedCondition (StringBuffer sql,
+                                                  String[] columns,
+                                                  String op, String lastOp) {
+        int n = columns.length;
+        int params[] = new int[(n * (n+1)) / 2];
+        int p = 0;
+        sql.append ("(");
+        for (int i = 0; i < n; i++) {
+            if (i > 0) sql.append (" OR ");
+            sql.append ("(");
+            for (int j = 0; j < i; j++) {
+                sql.append (columns[j]).append ("=? AND ");
+                params[p++] = j;
+            }
+            sql.append (columns[i]).append ((i < n-1) ? op : lastOp)
+               .append ("?)");
+            params[p++] = i;
+        }
+        sql.append (")");
+        return params;
+    }
+
+    /**
+     * Append to the given SQL query a row value comparison selecting the rows
+     * whose key is strictly greater than a given key.
+     * This is the standard form of appendKeysetCondition, that subclasses
+     * may use when the database supports it.
+     * @param sql an SQL query
+     * @param columns the qualified and quoted names of the key columns
+     * @return the parameter mapping
+     * @see #appendKeysetCondition(java.lang.StringBuffer, java.lang.String[])
+     */
+    protected static int[] appendRowValueCondition (StringBuffer sql,
+                                                    String[] columns) {
+        return appendRowValueCondition (sql, columns, ">");
+    }
+
+    /**
+     * Append to the given SQL query a row value comparison of the key with
+     * a given key, with the given operator.
+     * @param sql an SQL query
+     * @param columns the qualified and quoted names of the key columns
+     * @param op a comparison operator, e.g. "&lt;="
+     * @return the parameter mapping
+     * @see #appendKeysetUpperCondition(java.lang.StringBuffer, java.lang.String[])
+     */
+    protected static int[] appendRowValueCondition (StringBuffer sql,
+                                                    String[] columns,
+                                                    String op) {
+        int params[] = new int[columns.length];
+        sql.append ("(");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) sql.append (",");
+            sql.append (columns[i]);
+            params[i] = i;
+        }
+        sql.append (")").append (op).append ("(");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) sql.append (",");
+            sql.append ("?");
+        }
+        sql.append (")");
+        return params;
+    }
+}
@@ -91,6 +91,18 @@ public interface Encoding {
      * @return the URI of the row
 	 */
 	public String uri (java.sql.ResultSet rs, Iterator columnNames, Table table, String base);
+
+	/**
+	 * Return the URI for the row of the given table identified by the given
+     * values.
+     * The values are those of the columns identifying rows of the table
+     * (typically its primary key), in order.
+     * @param values the values of the identifying columns
+     * @param table the table containing the row to be identified
+     * @return the URI of the row, or <code>null</code> if some value is
+     *         <code>null</code>
+	 */
+	public String uri (String[] values, Table table, String base);
 	
 	/**
 	 * Return the object from the given RdbIndexto corresponding to the given URI.
@@ -105,7 +117,9 @@ public interface Encoding {
 	 * </ul> 
 	 * @param uri the URI to find an object for
 	 * @param info the DbInfo assumed to contain the object
-	 * @return the object this URI identifies
+	 * @return the object this URI identifies, or <code>null</code> if the
+	 *         URI is not based on the base URIs of info, or refers to an
+	 *         unknown table
 	 */
 	public Object decodeUri (String uri, DbInfo info);
 }
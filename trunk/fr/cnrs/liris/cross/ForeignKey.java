@@ -4,8 +4,10 @@
  */
 package fr.cnrs.liris.cross;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 
 
 
@@ -28,29 +30,30 @@ class ForeignKey extends ColumnSet {
      * and quoted.
      */
     final String sqlname;
+	private final HashMap map = new HashMap ();
     /**
-     * A mapping whose keys are columns of the foreign key (as Column
-     * instances), and values are the corresponding columns in the table
-     * referenced by the foreign key (as Column instances).
+     * A read only mapping whose keys are columns of the foreign key (as
+     * Column instances), and values are the corresponding columns in the
+     * table referenced by the foreign key (as Column instances).
      */
-	final HashMap mapping = new HashMap ();
+	final Map mapping = Collections.unmodifiableMap (map);
     /**
      * Whether this foreign key's value has to be unique for each row.
-     * Note: this is set by DbInfo constructor, <em>not</em> by the
-     * Column constructor.
      */
-	boolean unique = false;
+	final boolean unique;
 	
     /**
      * @param info the DbInfo this foreign key belongs to
      * @param table the table this foreign key belongs to
      * @param name the name of the foreign key
+     * @param unique whether the foreign key's value is unique for each row
      */
-	ForeignKey (DbInfo info, Table table, String name)
+	ForeignKey (DbInfo info, Table table, String name, boolean unique)
 	{
 		this.name = name;
+		this.unique = unique;
         this.uri = info.uri (this, table);
-        this.sqlname = info.quote + name + info.quote;
+        this.sqlname = info.quote (name);
 	}
 	
     /**
@@ -74,7 +77,7 @@ class ForeignKey extends ColumnSet {
      */
 	void addColumn (Column c, int position, Column foreignColumn) {
 		super.addColumn (c, position);
-		mapping.put (c, foreignColumn);
+		map.put (c, foreignColumn);
 	}
 	
     /**
@@ -114,6 +117,35 @@ class ForeignKey extends ColumnSet {
 		return (Column) mapping.get (c);
 	}
 	
+    /**
+     * Shortcut method to get the local Column instance mapped to the given
+     * foreign column instance.
+     * @param foreignColumn the foreign column
+     * @return the local column, or <code>null</code> if foreignColumn is not
+     *         referenced by this foreign key
+     */
+    Column localColumn (Column foreignColumn) {
+        Iterator i = columnList.iterator();
+        while (i.hasNext ()) {
+            Column c = (Column) i.next ();
+            if (mapping.get (c) == foreignColumn) return c;
+        }
+        return null;
+    }
+
+    /**
+     * Return whether this foreign key references exactly the primary key of
+     * the foreign table.
+     * If so, the local columns of this foreign key hold the values
+     * identifying the referenced row, so no join is required to get them.
+     * @return <code>true</code> if so, else <code>false</code>
+     */
+    boolean referencesPrimaryKey () {
+        ColumnSet fcs = foreignColumnSet ();
+        PrimaryKey fpk = fcs.table ().primaryKey;
+        return fpk != null && fcs.equals (fpk);
+    }
+
     /**
      * Return whether some column of this foreign key can be null.
      * Note that referential integrity does not apply for a row if some values
@@ -0,0 +1,49 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import com.hp.hpl.jena.graph.Node;
+
+/**
+ * @author agent
+ *
+ * A pair of foreign keys of a table, from which rule 4 derives an object
+ * property between the rows referenced by the first one and the rows
+ * referenced by the second one.
+ * Pairs are created with their table, and their URI and Node are computed
+ * once, since rule 4 requires them for each row.
+ */
+class ForeignKeyPair {
+    /**
+     * The foreign key referencing the subjects of the property.
+     */
+    final ForeignKey first;
+    /**
+     * The foreign key referencing the objects of the property.
+     */
+    final ForeignKey second;
+    /**
+     * The URI of this pair.
+     */
+    final String uri;
+    /**
+     * The URI of this pair as a Node.
+     */
+    final Node node;
+
+    /**
+     * @param info the DbInfo this pair belongs to
+     * @param table the table both foreign keys belong to
+     * @param first the foreign key referencing the subjects
+     * @param second the foreign key referencing the objects
+     */
+    ForeignKeyPair (DbInfo info, Table table, ForeignKey first,
+                    ForeignKey second) {
+        this.first = first;
+        this.second = second;
+        this.uri = info.uri (first, second, table);
+        this.node = Node.createURI (uri);
+    }
+}
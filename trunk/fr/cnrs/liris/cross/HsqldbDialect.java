@@ -0,0 +1,40 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+/**
+ * @author agent
+ *
+ * The dialect of HSQLDB, an embedded database which is convenient to try
+ * Cross without a database server (e.g. with the URL
+ * <code>jdbc:hsqldb:mem:cross</code>).
+ */
+public class HsqldbDialect extends Dialect {
+
+    public String getName () {
+        return "hsqldb";
+    }
+
+    public boolean supportsBulkMetadata () {
+        return true;
+    }
+
+    public String primaryKeysQuery () {
+        return INFORMATION_SCHEMA_PRIMARY_KEYS;
+    }
+
+    public String columnPrivilegesQuery () {
+        return INFORMATION_SCHEMA_COLUMN_PRIVILEGES;
+    }
+
+    public String enabledRolesQuery () {
+        return INFORMATION_SCHEMA_ENABLED_ROLES;
+    }
+
+    public boolean appendLimit (StringBuffer sql, int limit) {
+        sql.append (" LIMIT ").append (limit);
+        return true;
+    }
+}
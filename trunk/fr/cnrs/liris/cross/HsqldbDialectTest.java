@@ -0,0 +1,272 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.io.ByteArrayOutputStream;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+/**
+ * @author agent
+ *
+ * Tests of the introspection, query generation and extraction of Cross
+ * against an in-memory HSQLDB database.
+ */
+public class HsqldbDialectTest extends TestCase {
+
+    private HsqldbFixture db;
+    private DbInfo info;
+
+    protected void setUp () throws Exception {
+        db = HsqldbFixture.open ("cross");
+        db.execute ("CREATE TABLE dept (id INTEGER PRIMARY KEY,"
+                  + " name VARCHAR(20) NOT NULL)");
+        db.execute ("CREATE TABLE emp (id INTEGER, num INTEGER,"
+                  + " badge VARCHAR(10) UNIQUE, dept INTEGER,"
+                  + " PRIMARY KEY (id, num),"
+                  + " FOREIGN KEY (dept) REFERENCES dept (id))");
+        db.execute ("INSERT INTO dept VALUES (1, 'Research')");
+        db.execute ("INSERT INTO dept VALUES (2, 'Sales')");
+        db.execute ("INSERT INTO emp VALUES (1, 1, 'a1', 1)");
+        db.execute ("INSERT INTO emp VALUES (1, 2, 'a2', 2)");
+        db.execute ("INSERT INTO emp VALUES (2, 1, 'b1', 1)");
+        db.execute ("INSERT INTO emp VALUES (2, 3, NULL, NULL)");
+        db.execute ("INSERT INTO emp VALUES (3, 1, 'c1', 2)");
+
+        DbInfo.Parameters p = db.parameters ();
+        p.tboxBaseUri = "http://example.org/tbox#";
+        p.aboxBaseUri = "http://example.org/abox#";
+        info = new DbInfo (p);
+    }
+
+    protected void tearDown () throws Exception {
+        db.close ();
+    }
+
+    public void testIntrospection () {
+        assertTrue (info.dialect instanceof HsqldbDialect);
+        Schema schema = info.getSchema ();
+        assertEquals (2, schema.tables.size ());
+
+        Table dept = schema.getTable ("DEPT");
+        assertNotNull (dept);
+        assertEquals (1, dept.primaryKey.size ());
+        assertEquals ("ID", dept.primaryKey.getColumn (1).name);
+        assertFalse (dept.getColumn ("NAME").canBeNull);
+
+        Table emp = schema.getTable ("EMP");
+        assertNotNull (emp);
+        assertEquals (4, emp.size ());
+        assertEquals (2, emp.primaryKey.size ());
+        assertEquals ("ID", emp.primaryKey.getColumn (1).name);
+        assertEquals ("NUM", emp.primaryKey.getColumn (2).name);
+        assertTrue (emp.getColumn ("BADGE").unique);
+        assertTrue (emp.getColumn ("DEPT").canBeNull);
+
+        assertEquals (1, emp.foreignKeys.size ());
+        ForeignKey fk = (ForeignKey) emp.foreignKeys.values ()
+                                                    .iterator ().next ();
+        assertSame (dept, fk.foreignColumnSet ().table ());
+        assertTrue (fk.referencesPrimaryKey ());
+        assertFalse (fk.subsumesPrimaryKey ());
+        assertTrue (fk.canBeNull ());
+    }
+
+    public void testKeysetPagination () throws Exception {
+        Table emp = info.getSchema ().getTable ("EMP");
+        Column id = emp.primaryKey.getColumn (1);
+        Column num = emp.primaryKey.getColumn (2);
+
+        SelectBuilder first = page (emp, false);
+        String sql = first.toString ();
+        assertTrue (sql, sql.endsWith (" ORDER BY t0." + id.sqlname
+                                       + ",t0." + num.sqlname + " LIMIT 2"));
+        assertTrue (first.isLimited ());
+        assertEquals (0, first.getParameters ().length);
+
+        SelectBuilder next = page (emp, true);
+        sql = next.toString ();
+        assertTrue (sql, sql.indexOf (" WHERE ((t0." + id.sqlname + ">?)"
+            + " OR (t0." + id.sqlname + "=? AND t0." + num.sqlname + ">?))")
+            > 0);
+        int params[] = next.getParameters ();
+        assertTrue (Arrays.equals (new int[] {0, 0, 1}, params));
+
+        // read the table page by page
+        List keys = new ArrayList ();
+        Object bound[] = null;
+        while (true) {
+            PreparedStatement ps = db.cx.prepareStatement (
+                (bound == null) ? first.toString () : sql);
+            for (int k = 0; bound != null && k < params.length; k++) {
+                ps.setObject (k+1, bound[params[k]]);
+            }
+            ResultSet rs = ps.executeQuery ();
+            int n = 0;
+            while (rs.next ()) {
+                bound = new Object[] {rs.getObject (1), rs.getObject (2)};
+                keys.add (bound[0] + "/" + bound[1]);
+                n += 1;
+            }
+            rs.close ();
+            ps.close ();
+            if (n < 2) break;
+        }
+        assertEquals (Arrays.asList (new String[] {
+                          "1/1", "1/2", "2/1", "2/3", "3/1"}),
+                      keys);
+    }
+
+    public void testKeysetRange () throws Exception {
+        Table emp = info.getSchema ().getTable ("EMP");
+        String id = "t0." + emp.primaryKey.getColumn (1).sqlname;
+        String num = "t0." + emp.primaryKey.getColumn (2).sqlname;
+        SelectBuilder range = page (emp, true);
+        range.setLimit (0);
+        range.setUpperBound (true);
+        String sql = range.toString ();
+        // an index bound, not the negation of a lower bound
+        assertTrue (sql, sql.indexOf (" AND ((" + id + "<?) OR (" + id
+                                      + "=? AND " + num + "<=?))") > 0);
+        assertTrue (sql, sql.indexOf ("NOT") < 0);
+        int params[] = range.getParameters ();
+        assertTrue (Arrays.equals (new int[] {0, 0, 1, 2, 2, 3}, params));
+
+        // (1,1) < key <= (2,3)
+        Object bounds[] = {new Integer (1), new Integer (1),
+                           new Integer (2), new Integer (3)};
+        PreparedStatement ps = db.cx.prepareStatement (sql);
+        for (int k = 0; k < params.length; k++) {
+            ps.setObject (k+1, bounds[params[k]]);
+        }
+        ResultSet rs = ps.executeQuery ();
+        List keys = new ArrayList ();
+        while (rs.next ()) keys.add (rs.getObject (1) + "/" + rs.getObject (2));
+        rs.close ();
+        ps.close ();
+        assertEquals (Arrays.asList (new String[] {"1/2", "2/1", "2/3"}),
+                      keys);
+    }
+
+    public void testABoxDump () throws Exception {
+        Schema schema = info.getSchema ();
+        Table dept = schema.getTable ("DEPT");
+        Table emp = schema.getTable ("EMP");
+        ForeignKey fk = (ForeignKey) emp.foreignKeys.values ()
+                                                    .iterator ().next ();
+        Node type = RDF.type.asNode ();
+        Node dept1 = Node.createURI (info.uri (new String[] {"1"}, dept));
+        Node emp11 = Node.createURI (info.uri (new String[] {"1", "1"}, emp));
+        Node emp23 = Node.createURI (info.uri (new String[] {"2", "3"}, emp));
+
+        HashSet lines = lines (new ABoxGraph (info).find (
+            new Triple (Node.ANY, Node.ANY, Node.ANY)));
+        assertTrue (lines.containsAll (lines (Arrays.asList (new Triple[] {
+            new Triple (dept1, type, Node.createURI (dept.uri)),
+            new Triple (dept1, Node.createURI (dept.getColumn ("NAME").uri),
+                        Node.createLiteral ("Research", null,
+                            dept.getColumn ("NAME").reader.type)),
+            new Triple (emp11, type, Node.createURI (emp.uri)),
+            new Triple (emp11, Node.createURI (fk.uri), dept1),
+            new Triple (emp23, type, Node.createURI (emp.uri)),
+        }).iterator ())));
+
+        // one type per row, and no link from the row with a NULL key
+        int types = 0;
+        Iterator i = lines.iterator ();
+        while (i.hasNext ()) {
+            String line = (String) i.next ();
+            if (line.indexOf ("<" + RDF.type.getURI () + ">") > 0) types += 1;
+            assertFalse (line, line.startsWith ("<" + emp23.getURI () + "> <"
+                                                + fk.uri + ">"));
+        }
+        assertEquals (7, types);
+    }
+
+    public void testBadKeyReleasesConnection () throws Exception {
+        DbInfo.Parameters p = db.parameters ();
+        p.tboxBaseUri = "http://example.org/tbox#";
+        p.aboxBaseUri = "http://example.org/abox#";
+        p.connectionPool = new ConnectionPool (1, 1);
+        DbInfo bounded = new DbInfo (p);
+        Table dept = bounded.getSchema ().getTable ("DEPT");
+        final Node good = Node.createURI (bounded.uri (new String[] {"1"},
+                                                       dept));
+        Node bad = Node.createURI (bounded.uri (new String[] {"abc"}, dept));
+        final ABoxGraph graph = new ABoxGraph (bounded);
+        try {
+            count (graph.find (new Triple (bad, Node.ANY, Node.ANY)));
+            fail ("a non-integer key was accepted");
+        }
+        catch (RuntimeException ex) {
+            // expected
+        }
+
+        // if the only connection of the pool was not released, this waits
+        // forever
+        final int found[] = {-1};
+        Thread t = new Thread () {
+            public void run () {
+                found[0] = count (graph.find (new Triple (good, Node.ANY,
+                                                          Node.ANY)));
+            }
+        };
+        t.setDaemon (true);
+        t.start ();
+        t.join (10000);
+        assertFalse ("the connection was not released", t.isAlive ());
+        assertEquals (2, found[0]);
+        p.connectionPool.close ();
+    }
+
+    /* (non javadoc)
+     * Return the number of elements of an iterator.
+     */
+    private static int count (Iterator i) {
+        int n = 0;
+        while (i.hasNext ()) {
+            i.next ();
+            n += 1;
+        }
+        return n;
+    }
+
+    /* (non javadoc)
+     * Return a query reading two rows of the table by primary key.
+     */
+    private SelectBuilder page (Table table, boolean after) {
+        SelectBuilder select = new SelectBuilder (info, table);
+        for (int k = 1; k <= table.primaryKey.size (); k++) {
+            select.addColumn (table.primaryKey.getColumn (k));
+        }
+        select.orderByPrimaryKey ();
+        select.setLowerBound (after);
+        select.setLimit (2);
+        return select;
+    }
+
+    /* (non javadoc)
+     * Return the N-Triples lines of the given triples.
+     */
+    private static HashSet lines (Iterator triples) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream ();
+        TripleWriter w = new NTriplesWriter (out);
+        while (triples.hasNext ()) w.write ((Triple) triples.next ());
+        w.close ();
+        return new HashSet (Arrays.asList (out.toString ("US-ASCII")
+                                              .split ("\n")));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * @author agent
+ *
+ * An in-memory HSQLDB database for the tests, with a connection to create
+ * and fill its tables, and the parameters of a DbInfo describing it.
+ */
+class HsqldbFixture {
+
+    private static int databases = 0;
+
+    /**
+     * A connection to the database, owned by the fixture.
+     */
+    final Connection cx;
+    private final String url;
+
+    private HsqldbFixture (String url) throws SQLException {
+        this.url = url;
+        this.cx = DriverManager.getConnection (url, "SA", "");
+    }
+
+    /**
+     * Create a new, empty database.
+     * @param name a prefix of the name of the database
+     * @return the fixture, to be closed by the tearDown of the test
+     * @throws Exception
+     */
+    static synchronized HsqldbFixture open (String name) throws Exception {
+        Class.forName ("org.hsqldb.jdbc.JDBCDriver");
+        return new HsqldbFixture ("jdbc:hsqldb:mem:" + name + (++databases));
+    }
+
+    /**
+     * Return the parameters of a DbInfo describing the PUBLIC schema of the
+     * database, to be completed by the test.
+     * @return new parameters
+     */
+    DbInfo.Parameters parameters () {
+        DbInfo.Parameters p = new DbInfo.Parameters ();
+        p.jdbcUrl = url;
+        p.jdbcUsername = "SA";
+        p.jdbcPassword = "";
+        p.schemaPattern = "PUBLIC";
+        return p;
+    }
+
+    /**
+     * Return a DbInfo describing the PUBLIC schema of the database, with the
+     * default parameters.
+     * @return a DbInfo
+     * @throws ClassNotFoundException
+     * @throws SQLException
+     */
+    DbInfo info () throws ClassNotFoundException, SQLException {
+        return new DbInfo (parameters ());
+    }
+
+    void execute (String sql) throws SQLException {
+        Statement s = cx.createStatement ();
+        try {
+            s.execute (sql);
+        }
+        finally {
+            s.close ();
+        }
+    }
+
+    /**
+     * Drop the database, and close the connection of the fixture.
+     * @throws SQLException
+     */
+    void close () throws SQLException {
+        try {
+            execute ("SHUTDOWN");
+        }
+        finally {
+            cx.close ();
+        }
+    }
+}
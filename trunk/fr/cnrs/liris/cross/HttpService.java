@@ -0,0 +1,508 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+import com.hp.hpl.jena.graph.Factory;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.vocabulary.OWL;
+import com.hp.hpl.jena.vocabulary.RDF;
+import com.hp.hpl.jena.vocabulary.RDFS;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * @author agent
+ *
+ * <p>An HTTP service serving the graphs of a database, keeping its DbInfo,
+ * its TBox and a pool of connections ready between requests.</p>
+ * <p>The service answers GET requests on the following paths:
+ * <table>
+ * <tr><td>/tbox</td><td>the TBox</td></tr>
+ * <tr><td>/abox</td><td>the whole ABox, streamed as it is extracted;
+ *     it can be restricted to some tables (<code>table</code> parameter) or
+ *     properties (<code>property</code> parameter), both repeatable; the
+ *     syntaxes which are not streamed require the table parameter</td></tr>
+ * <tr><td>/describe?uri=<em>uri</em></td><td>the triples whose subject is
+ *     the given row, table, column or foreign key</td></tr>
+ * </table></p>
+ * <p>Responses use chunked transfer encoding. Their syntax is negotiated
+ * with the Accept header of the request:
+ * <code>application/rdf+xml</code> (the default, except for /abox),
+ * <code>application/n-triples</code> (or <code>text/plain</code>, the
+ * default for /abox), <code>text/n3</code> and
+ * <code>application/x-cross-binary</code> (the format of BinaryRdfWriter).
+ * N-Triples and the binary format are written as triples are produced; the
+ * other syntaxes need the whole graph in memory, so /abox only serves them
+ * for some tables.</p>
+ * <p>Requests are served on virtual threads when the JVM supports them, so
+ * that the number of concurrent requests is only bounded by the number of
+ * connections to the database: a request waiting for a connection, or for
+ * the database, costs little. Each request uses at most one connection at
+ * a time.</p>
+ *
+ * @see fr.cnrs.liris.cross.VirtualThreads
+ */
+public class HttpService {
+
+    /**
+     * The supported media types, in order of preference, and their Jena
+     * syntax names.
+     */
+    private static final String[][] SYNTAXES = {
+        { "application/rdf+xml", "RDF/XML-ABBREV" },
+        { "application/n-triples", "N-TRIPLE" },
+        { "text/plain", "N-TRIPLE" },
+        { "text/n3", "N3" },
+        { "application/x-cross-binary", "binary" },
+    };
+
+    /**
+     * The same media types, with the streamed ones first, for /abox.
+     */
+    private static final String[][] STREAMED_SYNTAXES = {
+        { "application/n-triples", "N-TRIPLE" },
+        { "text/plain", "N-TRIPLE" },
+        { "application/x-cross-binary", "binary" },
+        { "application/rdf+xml", "RDF/XML-ABBREV" },
+        { "text/n3", "N3" },
+    };
+
+    private final DbInfo info;
+    /**
+     * The pool created by this service, if the parameters named none.
+     */
+    private final ConnectionPool pool;
+    private final TBoxGraph tbox;
+    private final HttpServer server;
+    private final ExecutorService workers;
+    /**
+     * A map whose keys are syntax names and values are pairs: the Schema
+     * from which the TBox was serialized, and the TBox serialized in that
+     * syntax (as a byte array). Entries are stale once DbInfo is refreshed.
+     */
+    private final Map tboxCache = new ConcurrentHashMap ();
+
+    /**
+     * Create a service for the database described by the given parameters.
+     * If they do not name a connection pool, one is created, with the given
+     * number of connections, and closed when the service stops; the
+     * parameters themselves are not modified.
+     * @param params the parameters of the DbInfo
+     * @param port the TCP port to listen to
+     * @param connections the number of connections to the database; this
+     *                    is also the number of threads serving requests
+     *                    when virtual threads are not available
+     * @throws ClassNotFoundException
+     * @throws java.sql.SQLException
+     * @throws IOException
+     */
+    public HttpService (DbInfo.Parameters params, int port, int connections)
+    throws ClassNotFoundException, java.sql.SQLException, IOException {
+        if (params.connectionPool == null) {
+            params = params.copy ();
+            params.connectionPool = new ConnectionPool (connections,
+                                                        connections);
+            this.pool = params.connectionPool;
+        } else {
+            this.pool = null;
+        }
+        boolean created = false;
+        try {
+            this.info = new DbInfo (params);
+            this.tbox = new TBoxGraph (info);
+            this.server = HttpServer.create (new InetSocketAddress (port), 0);
+            created = true;
+        }
+        finally {
+            if (!created && pool != null) {
+                try {
+                    pool.close ();
+                }
+                catch (java.sql.SQLException ex) {
+                    // the failure of the constructor is reported instead
+                }
+            }
+        }
+        this.workers = VirtualThreads.newExecutor (connections);
+        server.setExecutor (workers);
+        server.createContext ("/tbox", new Handler (SYNTAXES) {
+            void serve (HttpExchange ex, Map query, String[] syntax)
+            throws Exception {
+                serveTBox (ex, syntax);
+            }
+        });
+        server.createContext ("/abox", new Handler (STREAMED_SYNTAXES) {
+            void serve (HttpExchange ex, Map query, String[] syntax)
+            throws Exception {
+                serveABox (ex, query, syntax);
+            }
+        });
+        server.createContext ("/describe", new Handler (SYNTAXES) {
+            void serve (HttpExchange ex, Map query, String[] syntax)
+            throws Exception {
+                serveDescription (ex, query, syntax);
+            }
+        });
+    }
+
+    /**
+     * Start serving requests.
+     */
+    public void start () {
+        server.start ();
+        info.verbose (1, "listening on port "
+                         + server.getAddress ().getPort ()
+                         + (VirtualThreads.isAvailable ()
+                            ? " with virtual threads" : ""));
+    }
+
+    /**
+     * Stop serving requests, waiting at most the given delay for the
+     * current ones to complete.
+     * @param delay the delay in seconds
+     * @throws java.sql.SQLException
+     */
+    public void stop (int delay) throws java.sql.SQLException {
+        server.stop (delay);
+        workers.shutdown ();
+        if (pool != null) pool.close ();
+    }
+
+    private void serveTBox (HttpExchange ex, String[] syntax)
+    throws IOException {
+        Schema schema = info.getSchema ();
+        Object cached[] = (Object[]) tboxCache.get (syntax[1]);
+        byte data[];
+        if (cached != null && cached[0] == schema) {
+            data = (byte[]) cached[1];
+        } else {
+            // serializations are made once per schema, from a copy of the
+            // graph; should a refresh occur meanwhile, the next request
+            // will make it again
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream ();
+            Graph g = copy (tbox.find (Node.ANY, Node.ANY, Node.ANY));
+            write (g, syntax[1], bytes);
+            data = bytes.toByteArray ();
+            tboxCache.put (syntax[1], new Object[] { schema, data });
+        }
+        OutputStream out = begin (ex, syntax);
+        out.write (data);
+        out.close ();
+    }
+
+    private void serveABox (HttpExchange ex, Map query, String[] syntax)
+    throws IOException {
+        List properties = (List) query.get ("property");
+        List tables = (List) query.get ("table");
+        ABoxGraph abox = (properties == null) ? new ABoxGraph (info)
+                                              : new ABoxGraph (info, properties);
+        if (tables != null) {
+            List known = abox.getTableNames ();
+            Iterator i = tables.iterator ();
+            while (i.hasNext ()) {
+                if (!known.contains (i.next ())) {
+                    error (ex, 404, "Unknown table");
+                    return;
+                }
+            }
+        }
+
+        if (!syntax[1].equals ("binary") && !syntax[1].equals ("N-TRIPLE")) {
+            // these writers need the whole graph; it is copied first, since
+            // they would query the ABox for each subject, using a second
+            // connection while the first one is still in use
+            if (tables == null) {
+                error (ex, 406, "The whole ABox is only served in N-Triples"
+                                + " or binary; use the table parameter");
+                return;
+            }
+            Graph g = Factory.createDefaultGraph ();
+            Iterator i = tables.iterator ();
+            while (i.hasNext ()) {
+                addAll (g, abox.findInTable ((String) i.next ()));
+            }
+            OutputStream out = begin (ex, syntax);
+            write (g, syntax[1], out);
+            out.close ();
+            return;
+        }
+        OutputStream out = begin (ex, syntax);
+        TripleWriter w = writer (syntax[1], out);
+        if (tables == null) {
+            copy (abox.findHeader (), w);
+            tables = abox.getTableNames ();
+        }
+        Iterator i = tables.iterator ();
+        while (i.hasNext ()) {
+            copy (abox.findInTable ((String) i.next ()), w);
+        }
+        w.close ();
+    }
+
+    private void serveDescription (HttpExchange ex, Map query, String[] syntax)
+    throws IOException {
+        List uris = (List) query.get ("uri");
+        if (uris == null || uris.size () != 1) {
+            error (ex, 400, "Exactly one uri parameter is required");
+            return;
+        }
+        Node s = Node.createURI ((String) uris.get (0));
+        Object o;
+        try {
+            o = info.getEnc ().decodeUri (s.getURI (), info);
+        }
+        catch (RuntimeException e) {
+            o = null;
+        }
+        Graph g = Factory.createDefaultGraph ();
+        if (o instanceof String[] || s.getURI ().equals (info.getABoxUri ())) {
+            addAll (g, new ABoxGraph (info).find (s, Node.ANY, Node.ANY));
+        } else if (o != null || s.getURI ().equals (info.getTBoxUri ())) {
+            addAll (g, tbox.find (s, Node.ANY, Node.ANY));
+        }
+        if (g.size () == 0) {
+            error (ex, 404, "Unknown resource");
+            return;
+        }
+        OutputStream out = begin (ex, syntax);
+        write (g, syntax[1], out);
+        out.close ();
+    }
+
+    /**
+     * A handler parsing the query string, negotiating the syntax and
+     * reporting errors.
+     */
+    private abstract class Handler implements HttpHandler {
+
+        /**
+         * The syntaxes this handler can use, in order of preference.
+         */
+        private final String[][] syntaxes;
+
+        Handler (String[][] syntaxes) {
+            this.syntaxes = syntaxes;
+        }
+
+        public void handle (HttpExchange ex) throws IOException {
+            try {
+                if (!ex.getRequestMethod ().equals ("GET")) {
+                    error (ex, 405, "Only GET is supported");
+                    return;
+                }
+                String syntax[] = negotiate (
+                    ex.getRequestHeaders ().getFirst ("Accept"), syntaxes);
+                if (syntax == null) {
+                    error (ex, 406, "No acceptable syntax");
+                    return;
+                }
+                info.verbose (2, ex.getRequestURI ().toString ());
+                serve (ex, parseQuery (ex.getRequestURI ().getRawQuery ()),
+                       syntax);
+            }
+            catch (Exception e) {
+                info.verbose (1, ex.getRequestURI () + ": " + e);
+                // if the response has started, this aborts it
+                if (ex.getResponseCode () < 0) error (ex, 500, e.toString ());
+            }
+            finally {
+                ex.close ();
+            }
+        }
+
+        abstract void serve (HttpExchange ex, Map query, String[] syntax)
+        throws Exception;
+    }
+
+    /**
+     * Return the syntax best matching the given Accept header.
+     * @param accept the value of the header, or <code>null</code>
+     * @param syntaxes the available syntaxes, in order of preference
+     * @return an element of syntaxes, or <code>null</code> if none is
+     *         acceptable
+     */
+    static String[] negotiate (String accept, String[][] syntaxes) {
+        if (accept == null) return syntaxes[0];
+        String r[] = null;
+        float best = 0;
+        int bestSpecificity = -1;
+        StringTokenizer st = new StringTokenizer (accept, ",");
+        while (st.hasMoreTokens ()) {
+            String range = st.nextToken ().trim ();
+            float q = 1;
+            int semi = range.indexOf (';');
+            if (semi >= 0) {
+                String p = range.substring (semi + 1).trim ();
+                range = range.substring (0, semi).trim ();
+                if (p.startsWith ("q=")) {
+                    try {
+                        q = Float.parseFloat (p.substring (2));
+                    }
+                    catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (q <= 0) continue;
+            int specificity = range.endsWith ("/*") ? 1 : 2;
+            if (range.equals ("*/*")) specificity = 0;
+            for (int k = 0; k < syntaxes.length; k++) {
+                String type = syntaxes[k][0];
+                boolean match = specificity == 0
+                    || (specificity == 1
+                        && type.startsWith (range.substring (0, range.length () - 1)))
+                    || type.equals (range);
+                if (match && (q > best
+                              || (q == best && specificity > bestSpecificity))) {
+                    r = syntaxes[k];
+                    best = q;
+                    bestSpecificity = specificity;
+                    break;
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Parse a query string into a map whose keys are parameter names and
+     * values are lists of their values.
+     * @param query a raw query string, or <code>null</code>
+     * @return the parameters
+     */
+    static Map parseQuery (String query) throws UnsupportedEncodingException {
+        HashMap r = new HashMap ();
+        if (query == null) return r;
+        StringTokenizer st = new StringTokenizer (query, "&");
+        while (st.hasMoreTokens ()) {
+            String param = st.nextToken ();
+            int eq = param.indexOf ('=');
+            if (eq < 0) continue;
+            String name = URLDecoder.decode (param.substring (0, eq), "UTF-8");
+            String value = URLDecoder.decode (param.substring (eq+1), "UTF-8");
+            List l = (List) r.get (name);
+            if (l == null) {
+                l = new LinkedList ();
+                r.put (name, l);
+            }
+            l.add (value);
+        }
+        return r;
+    }
+
+    /* (non javadoc)
+     * Send the headers of a successful response, with chunked encoding, and
+     * return the stream of its body.
+     */
+    private static OutputStream begin (HttpExchange ex, String[] syntax)
+    throws IOException {
+        String type = syntax[0];
+        if (!syntax[1].equals ("binary")) type += "; charset=UTF-8";
+        ex.getResponseHeaders ().set ("Content-Type", type);
+        ex.getResponseHeaders ().set ("Vary", "Accept");
+        ex.sendResponseHeaders (200, 0);
+        return ex.getResponseBody ();
+    }
+
+    private static void error (HttpExchange ex, int code, String message)
+    throws IOException {
+        byte body[] = (message + "\n").getBytes ("UTF-8");
+        ex.getResponseHeaders ().set ("Content-Type",
+                                      "text/plain; charset=UTF-8");
+        ex.sendResponseHeaders (code, body.length);
+        OutputStream out = ex.getResponseBody ();
+        out.write (body);
+        out.close ();
+    }
+
+    private static TripleWriter writer (String syntax, OutputStream out)
+    throws IOException {
+        if (syntax.equals ("binary")) return new BinaryRdfWriter (out);
+        return new NTriplesWriter (out);
+    }
+
+    /* (non javadoc)
+     * Write the given graph in the given syntax, with the usual prefixes.
+     */
+    private void write (Graph g, String syntax, OutputStream out)
+    throws IOException {
+        if (syntax.equals ("binary") || syntax.equals ("N-TRIPLE")) {
+            TripleWriter w = writer (syntax, out);
+            copy (g.find (Node.ANY, Node.ANY, Node.ANY), w);
+            w.close ();
+            return;
+        }
+        Model m = ModelFactory.createModelForGraph (g);
+        m.setNsPrefix ("rdf",  RDF.getURI ());
+        m.setNsPrefix ("rdfs", RDFS.getURI ());
+        m.setNsPrefix ("xsd",  "http://www.w3.org/2001/XMLSchema#");
+        m.setNsPrefix ("owl",  OWL.getURI ());
+        m.setNsPrefix ("",     info.getTBoxBaseUri ());
+        m.setNsPrefix ("i",    info.getABoxBaseUri ());
+        m.write (out, syntax);
+        out.flush ();
+    }
+
+    private static void copy (ExtendedIterator i, TripleWriter w)
+    throws IOException {
+        try {
+            while (i.hasNext ()) w.write ((Triple) i.next ());
+        }
+        finally {
+            i.close ();
+        }
+    }
+
+    private static Graph copy (ExtendedIterator i) {
+        return addAll (Factory.createDefaultGraph (), i);
+    }
+
+    private static Graph addAll (Graph g, ExtendedIterator i) {
+        try {
+            while (i.hasNext ()) g.add ((Triple) i.next ());
+        }
+        finally {
+            i.close ();
+        }
+        return g;
+    }
+
+    /**
+     * Return the TBox of the served database.
+     * @return the TBox
+     */
+    public TBoxGraph getTBox () {
+        return tbox;
+    }
+
+    /**
+     * Return the description of the served database.
+     * @return the DbInfo
+     */
+    public DbInfo getInfo () {
+        return info;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * @author agent
+ *
+ * A RowSource reading a JDBC result set.
+ */
+class JdbcRowSource implements RowSource {
+
+    /**
+     * The result set rows are read from.
+     */
+    final ResultSet rs;
+    private final Statement stmt;
+
+    /**
+     * @param stmt the statement which produced the result set; it is closed
+     *             with this source
+     * @param rs the result set
+     */
+    JdbcRowSource (Statement stmt, ResultSet rs) {
+        this.stmt = stmt;
+        this.rs = rs;
+    }
+
+    public boolean next () throws SQLException {
+        return rs.next ();
+    }
+
+    public String getString (int column) throws SQLException {
+        return rs.getString (column);
+    }
+
+    public String getLiteral (int column, ColumnReader reader)
+    throws SQLException {
+        return reader.read (rs, column);
+    }
+
+    public Object getObject (int column) throws SQLException {
+        return rs.getObject (column);
+    }
+
+    public void close () throws SQLException {
+        rs.close ();
+        stmt.close ();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * @author agent
+ *
+ * The dialect of MySQL.
+ * The MySQL driver streams a result set row by row only when the fetch size
+ * is Integer.MIN_VALUE; any other value makes it load the whole result set
+ * in memory.
+ */
+public class MySqlDialect extends Dialect {
+
+    public String getName () {
+        return "mysql";
+    }
+
+    public String identifierQuote (DatabaseMetaData md) throws SQLException {
+        return "`";
+    }
+
+    public Statement createStreamingStatement (Connection cx, int fetchSize)
+    throws SQLException {
+        return super.createStreamingStatement (cx, Integer.MIN_VALUE);
+    }
+
+    public java.sql.PreparedStatement prepareStreamingStatement (
+        Connection cx, String sql, int fetchSize)
+    throws SQLException {
+        return super.prepareStreamingStatement (cx, sql, Integer.MIN_VALUE);
+    }
+
+    public boolean supportsBulkMetadata () {
+        return true;
+    }
+
+    public String primaryKeysQuery () {
+        return INFORMATION_SCHEMA_PRIMARY_KEYS
+             + " AND tc.table_schema=DATABASE()";
+    }
+
+    public String columnPrivilegesQuery () {
+        return INFORMATION_SCHEMA_COLUMN_PRIVILEGES
+             + " WHERE table_schema=DATABASE()";
+    }
+
+    public String enabledRolesQuery () {
+        // MySQL 8.0 or later
+        return INFORMATION_SCHEMA_ENABLED_ROLES;
+    }
+
+    public String tableFingerprintsQuery () {
+        // GROUP_CONCAT would be truncated on wide tables, hence the sums
+        return "SELECT t.table_schema AS table_schem, t.table_name,"
+             + " CONCAT_WS('|',"
+             + " IFNULL((SELECT SUM(CRC32(CONCAT_WS(':', c.column_name,"
+             + " c.column_type, c.is_nullable, c.ordinal_position)))"
+             + " FROM information_schema.columns c"
+             + " WHERE c.table_schema=t.table_schema"
+             + " AND c.table_name=t.table_name), 0),"
+             + " IFNULL((SELECT SUM(CRC32(CONCAT_WS(':', k.constraint_name,"
+             + " k.column_name, k.ordinal_position, k.referenced_table_name,"
+             + " k.referenced_column_name)))"
+             + " FROM information_schema.key_column_usage k"
+             + " WHERE k.table_schema=t.table_schema"
+             + " AND k.table_name=t.table_name), 0),"
+             + " IFNULL((SELECT SUM(CRC32(CONCAT_WS(':', s.index_name,"
+             + " s.column_name, s.seq_in_index, s.non_unique)))"
+             + " FROM information_schema.statistics s"
+             + " WHERE s.table_schema=t.table_schema"
+             + " AND s.table_name=t.table_name), 0)) AS fingerprint"
+             + " FROM information_schema.tables t"
+             + " WHERE t.table_schema=DATABASE() ORDER BY 1, 2";
+    }
+
+    public String rowEstimatesQuery () {
+        // exact for MyISAM, sampled for InnoDB
+        return "SELECT table_schema AS table_schem, table_name,"
+             + " table_rows AS row_count FROM information_schema.tables"
+             + " WHERE table_schema=DATABASE() AND table_rows IS NOT NULL";
+    }
+
+    public boolean appendLimit (StringBuffer sql, int limit) {
+        sql.append (" LIMIT ").append (limit);
+        return true;
+    }
+
+    public int[] appendKeysetCondition (StringBuffer sql, String[] columns) {
+        return appendRowValueCondition (sql, columns);
+    }
+
+    public int[] appendKeysetUpperCondition (StringBuffer sql,
+                                             String[] columns) {
+        return appendRowValueCondition (sql, columns, "<=");
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+ * @author agent
+ *
+ * <p>A TripleWriter producing N-Triples, one line per triple.</p>
+ * <p>The output is pure ASCII: other characters are written as
+ * <code>\\uXXXX</code> or <code>\\UXXXXXXXX</code> escapes, so it can be
+ * read by N-Triples parsers of any version, and cut at any line
+ * boundary.</p>
+ */
+public class NTriplesWriter implements TripleWriter {
+
+    private final Writer out;
+    private final StringBuffer line = new StringBuffer ();
+
+    /**
+     * @param out the stream to write to
+     * @throws IOException
+     */
+    public NTriplesWriter (OutputStream out) throws IOException {
+        this.out = new BufferedWriter (new OutputStreamWriter (out, "US-ASCII"),
+                                       1 << 16);
+    }
+
+    public void write (Triple t) throws IOException {
+        line.setLength (0);
+        appendNode (t.getSubject ());
+        line.append (' ');
+        appendNode (t.getPredicate ());
+        line.append (' ');
+        appendNode (t.getObject ());
+        line.append (" .\n");
+        out.write (line.toString ());
+    }
+
+    public void close () throws IOException {
+        out.close ();
+    }
+
+    private void appendNode (Node n) {
+        if (n.isURI ()) {
+            line.append ('<');
+            appendEscaped (n.getURI ());
+            line.append ('>');
+        } else if (n.isBlank ()) {
+            // blank node labels are restricted to letters and digits
+            line.append ("_:A");
+            String id = n.getBlankNodeId ().toString ();
+            for (int i = 0; i < id.length (); i++) {
+                char c = id.charAt (i);
+                if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                    || (c >= '0' && c <= '9')) {
+                    line.append (c);
+                } else {
+                    line.append ('x').append (Integer.toHexString (c))
+                        .append ('x');
+                }
+            }
+        } else if (n.isLiteral ()) {
+            line.append ('"');
+            appendEscaped (n.getLiteral ().getLexicalForm ());
+            line.append ('"');
+            String lang = n.getLiteral ().language ();
+            String dt = n.getLiteral ().getDatatypeURI ();
+            if (lang != null && lang.length () > 0) {
+                line.append ('@').append (lang);
+            } else if (dt != null) {
+                line.append ("^^<");
+                appendEscaped (dt);
+                line.append ('>');
+            }
+        } else {
+            throw new IllegalArgumentException ("Can not write node " + n);
+        }
+    }
+
+    private void appendEscaped (String s) {
+        for (int i = 0; i < s.length (); i++) {
+            char c = s.charAt (i);
+            switch (c) {
+                case '\\': line.append ("\\\\"); break;
+                case '"':  line.append ("\\\""); break;
+                case '\n': line.append ("\\n"); break;
+                case '\r': line.append ("\\r"); break;
+                case '\t': line.append ("\\t"); break;
+                default:
+                    if (c >= 0x20 && c < 0x7f) {
+                        line.append (c);
+                    } else if (Character.isHighSurrogate (c)
+                               && i+1 < s.length ()
+                               && Character.isLowSurrogate (s.charAt (i+1))) {
+                        int cp = Character.toCodePoint (c, s.charAt (++i));
+                        appendHex ("\\U", cp, 8);
+                    } else {
+                        appendHex ("\\u", c, 4);
+                    }
+            }
+        }
+    }
+
+    private void appendHex (String prefix, int value, int digits) {
+        line.append (prefix);
+        String hex = Integer.toHexString (value).toUpperCase ();
+        for (int k = hex.length (); k < digits; k++) line.append ('0');
+        line.append (hex);
+    }
+}
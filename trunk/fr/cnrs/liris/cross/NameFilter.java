@@ -0,0 +1,108 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.regex.Pattern;
+
+/**
+ * @author agent
+ *
+ * <p>A set of rules allowing or denying names, used to select the tables and
+ * columns of a database.</p>
+ * <p>A name is accepted if it matches one of the allow rules (or if there is
+ * none), and none of the deny rules. Each rule is a regular expression,
+ * which must match the whole name, or a glob pattern if prefixed by
+ * <code>glob:</code>, where <code>*</code> matches any sequence of
+ * characters and <code>?</code> any single character.</p>
+ * <p>Tables are matched by their name, and columns by their name prefixed
+ * with the name of their table and a dot: for example
+ * <code>glob:*.created_by</code> matches the column created_by of every
+ * table.</p>
+ *
+ * @see fr.cnrs.liris.cross.DbInfo.Parameters#tableFilter
+ * @see fr.cnrs.liris.cross.DbInfo.Parameters#columnFilter
+ */
+public class NameFilter {
+
+    private final ArrayList allowed = new ArrayList ();
+    private final ArrayList denied = new ArrayList ();
+
+    /**
+     * Add a rule accepting the names matching the given pattern.
+     * @param pattern a regular expression, or a glob pattern prefixed by
+     *                <code>glob:</code>
+     * @return this filter
+     */
+    public NameFilter allow (String pattern) {
+        allowed.add (compile (pattern));
+        return this;
+    }
+
+    /**
+     * Add a rule rejecting the names matching the given pattern.
+     * @param pattern a regular expression, or a glob pattern prefixed by
+     *                <code>glob:</code>
+     * @return this filter
+     */
+    public NameFilter deny (String pattern) {
+        denied.add (compile (pattern));
+        return this;
+    }
+
+    /**
+     * Add the given rule: a pattern prefixed by <code>+</code> to allow it,
+     * or by <code>-</code> (or nothing) to deny it.
+     * @param rule a rule, as given on the command line
+     * @return this filter
+     */
+    public NameFilter add (String rule) {
+        if (rule.startsWith ("+")) return allow (rule.substring (1));
+        if (rule.startsWith ("-")) return deny (rule.substring (1));
+        return deny (rule);
+    }
+
+    /**
+     * Return whether the given name is accepted by this filter.
+     * @param name a table name, or a column name prefixed by its table name
+     *             and a dot
+     * @return <code>true</code> if so, else <code>false</code>
+     */
+    public boolean accepts (String name) {
+        if (!allowed.isEmpty () && !matches (allowed, name)) return false;
+        return !matches (denied, name);
+    }
+
+    private static boolean matches (ArrayList patterns, String name) {
+        Iterator i = patterns.iterator ();
+        while (i.hasNext ()) {
+            if (((Pattern) i.next ()).matcher (name).matches ()) return true;
+        }
+        return false;
+    }
+
+    /* (non javadoc)
+     * Compile a rule pattern, translating glob patterns to regular
+     * expressions.
+     */
+    private static Pattern compile (String pattern) {
+        if (!pattern.startsWith ("glob:")) return Pattern.compile (pattern);
+        StringBuffer sb = new StringBuffer ();
+        for (int k = 5; k < pattern.length (); k++) {
+            char c = pattern.charAt (k);
+            if (c == '*') {
+                sb.append (".*");
+            } else if (c == '?') {
+                sb.append ('.');
+            } else if (Character.isLetterOrDigit (c) || c == '_') {
+                sb.append (c);
+            } else {
+                sb.append ('\\').append (c);
+            }
+        }
+        return Pattern.compile (sb.toString ());
+    }
+}
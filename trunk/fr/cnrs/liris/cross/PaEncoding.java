@@ -70,9 +70,24 @@ public class PaEncoding implements Encoding {
 
 	public String decode (String str) {
 		StringBuffer sb = new StringBuffer ();
+		decode (str, 0, str.length (), sb);
+		return sb.toString ();
+	}
+
+	/**
+	 * Decode the URI component str[start..end[ into the given buffer,
+	 * without copying it first.
+	 * Since encode does not close an escape sequence at the end of the
+	 * string, the last escaped character ends with the component.
+	 * @param str a string
+	 * @param start the start of the URI component
+	 * @param end the end of the URI component
+	 * @param sb the buffer
+	 */
+	protected void decode (String str, int start, int end, StringBuffer sb) {
 		boolean escape = false;
 		int charval = 0;
-		for (int i = 0; i < str.length(); i++)
+		for (int i = start; i < end; i++)
 		{
 			char c = str.charAt (i);
 			if (escape)
@@ -84,6 +99,7 @@ public class PaEncoding implements Encoding {
 					charval += Character.digit(c, 16);
 				} else if (c == ESCAPE_SEP) {
 					 sb.append ((char)charval);
+					 charval = 0;
 				} else if (c == ESCAPE_CHAR) {
 					sb.append ((char)charval);
 					escape = false;
@@ -101,8 +117,13 @@ public class PaEncoding implements Encoding {
 				} else throw new RuntimeException ("Invalid character "+c);
 			}
 		}
-		if (escape) throw new RuntimeException ("Unexpected end of string "+str);
-		return sb.toString ();
+		if (escape) {
+			char last = str.charAt (end - 1);
+			if (last == ESCAPE_CHAR || last == ESCAPE_SEP) {
+				throw new RuntimeException ("Unexpected end of string "+str);
+			}
+			sb.append ((char)charval);
+		}
 	}
 	
 	public String uri (Table table, String base) {
@@ -126,99 +147,91 @@ public class PaEncoding implements Encoding {
 	}
 
 	public String uri (java.sql.ResultSet rs, Iterator columnNames, Table table, String base) {
-		StringBuffer r = new StringBuffer(base);
-		r.append("r").append(SEPARATOR).append(encode (table.name));
+		java.util.ArrayList values = new java.util.ArrayList ();
 		while (columnNames.hasNext()) {
-			String value;
 			try {
-				value = rs.getString(columnNames.next().toString());
+				values.add (rs.getString(columnNames.next().toString()));
 			}
 			catch (java.sql.SQLException ex) {
 				throw new RuntimeException(ex);
 			}
-            if (value == null) return null;
-			r.append(SEPARATOR).append(encode(value));
+		}
+		return uri ((String[]) values.toArray (new String[values.size ()]),
+		            table, base);
+	}
+
+	public String uri (String[] values, Table table, String base) {
+		StringBuffer r = new StringBuffer(base);
+		r.append("r").append(SEPARATOR).append(encode (table.name));
+		for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) return null;
+			r.append(SEPARATOR).append(encode(values[i]));
 		}
 		return r.toString();
 	}
 	
-	/* (non javadoc)
-     * A string tokenizer accepting multicharacters separators. 
+	/**
+	 * The prefix of row URIs, after the base URI.
 	 */
-	private class AdvancedStringTokenizer {
-		private String str;
-		private String separator;
-		private int crt = 0;
-		
-		AdvancedStringTokenizer (String str, String separator) {
-			this.str = str;
-			this.separator = separator;
-		}
-		
-		void setSeparator (String separator) {
-			this.separator = separator;
+	private static final String ROW = "r" + SEPARATOR;
+
+	/**
+	 * Return the object corresponding to the given URI.
+	 * The URIs of tables, columns and keys are looked up in the index of
+	 * the schema; row URIs are parsed in place, only allocating the table
+	 * name and the values.
+	 */
+	public Object decodeUri (String uri, DbInfo info) {
+		Schema schema = info.getSchema ();
+		Schema.Term term = schema.getTerm (uri);
+		if (term != null) {
+			if (term.role != Schema.Term.FOREIGN_KEY_PAIR) return term.object;
+			ForeignKeyPair pair = (ForeignKeyPair) term.object;
+			return new ForeignKey[] {pair.first, pair.second};
 		}
-		
-		boolean hasMoreTokens () {
-			return (crt != -1);
+
+		String aboxBase = info.getABoxBaseUri ();
+		String tboxBase = info.getTBoxBaseUri ();
+		int start;
+		if (uri.startsWith (aboxBase)) {
+			start = aboxBase.length ();
+		} else if (uri.startsWith (tboxBase)) {
+			start = tboxBase.length ();
+		} else return null;
+
+		if (!uri.startsWith (ROW, start)) {
+			// not a row, and not in the index: an unknown table, column or
+			// key, unless the URI is malformed
+			if (uri.length () > start
+			 && "Tckp".indexOf (uri.charAt (start)) >= 0
+			 && uri.startsWith (SEPARATOR, start + 1)) {
+				return null;
+			}
+			throw new java.lang.IllegalArgumentException (uri);
 		}
-		
-		String nextToken () {
-			if (crt == -1) throw new java.util.NoSuchElementException ();
-			int next = str.indexOf (separator, crt);
-			String r;
-			if (next == -1) r = str.substring (crt);
-			else r = str.substring (crt, next);
-			crt = next + separator.length ();
-			return r;
+
+		int p = start + ROW.length ();
+		int sep = uri.indexOf (SEPARATOR, p);
+		StringBuffer sb = new StringBuffer ();
+		decode (uri, p, (sep < 0) ? uri.length () : sep, sb);
+		Table table = schema.getTable (sb.toString ());
+		if (table == null) return null;
+
+		int count = 0;
+		for (int i = sep; i >= 0;
+		     i = uri.indexOf (SEPARATOR, i + SEPARATOR.length ())) {
+			count += 1;
 		}
-		
-		int countTokens () {
-			int c = crt;
-			int r = 0;
-			while (c != -1) {
-				r += 1;
-				int next = str.indexOf(separator, c);
-				if (next == -1) c = -1;
-				else c = next + separator.length ();
-			}
-			return r;
-		}		
-	}
-	
-	public Object decodeUri (String uri, DbInfo info) {
-		String aboxBase = info.getABoxBaseUri ();
-        String tboxBase = info.getTBoxBaseUri ();
-		if (uri.startsWith(aboxBase)) {
-            uri = uri.substring(aboxBase.length());
-        } else if (uri.startsWith(tboxBase)) {
-            uri = uri.substring(tboxBase.length());
-        } else return null; 
-		
-		AdvancedStringTokenizer st =
-			new AdvancedStringTokenizer (uri, SEPARATOR);
-		char type = st.nextToken().charAt (0) ;
-		Table table = (Table) info.tables.get (st.nextToken ());
-		switch (type) {
-			case 'T':
-				return table;
-			case 'c':
-				return table.getColumn (st.nextToken ());
-			case 'k':
-				return table.foreignKeys.get (st.nextToken ());
-			case 'p':
-				ForeignKey rl[] = new ForeignKey[2];
-				rl[0] = (ForeignKey) table.foreignKeys.get (st.nextToken ());
-				rl[1] = (ForeignKey) table.foreignKeys.get (st.nextToken ());
-				return rl;
-			case 'r':
-				String rw[] = new String[st.countTokens () + 1];
-				rw[0] = table.name ;
-				for (int i=1; st.hasMoreTokens(); i++) {
-					rw[i] = st.nextToken ();
-				}
-				return rw;
+		String rw[] = new String[count + 1];
+		rw[0] = table.name;
+		for (int k = 1; sep >= 0; k++) {
+			int from = sep + SEPARATOR.length ();
+			int next = uri.indexOf (SEPARATOR, from);
+			sb.setLength (0);
+			decode (uri, from, (next < 0) ? uri.length () : next, sb);
+			rw[k] = sb.toString ();
+			sep = next;
 		}
-		throw new java.lang.IllegalArgumentException (uri);
+		return rw;
 	}
 }
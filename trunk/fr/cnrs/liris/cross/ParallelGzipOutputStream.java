@@ -0,0 +1,152 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @author agent
+ *
+ * <p>An output stream compressing its data in gzip format with several
+ * threads.</p>
+ * <p>The data is cut into chunks of a fixed size, each chunk being
+ * compressed independently, on a pool of worker threads, into a gzip
+ * member. The members are written in order to the underlying channel; the
+ * result is a valid multi-member gzip file, which gunzip (and
+ * java.util.zip.GZIPInputStream) decompresses as a whole.</p>
+ * <p>The number of chunks being compressed at a time is bounded, so the
+ * memory used is about <code>2 * threads * chunkSize</code>.</p>
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+    /**
+     * The default chunk size (4 MB).
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 22;
+
+    private final WritableByteChannel channel;
+    private final ExecutorService workers;
+    private final int maxPending;
+    private final int chunkSize;
+    private final LinkedList pending = new LinkedList ();
+    private byte[] chunk;
+    private int count = 0;
+    private boolean closed = false;
+
+    /**
+     * @param channel the channel to write the compressed data to
+     * @param threads the number of compression threads
+     * @param chunkSize the size of the uncompressed chunks
+     */
+    public ParallelGzipOutputStream (WritableByteChannel channel,
+                                     int threads, int chunkSize) {
+        this.channel = channel;
+        this.workers = Executors.newFixedThreadPool (threads);
+        this.maxPending = 2 * threads;
+        this.chunkSize = chunkSize;
+        this.chunk = new byte[chunkSize];
+    }
+
+    /**
+     * @param channel the channel to write the compressed data to
+     * @param threads the number of compression threads
+     */
+    public ParallelGzipOutputStream (WritableByteChannel channel, int threads) {
+        this (channel, threads, DEFAULT_CHUNK_SIZE);
+    }
+
+    public void write (int b) throws IOException {
+        if (count == chunkSize) submit ();
+        chunk[count++] = (byte) b;
+    }
+
+    public void write (byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == chunkSize) submit ();
+            int n = Math.min (len, chunkSize - count);
+            System.arraycopy (b, off, chunk, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Does nothing: chunks are only cut when full or when the stream is
+     * closed, since every cut costs a gzip member header and a reset of the
+     * compression dictionary.
+     */
+    public void flush () throws IOException {
+    }
+
+    public void close () throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            if (count > 0) submit ();
+            while (!pending.isEmpty ()) writeOldest ();
+        }
+        finally {
+            // after a failure, the chunks not written yet are abandoned
+            Iterator i = pending.iterator ();
+            while (i.hasNext ()) ((Future) i.next ()).cancel (true);
+            pending.clear ();
+            workers.shutdown ();
+            channel.close ();
+        }
+    }
+
+    /* (non javadoc)
+     * Hand the current chunk to a worker, writing finished members first if
+     * too many chunks are pending.
+     */
+    private void submit () throws IOException {
+        final byte[] data = chunk;
+        final int len = count;
+        pending.add (workers.submit (new Callable () {
+            public Object call () throws IOException {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream (len / 2);
+                GZIPOutputStream gz = new GZIPOutputStream (bytes, 1 << 16);
+                gz.write (data, 0, len);
+                gz.close ();
+                return bytes.toByteArray ();
+            }
+        }));
+        chunk = new byte[chunkSize];
+        count = 0;
+        while (pending.size () > maxPending) writeOldest ();
+    }
+
+    private void writeOldest () throws IOException {
+        Future f = (Future) pending.removeFirst ();
+        byte[] member;
+        try {
+            member = (byte[]) f.get ();
+        }
+        catch (InterruptedException ex) {
+            throw new InterruptedIOException (ex.toString ());
+        }
+        catch (ExecutionException ex) {
+            IOException r = new IOException ("Compression failed");
+            r.initCause (ex.getCause ());
+            throw r;
+        }
+        ByteBuffer buf = ByteBuffer.wrap (member);
+        while (buf.hasRemaining ()) channel.write (buf);
+    }
+}
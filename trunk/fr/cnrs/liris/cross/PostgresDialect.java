@@ -0,0 +1,133 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.copy.CopyOut;
+
+/**
+ * @author agent
+ *
+ * The dialect of PostgreSQL.
+ * The PostgreSQL driver only uses a server side cursor, honouring the fetch
+ * size, when auto-commit is off.
+ * Bulk export uses the COPY API of the driver (version 8.4 or later).
+ */
+public class PostgresDialect extends Dialect {
+
+    public String getName () {
+        return "postgresql";
+    }
+
+    public Statement createStreamingStatement (Connection cx, int fetchSize)
+    throws SQLException {
+        cx.setAutoCommit (false);
+        return super.createStreamingStatement (cx, fetchSize);
+    }
+
+    public java.sql.PreparedStatement prepareStreamingStatement (
+        Connection cx, String sql, int fetchSize)
+    throws SQLException {
+        cx.setAutoCommit (false);
+        return super.prepareStreamingStatement (cx, sql, fetchSize);
+    }
+
+    public void endStreaming (Connection cx) throws SQLException {
+        if (!cx.getAutoCommit ()) {
+            cx.rollback ();
+            cx.setAutoCommit (true);
+        }
+    }
+
+    RowSource bulkExport (Connection cx, String sql) throws SQLException {
+        CopyManager copy = ((PGConnection) cx).getCopyAPI ();
+        final CopyOut out = copy.copyOut ("COPY (" + sql + ") TO STDOUT");
+        return new CopyRowSource (new CopyRowSource.Stream () {
+            public byte[] readRow () throws SQLException {
+                return out.readFromCopy ();
+            }
+            public void close () throws SQLException {
+                if (out.isActive ()) out.cancelCopy ();
+            }
+        });
+    }
+
+    public boolean supportsBulkMetadata () {
+        return true;
+    }
+
+    public String primaryKeysQuery () {
+        return INFORMATION_SCHEMA_PRIMARY_KEYS;
+    }
+
+    public String columnPrivilegesQuery () {
+        return INFORMATION_SCHEMA_COLUMN_PRIVILEGES;
+    }
+
+    public String enabledRolesQuery () {
+        return INFORMATION_SCHEMA_ENABLED_ROLES;
+    }
+
+    public String tableFingerprintsQuery () {
+        return "SELECT n.nspname AS table_schem, c.relname AS table_name,"
+             + " md5(concat_ws('|', c.relacl::text,"
+             + " (SELECT string_agg(a.attname || ':' || a.atttypid || ':'"
+             + " || a.attnotnull || ':' || a.attnum || ':'"
+             + " || coalesce(a.attacl::text, ''), ',' ORDER BY a.attnum)"
+             + " FROM pg_attribute a WHERE a.attrelid = c.oid"
+             + " AND a.attnum > 0 AND NOT a.attisdropped),"
+             + " (SELECT string_agg(x.conname || ':'"
+             + " || pg_get_constraintdef(x.oid), ',' ORDER BY x.conname)"
+             + " FROM pg_constraint x WHERE x.conrelid = c.oid),"
+             + " (SELECT string_agg(i.indexrelid || ':' || i.indisunique, ','"
+             + " ORDER BY i.indexrelid)"
+             + " FROM pg_index i WHERE i.indrelid = c.oid))) AS fingerprint"
+             + " FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace"
+             + " WHERE c.relkind IN ('r', 'p')"
+             + " AND n.nspname NOT IN ('pg_catalog', 'information_schema')"
+             + " ORDER BY 1, 2";
+    }
+
+    public String rowEstimatesQuery () {
+        // reltuples is -1 (or 0 before PostgreSQL 14) until the table is
+        // analyzed, in which case it is counted
+        return "SELECT n.nspname AS table_schem, c.relname AS table_name,"
+             + " c.reltuples::bigint AS row_count"
+             + " FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace"
+             + " WHERE c.relkind = 'r' AND c.reltuples > 0"
+             + " AND n.nspname NOT IN ('pg_catalog', 'information_schema')";
+    }
+
+    public boolean appendLimit (StringBuffer sql, int limit) {
+        sql.append (" LIMIT ").append (limit);
+        return true;
+    }
+
+    public String rowIdColumn () {
+        // the physical location of the row, which changes when it is
+        // updated or the table is vacuumed (full)
+        return "ctid";
+    }
+
+    public boolean appendTableSample (StringBuffer sql, double percent) {
+        // since PostgreSQL 9.5
+        sql.append (" TABLESAMPLE BERNOULLI (").append (percent).append (")");
+        return true;
+    }
+
+    public int[] appendKeysetCondition (StringBuffer sql, String[] columns) {
+        return appendRowValueCondition (sql, columns);
+    }
+
+    public int[] appendKeysetUpperCondition (StringBuffer sql,
+                                             String[] columns) {
+        return appendRowValueCondition (sql, columns, "<=");
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author agent
+ *
+ * <p>The SELECT privileges of the current user on the tables and columns
+ * of a database, read in bulk and indexed in memory.</p>
+ * <p>The privileges on all the tables are read by a single call to
+ * getTablePrivileges, and the privileges on all the columns by a single
+ * query when the dialect provides one (else by one call to
+ * getColumnPrivileges per table, rather than per column). The user name,
+ * and the roles the user is a member of, are read once.</p>
+ * <p>As before, an object for which no privilege at all is reported is
+ * assumed to be accessible, since some drivers do not report privileges.</p>
+ * <p>The index is filled before being shared, except for the column
+ * privileges of a table, which are read by the (single) worker reading that
+ * table; hence the concurrent maps.</p>
+ *
+ * @see fr.cnrs.liris.cross.Dialect#columnPrivilegesQuery()
+ * @see fr.cnrs.liris.cross.Dialect#enabledRolesQuery()
+ */
+class PrivilegeIndex {
+
+    /**
+     * The grantees standing for the current user: its name, PUBLIC and its
+     * roles, as normalized by grantee.
+     */
+    private final Set grantees = new HashSet ();
+    /**
+     * A map whose keys are table keys and values are whether SELECT is
+     * granted (as Boolean), for the tables with some privilege reported.
+     */
+    private final Map tables = new ConcurrentHashMap ();
+    /**
+     * The same as tables, for column keys.
+     */
+    private final Map columns = new ConcurrentHashMap ();
+    /**
+     * Whether the privileges of all the columns have been read.
+     */
+    private boolean allColumns = false;
+    /**
+     * The keys of the tables whose column privileges have been read.
+     */
+    private final Map loaded = new ConcurrentHashMap ();
+
+    /**
+     * Read the grantees standing for the current user.
+     * @param info the DbInfo being built
+     * @param cx a connection to the database
+     * @throws SQLException
+     */
+    PrivilegeIndex (DbInfo info, java.sql.Connection cx) throws SQLException {
+        DatabaseMetaData md = cx.getMetaData ();
+        grantees.add (grantee (md.getUserName ()));
+        grantees.add ("PUBLIC");
+        String query = info.dialect.enabledRolesQuery ();
+        if (query != null) {
+            java.sql.Statement s = cx.createStatement ();
+            try {
+                ResultSet rs = s.executeQuery (query);
+                while (rs.next ()) grantees.add (grantee (rs.getString (1)));
+                rs.close ();
+            }
+            catch (SQLException ex) {
+                // e.g. a version of the database without roles
+                info.verbose (2, "roles not available: " + ex.getMessage ());
+            }
+            finally {
+                s.close ();
+            }
+        }
+        info.verbose (3, "privileges granted to " + grantees);
+    }
+
+    /**
+     * Read the privileges on the tables matching the given patterns.
+     * @param md the metadata of the database
+     * @param catalog a catalog name, or <code>null</code>
+     * @param schemaPattern a schema name pattern
+     * @param tablePattern a table name pattern
+     * @throws SQLException
+     */
+    void readTables (DatabaseMetaData md, String catalog,
+                     String schemaPattern, String tablePattern)
+    throws SQLException {
+        ResultSet rs = md.getTablePrivileges (catalog, schemaPattern,
+                                              tablePattern);
+        while (rs.next ()) {
+            record (tables, key (rs.getString ("table_schem"),
+                                 rs.getString ("table_name"), null), rs);
+        }
+        rs.close ();
+    }
+
+    /**
+     * Read the privileges on all the columns, with the given query.
+     * @param cx a connection to the database
+     * @param query the query of the dialect
+     * @throws SQLException
+     * @see fr.cnrs.liris.cross.Dialect#columnPrivilegesQuery()
+     */
+    void readColumns (java.sql.Connection cx, String query)
+    throws SQLException {
+        java.sql.Statement s = cx.createStatement ();
+        ResultSet rs = s.executeQuery (query);
+        while (rs.next ()) {
+            record (columns, key (rs.getString ("table_schem"),
+                                  rs.getString ("table_name"),
+                                  rs.getString ("column_name")), rs);
+        }
+        rs.close ();
+        s.close ();
+        allColumns = true;
+    }
+
+    /**
+     * Return whether the current user can read the given table.
+     * @param schema the schema of the table
+     * @param name the name of the table
+     * @return <code>true</code> if so, or if no privilege is reported for
+     *         that table
+     */
+    boolean canRead (String schema, String name) {
+        Boolean b = (Boolean) tables.get (key (schema, name, null));
+        return b == null || b.booleanValue ();
+    }
+
+    /**
+     * Return whether the current user can read the given column. Unless
+     * the privileges of all the columns have been read, those of the columns
+     * of the table are read at the first call for that table.
+     * @param md the metadata of the database
+     * @param table the table
+     * @param column the name of the column
+     * @return <code>true</code> if so, or if no privilege is reported for
+     *         that column
+     * @throws SQLException
+     */
+    boolean canRead (DatabaseMetaData md, SchemaBuilder.TableSpec table,
+                     String column)
+    throws SQLException {
+        if (!allColumns) {
+            String k = key (table.schema, table.name, null);
+            if (!loaded.containsKey (k)) {
+                ResultSet rs = md.getColumnPrivileges (table.catalog,
+                                                       table.schema,
+                                                       table.name, "%");
+                while (rs.next ()) {
+                    record (columns, key (table.schema, table.name,
+                                          rs.getString ("column_name")), rs);
+                }
+                rs.close ();
+                loaded.put (k, Boolean.TRUE);
+            }
+        }
+        Boolean b = (Boolean) columns.get (key (table.schema, table.name,
+                                                column));
+        return b == null || b.booleanValue ();
+    }
+
+    /* (non javadoc)
+     * Record a privilege row in the given map.
+     */
+    private void record (Map map, String key, ResultSet rs)
+    throws SQLException {
+        if (Boolean.TRUE.equals (map.get (key))) return;
+        boolean granted = "SELECT".equals (rs.getString ("privilege"))
+                       && grantees.contains (grantee (rs.getString ("grantee")));
+        map.put (key, Boolean.valueOf (granted));
+    }
+
+    private static String key (String schema, String table, String column) {
+        StringBuffer sb = new StringBuffer ();
+        if (schema != null) sb.append (schema);
+        sb.append ('\0').append (table);
+        if (column != null) sb.append ('\0').append (column);
+        return sb.toString ();
+    }
+
+    /* (non javadoc)
+     * Normalize a grantee, since some databases (e.g. MySQL) quote the user
+     * and host names in privileges but not in the user name.
+     */
+    private static String grantee (String name) {
+        if (name == null) return "";
+        StringBuffer sb = new StringBuffer ();
+        for (int k = 0; k < name.length (); k++) {
+            char c = name.charAt (k);
+            if (c != '\'' && c != '`' && c != '"') sb.append (c);
+        }
+        return sb.toString ();
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.util.HashSet;
+import java.util.Iterator;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.vocabulary.OWL;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+/**
+ * @author agent
+ *
+ * <p>The description of the part of the ABox a query is interested in.</p>
+ * <p>A projection is built from the predicates (and possibly the rdf:type
+ * objects) a query can match; ABoxGraph uses it to decide which tables to
+ * scan, and which columns and joins to put in the SQL queries.</p>
+ *
+ * @see fr.cnrs.liris.cross.ABoxGraph
+ */
+class Projection {
+
+    /**
+     * The projection including the whole ABox.
+     */
+    static final Projection ALL = new Projection (null, true);
+
+    private final Schema schema;
+    private final boolean all;
+    /**
+     * The URIs of the predicates included in this projection.
+     */
+    private final HashSet predicates = new HashSet ();
+    /**
+     * The tables to be scanned.
+     */
+    private final HashSet tables = new HashSet ();
+    /**
+     * The tables for which rdf:type triples are required (rule 1).
+     */
+    private final HashSet typedTables = new HashSet ();
+    /**
+     * The columns for which data property triples are required (rule 2).
+     */
+    private final HashSet columns = new HashSet ();
+    /**
+     * The foreign keys for which triples are required (rule 3).
+     */
+    private final HashSet foreignKeys = new HashSet ();
+    /**
+     * The URIs of the foreign key pairs for which triples are required
+     * (rule 4).
+     */
+    private final HashSet pairs = new HashSet ();
+
+    private Projection (Schema schema, boolean all) {
+        this.schema = schema;
+        this.all = all;
+    }
+
+    /**
+     * Construct an empty projection for the given snapshot of a database
+     * description.
+     * @param schema the snapshot of the description to use, which must
+     *               be the one used to scan the tables
+     */
+    Projection (Schema schema) {
+        this (schema, false);
+    }
+
+    /**
+     * Add the given predicate to this projection.
+     * If the predicate is rdf:type and object is a concrete URI, only the
+     * table identified by that URI is included.
+     * @param uri the URI of the predicate
+     * @param object the object of the pattern, or Node.ANY
+     */
+    void addPredicate (String uri, Node object) {
+        if (all) throw new UnsupportedOperationException ();
+        predicates.add (uri);
+
+        if (uri.equals (RDF.type.getURI ())) {
+            if (object.isURI ()) {
+                Schema.Term term = schema.getTerm (object.getURI ());
+                if (term != null && term.role == Schema.Term.TABLE) {
+                    typedTables.add (term.table);
+                    tables.add (term.table);
+                }
+            } else {
+                typedTables.addAll (schema.tables.values ());
+                tables.addAll (schema.tables.values ());
+            }
+        } else if (uri.equals (OWL.sameAs.getURI ())) {
+            Iterator i = schema.tables.values ().iterator ();
+            while (i.hasNext ()) {
+                Table table = (Table) i.next ();
+                Iterator j = table.foreignKeys.values ().iterator ();
+                while (j.hasNext ()) {
+                    ForeignKey fk = (ForeignKey) j.next ();
+                    if (fk.subsumesPrimaryKey ()) {
+                        foreignKeys.add (fk);
+                        tables.add (table);
+                    }
+                }
+            }
+        } else {
+            Schema.Term term = schema.getTerm (uri);
+            if (term == null) return;
+            switch (term.role) {
+                case Schema.Term.COLUMN:
+                    columns.add (term.object);
+                    tables.add (term.table);
+                    break;
+                case Schema.Term.FOREIGN_KEY:
+                    ForeignKey fk = (ForeignKey) term.object;
+                    if (!fk.subsumesPrimaryKey ()) {
+                        foreignKeys.add (fk);
+                        tables.add (term.table);
+                    }
+                    break;
+                case Schema.Term.FOREIGN_KEY_PAIR:
+                    pairs.add (uri);
+                    tables.add (term.table);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Return whether triples with the given predicate are included.
+     * @param predicate a predicate node
+     * @return <code>true</code> if so, else <code>false</code>
+     */
+    boolean includesPredicate (Node predicate) {
+        return all || predicates.contains (predicate.getURI ());
+    }
+
+    /**
+     * Return whether the given table has to be scanned.
+     * @param table a table
+     * @return <code>true</code> if so, else <code>false</code>
+     */
+    boolean includes (Table table) {
+        return all || tables.contains (table);
+    }
+
+    /**
+     * Return whether rdf:type triples are required for the given table.
+     * @param table a table
+     * @return <code>true</code> if so, else <code>false</code>
+     */
+    boolean includesType (Table table) {
+        return all || typedTables.contains (table);
+    }
+
+    /**
+     * Return whether data property triples are required for the given
+     * column.
+     * @param column a column
+     * @return <code>true</code> if so, else <code>false</code>
+     */
+    boolean includes (Column column) {
+        return all || columns.contains (column);
+    }
+
+    /**
+     * Return whether rule 3 triples are required for the given foreign key.
+     * @param fk a foreign key
+     * @return <code>true</code> if so, else <code>false</code>
+     */
+    boolean includes (ForeignKey fk) {
+        return all || foreignKeys.contains (fk);
+    }
+
+    /**
+     * Return whether rule 4 triples are required for the given foreign key
+     * pair.
+     * @param pair a foreign key pair
+     * @return <code>true</code> if so, else <code>false</code>
+     */
+    boolean includes (ForeignKeyPair pair) {
+        return all || pairs.contains (pair.uri);
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * @author agent
+ *
+ * <p>The number of rows of the tables of a database, on which the
+ * statistics of the ABox are based.</p>
+ * <p>The estimations maintained by the database are read at once, the
+ * first time a count is needed, if the dialect provides a query for them;
+ * the tables which have none are counted with <code>COUNT(*)</code> when
+ * needed. Counts are kept until they are cleared, and the counts of the
+ * tables which change on a refresh of DbInfo are forgotten.</p>
+ * <p>No lock is held while the database is queried: each count, and the
+ * estimations, are computed once by a FutureTask, which the other threads
+ * needing them wait for.</p>
+ *
+ * @see fr.cnrs.liris.cross.Dialect#rowEstimatesQuery()
+ * @see fr.cnrs.liris.cross.DbInfo#refreshStatistics()
+ */
+class RowCounts {
+
+    private final DbInfo info;
+    /**
+     * A map whose keys are table names, prefixed by their schema and a
+     * colon, and values are FutureTasks computing Long counts.
+     */
+    private final ConcurrentHashMap counts = new ConcurrentHashMap ();
+    /**
+     * The task reading the estimations, replaced on clear.
+     */
+    private volatile FutureTask estimates = newEstimates ();
+
+    private static final Long AMBIGUOUS = new Long (Statistics.UNKNOWN);
+
+    RowCounts (DbInfo info) {
+        this.info = info;
+    }
+
+    /**
+     * Return the number of rows of the given table.
+     * @param table a table
+     * @return an estimation of the number of rows, or Statistics.UNKNOWN if
+     *         it could not be obtained
+     */
+    long get (final Table table) {
+        String key = table.schema + ":" + table.name;
+        FutureTask task = (FutureTask) counts.get (key);
+        if (task == null) {
+            FutureTask created = new FutureTask (new Callable () {
+                public Object call () throws SQLException {
+                    Long r = estimate (table);
+                    return (r != null) ? r : new Long (count (table));
+                }
+            });
+            task = (FutureTask) counts.putIfAbsent (key, created);
+            if (task == null) {
+                task = created;
+                task.run ();
+            }
+        }
+        try {
+            return ((Long) task.get ()).longValue ();
+        }
+        catch (ExecutionException ex) {
+            // counted again next time
+            counts.remove (key, task);
+            info.verbose (1, "could not count rows of " + table.name + ": "
+                             + ex.getCause ().getMessage ());
+            return Statistics.UNKNOWN;
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread ().interrupt ();
+            return Statistics.UNKNOWN;
+        }
+    }
+
+    /**
+     * Forget the counts of the given tables, so that they are counted again.
+     * @param tableNames a set of table names
+     */
+    void forget (Set tableNames) {
+        forget (counts, tableNames);
+        // estimations not read yet will be up to date
+        FutureTask e = estimates;
+        if (e.isDone ()) {
+            Map[] maps = result (e);
+            forget (maps[0], tableNames);
+            maps[1].keySet ().removeAll (tableNames);
+        }
+    }
+
+    /* (non javadoc)
+     * Remove the entries of the given tables from a map keyed by schema and
+     * table name.
+     */
+    private static void forget (Map map, Set tableNames) {
+        Iterator i = map.keySet ().iterator ();
+        while (i.hasNext ()) {
+            String key = (String) i.next ();
+            if (tableNames.contains (key.substring (key.indexOf (':') + 1))) {
+                i.remove ();
+            }
+        }
+    }
+
+    /**
+     * Forget all counts, so that estimations are read again.
+     */
+    void clear () {
+        estimates = newEstimates ();
+        counts.clear ();
+    }
+
+    /**
+     * Return the estimated number of rows of the given table, reading the
+     * estimations if no other thread did.
+     * @return the estimation, or null if there is none
+     */
+    private Long estimate (Table table) {
+        FutureTask e = estimates;
+        e.run ();
+        Map[] maps = result (e);
+        Long r = (Long) maps[0].get (table.schema + ":" + table.name);
+        if (r == null) {
+            r = (Long) maps[1].get (table.name);
+            if (r == AMBIGUOUS) r = null;
+        }
+        return r;
+    }
+
+    /* (non javadoc)
+     * Return the result of a task reading the estimations, waiting for it.
+     */
+    private static Map[] result (FutureTask e) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return (Map[]) e.get ();
+                }
+                catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+                catch (ExecutionException ex) {
+                    // readEstimates does not throw
+                    throw new RuntimeException (ex.getCause ());
+                }
+            }
+        }
+        finally {
+            if (interrupted) Thread.currentThread ().interrupt ();
+        }
+    }
+
+    /* (non javadoc)
+     * Return a task reading the estimations into two maps: the first one
+     * keyed by schema and table name, as counts, the second one by table
+     * name only, with AMBIGUOUS for the names found in several schemas.
+     */
+    private FutureTask newEstimates () {
+        return new FutureTask (new Callable () {
+            public Object call () {
+                Map[] r = {new ConcurrentHashMap (), new ConcurrentHashMap ()};
+                try {
+                    readEstimates (r[0], r[1]);
+                }
+                catch (SQLException ex) {
+                    info.verbose (1, "could not read row estimations: "
+                                     + ex.getMessage ());
+                }
+                return r;
+            }
+        });
+    }
+
+    private void readEstimates (Map counts, Map byName) throws SQLException {
+        String query = info.dialect.rowEstimatesQuery ();
+        if (query == null) return;
+        java.sql.Connection cx = info.openConnection ();
+        try {
+            java.sql.Statement s = cx.createStatement ();
+            ResultSet rs = s.executeQuery (query);
+            while (rs.next ()) {
+                String name = rs.getString ("table_name");
+                Long count = new Long (rs.getLong ("row_count"));
+                counts.put (rs.getString ("table_schem") + ":" + name, count);
+                byName.put (name, byName.containsKey (name) ? AMBIGUOUS
+                                                            : count);
+            }
+            rs.close ();
+            s.close ();
+        }
+        finally {
+            info.releaseConnection (cx);
+        }
+    }
+
+    private long count (Table table) throws SQLException {
+        java.sql.Connection cx = info.openConnection ();
+        try {
+            java.sql.Statement s = cx.createStatement ();
+            ResultSet rs = s.executeQuery ("SELECT COUNT(*) FROM "
+                                           + table.sqlname);
+            rs.next ();
+            long r = rs.getLong (1);
+            rs.close ();
+            s.close ();
+            return r;
+        }
+        finally {
+            info.releaseConnection (cx);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.sql.SQLException;
+
+/**
+ * @author agent
+ *
+ * <p>A source of rows, as produced by an extraction query.</p>
+ * <p>This is the subset of java.sql.ResultSet used by ABoxGraph, so that
+ * rows can be read either through JDBC or through a bulk export stream.
+ * Columns are identified by their position (starting at 1) in the select
+ * list of the query.</p>
+ *
+ * @see fr.cnrs.liris.cross.JdbcRowSource
+ * @see fr.cnrs.liris.cross.CopyRowSource
+ */
+interface RowSource {
+
+    /**
+     * Move to the next row.
+     * @return <code>false</code> if there are no more rows
+     * @throws SQLException
+     */
+    boolean next () throws SQLException;
+
+    /**
+     * Return the value of the given column in the current row, as a string.
+     * @param column the position of the column
+     * @return the value, or <code>null</code> if it is NULL
+     * @throws SQLException
+     */
+    String getString (int column) throws SQLException;
+
+    /**
+     * Return the value of the given column in the current row, as the
+     * lexical form of a literal.
+     * @param column the position of the column
+     * @param reader the reader of the column
+     * @return the lexical form, or <code>null</code> if it is NULL
+     * @throws SQLException
+     * @see fr.cnrs.liris.cross.ColumnReader
+     */
+    String getLiteral (int column, ColumnReader reader) throws SQLException;
+
+    /**
+     * Return the value of the given column in the current row, as an object
+     * suitable for PreparedStatement.setObject.
+     * @param column the position of the column
+     * @return the value, or <code>null</code> if it is NULL
+     * @throws SQLException
+     */
+    Object getObject (int column) throws SQLException;
+
+    /**
+     * Release the resources used by this source.
+     * @throws SQLException
+     */
+    void close () throws SQLException;
+}
@@ -0,0 +1,136 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * @author agent
+ *
+ * <p>A snapshot of the description of a database, as built by
+ * SchemaBuilder.</p>
+ * <p>A Schema, and the tables, columns and keys it holds, are never modified
+ * once built, so they can be shared by any number of threads without
+ * locking. DbInfo publishes its current schema through a volatile field,
+ * and a refresh swaps in a new one: a reader which got the previous one
+ * keeps a consistent view of the database until it is done.</p>
+ * <p>Each table has a version, which changes whenever its description does,
+ * so that what is derived from a table can be cached across refreshes.</p>
+ * <p>The URIs of the tables, columns, foreign keys and foreign key pairs
+ * are indexed when the schema is built, with their role, so that resolving
+ * them (to decode a URI, plan a query or answer a TBox pattern) is a
+ * single hash lookup, whatever the Encoding.</p>
+ *
+ * @see fr.cnrs.liris.cross.DbInfo#refresh()
+ */
+final class Schema {
+
+    /**
+     * A read only map whose keys are (unqualified) table names and whose
+     * values are Table instances.
+     */
+    final Map tables;
+    private final Map versions;
+    /**
+     * A map whose keys are the URIs of the tables, columns, foreign keys and
+     * foreign key pairs, and values are the corresponding Terms.
+     */
+    private final HashMap terms = new HashMap ();
+
+    /**
+     * A table, column, foreign key or foreign key pair, with its role.
+     */
+    static final class Term {
+        static final int TABLE = 0;
+        static final int COLUMN = 1;
+        static final int FOREIGN_KEY = 2;
+        static final int FOREIGN_KEY_PAIR = 3;
+
+        /**
+         * TABLE, COLUMN, FOREIGN_KEY or FOREIGN_KEY_PAIR.
+         */
+        final int role;
+        /**
+         * The Table, Column, ForeignKey or ForeignKeyPair.
+         */
+        final Object object;
+        /**
+         * The table this term is, or belongs to.
+         */
+        final Table table;
+
+        Term (int role, Object object, Table table) {
+            this.role = role;
+            this.object = object;
+            this.table = table;
+        }
+    }
+
+    /**
+     * @param tables a map whose keys are table names and values are frozen
+     *               Table instances
+     * @param versions a map whose keys are table names and values are their
+     *                 versions (as Long)
+     */
+    Schema (Map tables, Map versions) {
+        this.tables = Collections.unmodifiableMap (new HashMap (tables));
+        this.versions = new HashMap (versions);
+        Iterator i = this.tables.values ().iterator ();
+        while (i.hasNext ()) {
+            Table table = (Table) i.next ();
+            terms.put (table.uri, new Term (Term.TABLE, table, table));
+            Iterator j = table.columnList.iterator ();
+            while (j.hasNext ()) {
+                Column column = (Column) j.next ();
+                if (column.rowId) continue;
+                terms.put (column.uri, new Term (Term.COLUMN, column, table));
+            }
+            j = table.foreignKeys.values ().iterator ();
+            while (j.hasNext ()) {
+                ForeignKey fk = (ForeignKey) j.next ();
+                terms.put (fk.uri, new Term (Term.FOREIGN_KEY, fk, table));
+            }
+            j = table.fkPairs.iterator ();
+            while (j.hasNext ()) {
+                ForeignKeyPair pair = (ForeignKeyPair) j.next ();
+                terms.put (pair.uri,
+                           new Term (Term.FOREIGN_KEY_PAIR, pair, table));
+            }
+        }
+    }
+
+    /**
+     * Return the table, column, foreign key or foreign key pair with the
+     * given URI.
+     * @param uri a URI
+     * @return the corresponding Term, or <code>null</code> if uri is not the
+     *         URI of any of them
+     */
+    Term getTerm (String uri) {
+        return (Term) terms.get (uri);
+    }
+
+    /**
+     * Return the version of the description of the given table.
+     * @param name an (unqualified) table name
+     * @return the version of the table, or -1 if there is no such table
+     */
+    long getVersion (String name) {
+        Long v = (Long) versions.get (name);
+        return (v == null) ? -1 : v.longValue ();
+    }
+
+    /**
+     * Return the table with the given name.
+     * @param name an (unqualified) table name
+     * @return the corresponding Table instance, or <code>null</code>
+     */
+    Table getTable (String name) {
+        return (Table) tables.get (name);
+    }
+}
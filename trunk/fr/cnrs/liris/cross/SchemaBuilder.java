@@ -0,0 +1,965 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * @author agent
+ *
+ * <p>Reads the description of a database, and builds a Schema from it.</p>
+ * <p>The metadata are first read into plain specifications. Then the Table,
+ * Column, PrimaryKey and ForeignKey instances are created with all their
+ * properties known, and frozen, so that nothing of the built Schema is
+ * modified once it is published.</p>
+ * <p>A builder also records a fingerprint of the metadata of each table.
+ * It can then be updated by reading again only the tables whose fingerprint
+ * changed; the specifications of the others are shared with the new
+ * builder, since they are never modified once read.</p>
+ * <p>What can not be read in bulk is read table by table, possibly by
+ * several connections at a time.</p>
+ *
+ * @see fr.cnrs.liris.cross.Schema
+ * @see fr.cnrs.liris.cross.DbInfo.Parameters#introspectionThreads
+ */
+class SchemaBuilder {
+
+    /**
+     * The specification of a table, as read from the metadata.
+     */
+    static class TableSpec {
+        final String catalog;
+        final String schema;
+        final String name;
+        /**
+         * A map whose keys are ordinal positions (as Integer) and values are
+         * the ColumnSpecs of the accessible columns.
+         */
+        final TreeMap columns = new TreeMap ();
+        /**
+         * A map whose keys are column names and values are ColumnSpecs.
+         */
+        final HashMap columnsByName = new HashMap ();
+        String pkName = null;
+        /**
+         * A map whose keys are key sequence numbers (as Integer) and values
+         * are the names of the primary key columns.
+         */
+        final TreeMap primaryKey = new TreeMap ();
+        /**
+         * The ForeignKeySpecs of the imported keys, in the order of the
+         * metadata.
+         */
+        final ArrayList foreignKeys = new ArrayList ();
+        /**
+         * The unique indexes, as sets of column names.
+         */
+        final ArrayList uniqueIndexes = new ArrayList ();
+        /**
+         * The names of the columns rejected by the column filter, which are
+         * removed once the primary key is known.
+         */
+        final HashSet excluded = new HashSet ();
+
+        TableSpec (String catalog, String schema, String name) {
+            this.catalog = catalog;
+            this.schema = schema;
+            this.name = name;
+        }
+
+        /**
+         * Return whether the given columns are unique for each row, i.e.
+         * whether they include all the columns of some unique index.
+         * @param columnNames a collection of column names
+         * @return <code>true</code> if so, else <code>false</code>
+         */
+        boolean isUnique (Collection columnNames) {
+            Iterator i = uniqueIndexes.iterator ();
+            while (i.hasNext ()) {
+                if (columnNames.containsAll ((Collection) i.next ())) return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The specification of a column, as read from the metadata.
+     */
+    static class ColumnSpec {
+        final String name;
+        final int type;
+        final boolean nullable;
+        /**
+         * Whether this is the row id pseudo column of the dialect.
+         */
+        final boolean rowId;
+
+        ColumnSpec (String name, int type, boolean nullable) {
+            this (name, type, nullable, false);
+        }
+
+        ColumnSpec (String name, int type, boolean nullable, boolean rowId) {
+            this.name = name;
+            this.type = type;
+            this.nullable = nullable;
+            this.rowId = rowId;
+        }
+    }
+
+    /**
+     * The specification of a foreign key, as read from the metadata.
+     */
+    static class ForeignKeySpec {
+        final String name;
+        final String foreignTable;
+        /**
+         * A map whose keys are key sequence numbers (as Integer) and values
+         * are pairs of column names: the local one and the foreign one.
+         */
+        final TreeMap columns = new TreeMap ();
+
+        ForeignKeySpec (String name, String foreignTable) {
+            this.name = name;
+            this.foreignTable = foreignTable;
+        }
+    }
+
+    private final DbInfo info;
+    /**
+     * A map whose keys are (unqualified) table names and values are
+     * TableSpecs.
+     */
+    private final HashMap specs;
+    /**
+     * A map whose keys are table names and values are the fingerprints of
+     * their metadata, as Strings.
+     */
+    private HashMap fingerprints = new HashMap ();
+    /**
+     * A map whose keys are table names and values are the generation (as
+     * Long) in which their description last changed.
+     */
+    private final HashMap versions;
+    private final long generation;
+    /**
+     * The privileges of the current user, while reading, or
+     * <code>null</code> if they are not checked.
+     */
+    private PrivilegeIndex privileges = null;
+
+    /**
+     * @param info the DbInfo the built schema will belong to
+     */
+    SchemaBuilder (DbInfo info) {
+        this.info = info;
+        this.specs = new HashMap ();
+        this.versions = new HashMap ();
+        this.generation = 0;
+    }
+
+    /**
+     * Create the next generation of the given builder, sharing its
+     * specifications.
+     */
+    private SchemaBuilder (SchemaBuilder previous) {
+        this.info = previous.info;
+        this.specs = new HashMap (previous.specs);
+        this.versions = new HashMap (previous.versions);
+        this.generation = previous.generation + 1;
+    }
+
+    /**
+     * Read the description of the tables of the database, as selected by
+     * the parameters of the DbInfo.
+     * @param cx a connection to the database
+     * @return this builder
+     * @throws SQLException
+     */
+    SchemaBuilder read (java.sql.Connection cx) throws SQLException {
+		DatabaseMetaData md = cx.getMetaData();
+		// read first, so that a change occurring meanwhile is not missed
+		fingerprints = readFingerprints (cx, md);
+		privileges = readPrivileges (cx, md);
+		HashMap targets = readTables (md, info.getTablePattern (), null);
+		readDetails (cx, md, targets, true);
+		privileges = null;
+		specs.putAll (targets);
+		Iterator i = targets.keySet ().iterator ();
+		while (i.hasNext ()) versions.put (i.next (), new Long (generation));
+        return this;
+    }
+
+    /**
+     * Return a builder describing the database as it is now, having read
+     * again only the tables whose fingerprint changed, or this builder if
+     * none did.
+     * @param cx a connection to the database
+     * @param affected a set to which are added the names of the tables whose
+     *                 description changed: those which were read again, and
+     *                 those with a foreign key referencing one of them
+     * @return a builder
+     * @throws SQLException
+     */
+    SchemaBuilder update (java.sql.Connection cx, Set affected)
+    throws SQLException {
+		DatabaseMetaData md = cx.getMetaData();
+        HashMap current = readFingerprints (cx, md);
+        HashSet changed = new HashSet ();
+        HashSet names = new HashSet (fingerprints.keySet ());
+        names.addAll (current.keySet ());
+        Iterator i = names.iterator ();
+        while (i.hasNext ()) {
+            String name = (String) i.next ();
+            Object f = fingerprints.get (name);
+            if (f != null && f.equals (current.get (name))) continue;
+            if (like (info.getTablePattern (), name) && accepts (name)) {
+                changed.add (name);
+            }
+        }
+        if (changed.isEmpty ()) {
+            fingerprints = current;
+            return this;
+        }
+
+        SchemaBuilder r = new SchemaBuilder (this);
+        r.fingerprints = current;
+        r.privileges = r.readPrivileges (cx, md);
+        HashMap targets = new HashMap ();
+        i = changed.iterator ();
+        while (i.hasNext ()) {
+            String name = (String) i.next ();
+            r.specs.remove (name);
+            r.versions.remove (name);
+            targets.putAll (r.readTables (md, name, name));
+            info.verbose (2, "table "+name+" changed");
+        }
+        r.readDetails (cx, md, targets, false);
+        r.privileges = null;
+        r.specs.putAll (targets);
+
+        affected.addAll (changed);
+        i = r.specs.values ().iterator ();
+        while (i.hasNext ()) {
+            TableSpec spec = (TableSpec) i.next ();
+            Iterator j = spec.foreignKeys.iterator ();
+            while (j.hasNext ()) {
+                ForeignKeySpec fk = (ForeignKeySpec) j.next ();
+                if (changed.contains (fk.foreignTable)) affected.add (spec.name);
+            }
+        }
+        i = affected.iterator ();
+        while (i.hasNext ()) {
+            String name = (String) i.next ();
+            if (r.specs.containsKey (name)) {
+                r.versions.put (name, new Long (r.generation));
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Read the accessible tables matching the given pattern.
+     * @param md the metadata of the database
+     * @param pattern a table name pattern
+     * @param name the exact name of the table, or <code>null</code> to
+     *             accept all the tables matching the pattern
+     * @return a map whose keys are table names and values are TableSpecs
+     * @throws SQLException
+     */
+    private HashMap readTables (DatabaseMetaData md, String pattern,
+                                String name)
+    throws SQLException {
+        HashMap r = new HashMap ();
+		ResultSet rs = md.getTables (info.getCatalog (),
+									 info.getSchemaPattern (),
+									 pattern,
+									 info.getTableTypes ());
+		while (rs.next ()) {
+            String cat = rs.getString("table_cat");
+            String schem = rs.getString("table_schem");
+            String table_name = rs.getString("table_name");
+            if (name != null && !name.equals (table_name)) continue;
+            if (!accepts (table_name)) {
+                info.verbose (2, "table "+table_name+" excluded");
+                continue;
+            }
+            if (privileges == null || privileges.canRead (schem, table_name)) {
+                r.put (table_name, new TableSpec (cat, schem, table_name));
+                info.verbose (2, "table "+table_name+" found");
+            } else {
+                info.verbose (1, "table "+table_name+" not accessible");
+            }
+		}
+		rs.close ();
+        return r;
+    }
+
+    /**
+     * Read the columns, keys and unique indexes of the given tables, and
+     * remove those without a primary key.
+     * @param cx a connection to the database
+     * @param md the metadata of the database
+     * @param targets a map whose keys are table names and values are
+     *                TableSpecs
+     * @param bulk whether to read all the tables at once when the dialect
+     *             allows it, rather than table by table
+     * @throws SQLException
+     */
+    private void readDetails (java.sql.Connection cx, DatabaseMetaData md,
+                              HashMap targets, boolean bulk)
+    throws SQLException {
+        boolean bulkColumns = bulk && info.dialect.supportsBulkMetadata ();
+        String pkQuery = info.dialect.primaryKeysQuery ();
+        boolean bulkKeys = bulk && pkQuery != null;
+
+        if (bulkColumns) {
+            ResultSet rs = md.getColumns (info.getCatalog (),
+                                          info.getSchemaPattern (),
+                                          info.getTablePattern (), "%");
+            readColumns (md, rs, targets, null);
+        }
+        if (bulkKeys) {
+            java.sql.Statement s = cx.createStatement ();
+            ResultSet rs = s.executeQuery (pkQuery);
+            readPrimaryKeys (rs, targets, null);
+            s.close ();
+        }
+
+        // then table by table; tables are sorted so that the order of the
+        // metadata calls does not depend on hashing
+        TreeMap sorted = new TreeMap (targets);
+        int threads = Math.min (info.getIntrospectionThreads (),
+                                sorted.size ());
+        if (threads > 1) {
+            readInParallel (md, sorted.values (), !bulkColumns, !bulkKeys,
+                            threads);
+        } else {
+            Iterator i = sorted.values ().iterator ();
+            while (i.hasNext ()) {
+                readTable (md, (TableSpec) i.next (), !bulkColumns, !bulkKeys);
+            }
+        }
+
+		// remove tables whose rows can not be identified
+		Iterator i = targets.values().iterator();
+		while (i.hasNext()) {
+			TableSpec spec = (TableSpec) i.next ();
+            if (spec.primaryKey.isEmpty ()) {
+                info.verbose (1, "table "+spec.name+" removed, because it has no primary key nor row identity");
+                i.remove();
+            }
+		}
+    }
+
+    /**
+     * Read what remains to be read of the description of the given table:
+     * its foreign keys and unique indexes, and if required its columns and
+     * primary key. The rows of a table without a primary key are identified
+     * by other columns if possible; the foreign keys and indexes of a table
+     * whose rows can not be identified are not read, since it will be
+     * removed.
+     * @param md the metadata of the database
+     * @param spec the table
+     * @param columns whether to read the columns
+     * @param primaryKey whether to read the primary key
+     * @throws SQLException
+     */
+    private void readTable (DatabaseMetaData md, TableSpec spec,
+                            boolean columns, boolean primaryKey)
+    throws SQLException {
+        if (columns) {
+            readColumns (md,
+                md.getColumns (spec.catalog, spec.schema, spec.name, "%"),
+                null, spec);
+        }
+        if (primaryKey) {
+            readPrimaryKeys (
+                md.getPrimaryKeys (spec.catalog, spec.schema, spec.name),
+                null, spec);
+        }
+        boolean indexes = false;
+        if (spec.primaryKey.isEmpty ()) {
+            indexes = info.getRowIdentity () != DbInfo.ROWS_PRIMARY_KEY;
+            if (indexes) readUniqueIndexes (md, spec);
+            if (!identify (spec)) return;
+        }
+        exclude (spec);
+        readForeignKeys (md, spec);
+        if (!indexes) readUniqueIndexes (md, spec);
+    }
+
+    /**
+     * Choose the columns identifying the rows of the given table, which has
+     * no primary key, and use them as its primary key: the columns given in
+     * the parameters for that table, else (unless rowIdentity is
+     * ROWS_PRIMARY_KEY) the smallest unique index whose columns are all NOT
+     * NULL, else (if rowIdentity is ROWS_ROW_ID) the row id pseudo column of
+     * the dialect.
+     * Since the chosen columns are unique and indexed, rows are extracted
+     * and looked up exactly as with a primary key.
+     * @param spec a table without a primary key, whose unique indexes have
+     *             been read unless rowIdentity is ROWS_PRIMARY_KEY
+     * @return whether columns were found
+     * @see fr.cnrs.liris.cross.DbInfo.Parameters#rowIdentity
+     */
+    private boolean identify (TableSpec spec) {
+        String configured[] = info.getIdentityColumns (spec.name);
+        if (configured != null) {
+            boolean found = true;
+            for (int k = 0; k < configured.length; k++) {
+                found &= spec.columnsByName.containsKey (configured[k]);
+            }
+            if (found) {
+                for (int k = 0; k < configured.length; k++) {
+                    spec.primaryKey.put (new Integer (k+1), configured[k]);
+                }
+                info.verbose (2, "rows of "+spec.name+" identified by the given columns");
+                return true;
+            }
+            info.verbose (1, "identity columns of "+spec.name+" not accessible");
+        }
+        if (info.getRowIdentity () == DbInfo.ROWS_PRIMARY_KEY) return false;
+
+        // the smallest unique index of NOT NULL columns, with its columns
+        // in the order of the table
+        TreeMap best = null;
+        Iterator i = spec.uniqueIndexes.iterator ();
+        indexes: while (i.hasNext ()) {
+            HashSet index = (HashSet) i.next ();
+            TreeMap columns = new TreeMap ();
+            Iterator j = spec.columns.entrySet ().iterator ();
+            while (j.hasNext ()) {
+                Map.Entry e = (Map.Entry) j.next ();
+                ColumnSpec column = (ColumnSpec) e.getValue ();
+                if (!index.contains (column.name)) continue;
+                if (column.nullable) continue indexes;
+                columns.put (e.getKey (), column.name);
+            }
+            if (best == null || columns.size () < best.size ()) best = columns;
+        }
+        if (best != null) {
+            int seq = 0;
+            i = best.values ().iterator ();
+            while (i.hasNext ()) {
+                spec.primaryKey.put (new Integer (++seq), i.next ());
+            }
+            info.verbose (2, "rows of "+spec.name+" identified by a unique index");
+            return true;
+        }
+
+        String rowId = info.dialect.rowIdColumn ();
+        if (info.getRowIdentity () == DbInfo.ROWS_ROW_ID && rowId != null
+         && !spec.columnsByName.containsKey (rowId)) {
+            ColumnSpec column = new ColumnSpec (rowId, Types.OTHER, false,
+                                                true);
+            // before the actual columns, whose positions start at 1
+            spec.columns.put (new Integer (0), column);
+            spec.columnsByName.put (rowId, column);
+            spec.primaryKey.put (new Integer (1), rowId);
+            info.verbose (2, "rows of "+spec.name+" identified by "+rowId);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Read the given tables as readTable does, using the given number of
+     * connections at a time: the connection of the caller, which is busy
+     * meanwhile, and as many others minus one. The workers do not wait for
+     * a connection: those which get none leave the tables to the others.
+     * Each table is read by a single worker into its own TableSpec, so the
+     * result does not depend on the interleaving of the workers.
+     * @param md the metadata of the database, for the caller's connection
+     * @param specs the tables to read
+     * @param columns whether to read the columns
+     * @param primaryKey whether to read the primary keys
+     * @param threads the number of connections to use
+     * @throws SQLException
+     */
+    private void readInParallel (DatabaseMetaData md, Collection specs,
+                                 final boolean columns,
+                                 final boolean primaryKey, int threads)
+    throws SQLException {
+        final ConcurrentLinkedQueue queue = new ConcurrentLinkedQueue (specs);
+        ExecutorService workers = Executors.newFixedThreadPool (threads - 1);
+        try {
+            List futures = new ArrayList ();
+            for (int k = 1; k < threads; k++) {
+                futures.add (workers.submit (new Callable () {
+                    public Object call () throws SQLException {
+                        // the caller holds a connection: waiting for another
+                        // one could deadlock with a concurrent refresh
+                        java.sql.Connection cx = info.tryOpenConnection ();
+                        if (cx == null) return null;
+                        try {
+                            drain (queue, cx.getMetaData (), columns,
+                                   primaryKey);
+                        }
+                        finally {
+                            info.releaseConnection (cx);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            drain (queue, md, columns, primaryKey);
+
+            Iterator i = futures.iterator ();
+            while (i.hasNext ()) {
+                try {
+                    ((Future) i.next ()).get ();
+                }
+                catch (InterruptedException ex) {
+                    Thread.currentThread ().interrupt ();
+                    throw new SQLException ("Interrupted while reading metadata");
+                }
+                catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause ();
+                    if (cause instanceof SQLException) {
+                        throw (SQLException) cause;
+                    }
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new RuntimeException (cause);
+                }
+            }
+        }
+        finally {
+            workers.shutdownNow ();
+        }
+    }
+
+    /* (non javadoc)
+     * Read the tables of the queue until it is empty; on failure, empty it
+     * so that the other workers stop.
+     */
+    private void drain (ConcurrentLinkedQueue queue, DatabaseMetaData md,
+                        boolean columns, boolean primaryKey)
+    throws SQLException {
+        try {
+            TableSpec spec;
+            while ((spec = (TableSpec) queue.poll ()) != null) {
+                readTable (md, spec, columns, primaryKey);
+            }
+        }
+        catch (SQLException ex) {
+            queue.clear ();
+            throw ex;
+        }
+        catch (RuntimeException ex) {
+            queue.clear ();
+            throw ex;
+        }
+    }
+
+    /**
+     * Read the privileges of the current user on the tables matched by the
+     * parameters and their columns, unless they are not to be checked.
+     * @return the privileges, or <code>null</code>
+     * @see fr.cnrs.liris.cross.DbInfo.Parameters#checkPrivileges
+     */
+    private PrivilegeIndex readPrivileges (java.sql.Connection cx,
+                                           DatabaseMetaData md)
+    throws SQLException {
+        if (!info.getCheckPrivileges ()) return null;
+        PrivilegeIndex r = new PrivilegeIndex (info, cx);
+        r.readTables (md, info.getCatalog (), info.getSchemaPattern (),
+                      info.getTablePattern ());
+        String query = info.dialect.columnPrivilegesQuery ();
+        if (query != null) r.readColumns (cx, query);
+        return r;
+    }
+
+    /**
+     * Read the fingerprints of the metadata of the tables, with the query
+     * of the dialect if any, else from their columns.
+     * @return a map whose keys are table names and values are fingerprints
+     * @see fr.cnrs.liris.cross.Dialect#tableFingerprintsQuery()
+     */
+    private HashMap readFingerprints (java.sql.Connection cx,
+                                      DatabaseMetaData md)
+    throws SQLException {
+        // tables of the same name in several schemas share an entry
+        HashMap buffers = new HashMap ();
+        String query = info.dialect.tableFingerprintsQuery ();
+        java.sql.Statement s = null;
+        ResultSet rs;
+        if (query != null) {
+            s = cx.createStatement ();
+            rs = s.executeQuery (query);
+        } else {
+            rs = md.getColumns (info.getCatalog (), info.getSchemaPattern (),
+                                info.getTablePattern (), "%");
+        }
+        while (rs.next ()) {
+            String name = rs.getString ("table_name");
+            StringBuffer sb = (StringBuffer) buffers.get (name);
+            if (sb == null) {
+                sb = new StringBuffer ();
+                buffers.put (name, sb);
+            }
+            sb.append (rs.getString ("table_schem")).append (':');
+            if (query != null) {
+                sb.append (rs.getString ("fingerprint"));
+            } else {
+                sb.append (rs.getString ("column_name")).append (':')
+                  .append (rs.getInt ("data_type")).append (':')
+                  .append (rs.getInt ("nullable")).append (':')
+                  .append (rs.getInt ("ordinal_position"));
+            }
+            sb.append (';');
+        }
+        rs.close ();
+        if (s != null) s.close ();
+
+        HashMap r = new HashMap ();
+        Iterator i = buffers.entrySet ().iterator ();
+        while (i.hasNext ()) {
+            Map.Entry e = (Map.Entry) i.next ();
+            r.put (e.getKey (), digest (e.getValue ().toString ()));
+        }
+        return r;
+    }
+
+    private static String digest (String s) {
+        byte sum[];
+        try {
+            sum = MessageDigest.getInstance ("MD5").digest (s.getBytes ("UTF-8"));
+        }
+        catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException (ex);
+        }
+        catch (java.io.UnsupportedEncodingException ex) {
+            throw new RuntimeException (ex);
+        }
+        StringBuffer sb = new StringBuffer ();
+        for (int k = 0; k < sum.length; k++) {
+            sb.append (Character.forDigit ((sum[k] >> 4) & 0xf, 16));
+            sb.append (Character.forDigit (sum[k] & 0xf, 16));
+        }
+        return sb.toString ();
+    }
+
+    /**
+     * Return whether the given name matches the given SQL LIKE pattern
+     * (without escape characters).
+     */
+    private static boolean like (String pattern, String name) {
+        if (pattern == null) return true;
+        StringBuffer re = new StringBuffer ();
+        for (int k = 0; k < pattern.length (); k++) {
+            char c = pattern.charAt (k);
+            if (c == '%') re.append (".*");
+            else if (c == '_') re.append ('.');
+            else if (Character.isLetterOrDigit (c)) re.append (c);
+            else re.append ('\\').append (c);
+        }
+        return name.matches (re.toString ());
+    }
+
+    /**
+     * Build the schema from what has been read.
+     * @return a new Schema
+     */
+    Schema build () {
+        HashMap tables = new HashMap ();
+        Iterator i = specs.values ().iterator ();
+        while (i.hasNext ()) {
+            TableSpec spec = (TableSpec) i.next ();
+            tables.put (spec.name, new Table (info, spec));
+            info.verbose (2, "table "+spec.name+" created");
+        }
+
+        // now that all tables are created with all their columns
+        i = specs.values ().iterator ();
+        while (i.hasNext ()) {
+            TableSpec spec = (TableSpec) i.next ();
+            Table table = (Table) tables.get (spec.name);
+            buildForeignKeys (spec, table, tables);
+            table.freeze ();
+        }
+        return new Schema (tables, versions);
+    }
+
+    /**
+     * Read the columns described by the given result set, as returned by
+     * DatabaseMetaData.getColumns.
+     * @param md the metadata of the database
+     * @param rs the description of the columns
+     * @param targets the tables being read, by name
+     * @param spec the table those columns belong to, or <code>null</code> if
+     *             the result set describes columns of several tables
+     * @throws SQLException
+     */
+    private void readColumns (DatabaseMetaData md, ResultSet rs,
+                              HashMap targets, TableSpec spec)
+    throws SQLException {
+        while (rs.next ())
+        {
+            TableSpec t = spec;
+            if (t == null) {
+                t = findSpec (targets, rs.getString ("table_schem"),
+                              rs.getString ("table_name"));
+                if (t == null) continue;
+            }
+            String name = rs.getString ("column_name");
+            if (privileges == null || privileges.canRead (md, t, name)) {
+                ColumnSpec column = new ColumnSpec (name,
+                    rs.getInt ("data_type"),
+                    rs.getInt ("nullable") != DatabaseMetaData.columnNoNulls);
+                t.columns.put (new Integer (rs.getInt ("ordinal_position")),
+                               column);
+                t.columnsByName.put (name, column);
+                info.verbose (4, "column "+t.name+"."+name+" found");
+                NameFilter filter = info.getColumnFilter ();
+                if (filter != null && !filter.accepts (t.name+"."+name)) {
+                    t.excluded.add (name);
+                }
+            } else {
+                info.verbose (3, "column "+t.name+"."+name+" not accessible");
+            }
+        }
+        rs.close ();
+    }
+
+    /**
+     * Read the primary keys described by the given result set, as returned
+     * by DatabaseMetaData.getPrimaryKeys or Dialect.primaryKeysQuery.
+     * @param rs the description of the primary key columns
+     * @param targets the tables being read, by name
+     * @param spec the table those columns belong to, or <code>null</code> if
+     *             the result set describes several tables
+     * @throws SQLException
+     * @see fr.cnrs.liris.cross.Dialect#primaryKeysQuery()
+     */
+    private void readPrimaryKeys (ResultSet rs, HashMap targets,
+                                  TableSpec spec)
+    throws SQLException {
+        while (rs.next ()) {
+            TableSpec t = spec;
+            if (t == null) {
+                t = findSpec (targets, rs.getString ("table_schem"),
+                              rs.getString ("table_name"));
+                if (t == null) continue;
+            }
+            String name = rs.getString ("column_name");
+            if (!t.columnsByName.containsKey (name)) {
+                // TODO LATER any better idea?
+                throw new RuntimeException ("Column "
+                    + t.name +"." + name
+                    + " is not accessible, though part of the primary key.\n"
+                    + "Cross does not know (yet?) how to handle this.");
+            }
+            if (t.primaryKey.isEmpty ()) t.pkName = rs.getString ("pk_name");
+            t.primaryKey.put (new Integer (rs.getInt ("key_seq")), name);
+            info.verbose (3, "primary key for "+t.name+" found");
+        }
+        rs.close ();
+    }
+
+    /**
+     * Remove the columns of the given table rejected by the column filter,
+     * except those of its primary key, which are required to identify its
+     * rows. Since this happens before the foreign keys and unique indexes
+     * are read, those involving a removed column are ignored.
+     * @param spec a table whose primary key is known
+     */
+    private void exclude (TableSpec spec) {
+        if (spec.excluded.isEmpty ()) return;
+        Iterator i = spec.columns.values ().iterator ();
+        while (i.hasNext ()) {
+            ColumnSpec column = (ColumnSpec) i.next ();
+            if (!spec.excluded.contains (column.name)) continue;
+            if (spec.primaryKey.containsValue (column.name)) {
+                info.verbose (1, "column "+spec.name+"."+column.name+" kept, because it is part of the primary key");
+            } else {
+                i.remove ();
+                spec.columnsByName.remove (column.name);
+                info.verbose (3, "column "+spec.name+"."+column.name+" excluded");
+            }
+        }
+        spec.excluded.clear ();
+    }
+
+    private void readForeignKeys (DatabaseMetaData md, TableSpec spec)
+    throws SQLException {
+		ResultSet rs = md.getImportedKeys(spec.catalog, spec.schema, spec.name);
+		ForeignKeySpec fk = null;
+		while (rs.next ()) {
+            int key_seq = rs.getInt ("key_seq");
+			if (key_seq == 1) {
+				String fk_name = rs.getString ("fk_name");
+                if (fk_name == null
+                 // MySQL JDBC driver has the strange habit of returning
+                 // the string "not available" instead of null
+                 || fk_name.equals ("not_available")) {
+                    // may be not the better possible ID, but...
+                    fk_name = "__fk_"+rs.getString ("pktable_name")+"_"+rs.getString ("pkcolumn_name");
+                }
+                fk = new ForeignKeySpec (fk_name,
+                                         rs.getString ("pktable_name"));
+                spec.foreignKeys.add (fk);
+			}
+            fk.columns.put (new Integer (key_seq), new String[] {
+                rs.getString ("fkcolumn_name"),
+                rs.getString ("pkcolumn_name") });
+		}
+		rs.close ();
+    }
+
+    private void readUniqueIndexes (DatabaseMetaData md, TableSpec spec)
+    throws SQLException {
+		ResultSet rs = md.getIndexInfo(spec.catalog, spec.schema, spec.name,
+		                               true, false);
+        boolean skipCurrent = false;
+		HashSet index = null;
+		while (rs.next ()) {
+			int position = rs.getInt ("ordinal_position");
+			if (position == 0) continue; // TODO LATER are those indices useful?
+			if (position == 1) {
+				if (index != null && !skipCurrent) spec.uniqueIndexes.add (index);
+                skipCurrent = false;
+				index = new HashSet ();
+			}
+			String name = rs.getString ("column_name");
+            if (spec.columnsByName.containsKey (name)) {
+                index.add (name);
+            } else {
+                skipCurrent = true;
+            }
+		}
+		if (index != null && !skipCurrent) spec.uniqueIndexes.add (index);
+		rs.close ();
+    }
+
+    /**
+     * Create the foreign keys and foreign key pairs of the given table.
+     * @param spec the specification of the table
+     * @param table the table
+     * @param tables a map of all the created tables, by name
+     */
+    private void buildForeignKeys (TableSpec spec, Table table, Map tables) {
+        Iterator i = spec.foreignKeys.iterator ();
+        fks: while (i.hasNext ()) {
+            ForeignKeySpec fks = (ForeignKeySpec) i.next ();
+            Table foreignTable = (Table) tables.get (fks.foreignTable);
+            if (foreignTable == null) {
+                info.verbose (2, "no foreign table for "+table.name+"."+fks.name);
+                continue;
+            }
+            HashSet names = new HashSet ();
+            Iterator j = fks.columns.values ().iterator ();
+            while (j.hasNext ()) names.add (((String[]) j.next ())[0]);
+            ForeignKey fk = new ForeignKey (info, table, fks.name,
+                                            spec.isUnique (names));
+            j = fks.columns.entrySet ().iterator ();
+            while (j.hasNext ()) {
+                Map.Entry e = (Map.Entry) j.next ();
+                String pair[] = (String[]) e.getValue ();
+                Column c = table.getColumn (pair[0]);
+                Column fc = foreignTable.getColumn (pair[1]);
+                if (c == null || fc == null) {
+                    info.verbose (3, "column unreachable for "+table.name+"."+fks.name);
+                    continue fks;
+                }
+                fk.addColumn (c, ((Integer) e.getKey ()).intValue (), fc);
+                info.verbose (5, "foreign key column "+table.name+"."+fks.name+"."+pair[0]+" created");
+            }
+            fk.freeze ();
+            table.addForeignKey (fk);
+            info.verbose (3, "foreign key "+table.name+"."+fk.name+" created");
+        }
+
+		// foreign key pairs, in the order of the names of the foreign keys
+		int mode = info.getForeignKeyPairs ();
+		if (mode == DbInfo.PAIRS_NONE) return;
+		TreeMap tm = new TreeMap ();
+		i = table.foreignKeys.values ().iterator();
+		while (i.hasNext ()) {
+			ForeignKey fk = (ForeignKey) i.next ();
+			if (!fk.subsumesPrimaryKey()) tm.put (fk.name, fk);
+		}
+		ForeignKey fks[] = (ForeignKey[]) tm.values ().toArray (
+		    new ForeignKey[tm.size ()]);
+		if (mode == DbInfo.PAIRS_LINK_TABLES && !isLinkTable (table, fks)) {
+			return;
+		}
+		for (int a = 0; a < fks.length; a++) {
+			for (int b = a + 1; b < fks.length; b++) {
+				table.addForeignKeyPair (
+				    new ForeignKeyPair (info, table, fks[a], fks[b]));
+			}
+		}
+    }
+
+    /* (non javadoc)
+     * Return whether the given table is accepted by the table filter.
+     */
+    private boolean accepts (String table) {
+        NameFilter filter = info.getTableFilter ();
+        return filter == null || filter.accepts (table);
+    }
+
+    /**
+     * Return whether the given table is a link table, i.e. whether it has
+     * at least two foreign keys, and each column of its primary key belongs
+     * to one of them.
+     * @param table a table
+     * @param fks the foreign keys of the table which do not subsume its
+     *            primary key
+     * @return <code>true</code> if so, else <code>false</code>
+     */
+    private static boolean isLinkTable (Table table, ForeignKey[] fks) {
+        if (fks.length < 2) return false;
+        Iterator i = table.primaryKey.columnList.iterator ();
+        columns: while (i.hasNext ()) {
+            Column c = (Column) i.next ();
+            for (int k = 0; k < fks.length; k++) {
+                if (fks[k].contains (c)) continue columns;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Return the specification of the table with the given schema and name,
+     * if it is being read.
+     * @param targets the tables being read, by name
+     * @param schema the schema of the table, or <code>null</code>
+     * @param name the name of the table
+     * @return the corresponding TableSpec, or <code>null</code>
+     */
+    private static TableSpec findSpec (HashMap targets, String schema,
+                                       String name) {
+        TableSpec t = (TableSpec) targets.get (name);
+        if (t != null && schema != null && t.schema != null
+         && !schema.equals (t.schema)) {
+            return null;
+        }
+        return t;
+    }
+}
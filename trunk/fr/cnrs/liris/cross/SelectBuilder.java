@@ -0,0 +1,348 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * @author agent
+ *
+ * <p>A builder for the SQL queries used to extract the rows of a table.</p>
+ * <p>The main table is aliased <code>t0</code>, and each joined foreign table
+ * <code>t1</code>, <code>t2</code>, etc. Local columns are selected under
+ * their own name, while the primary key columns of a joined table are
+ * selected under the name <em>fk_name</em>_<em>column_name</em>.
+ * All identifiers are quoted with DbInfo.quote.</p>
+ * <p>Selected columns are numbered in the order they are added, so that
+ * rows can be read by position.</p>
+ *
+ * @see fr.cnrs.liris.cross.DbInfo#quote(java.lang.String)
+ */
+class SelectBuilder {
+
+    private final DbInfo info;
+    private final Table table;
+    /**
+     * The expressions of the select list.
+     */
+    private final ArrayList items = new ArrayList ();
+    /**
+     * A map whose keys are the selected local columns, and values are their
+     * positions (as Integers).
+     */
+    private final HashMap positions = new HashMap ();
+    private final LinkedList joins = new LinkedList ();
+    /**
+     * The alternative conditions on the rows, as arrays of columns and of
+     * the values they must be equal to.
+     */
+    private final LinkedList conditionColumns = new LinkedList ();
+    private final LinkedList conditionValues = new LinkedList ();
+    private boolean ordered = false;
+    private boolean lowerBound = false;
+    private boolean upperBound = false;
+    private int limit = 0;
+    private double sample = 0;
+    private boolean sampled = false;
+    private int[] parameters = new int[0];
+    private boolean limited = false;
+
+    /**
+     * @param info the DbInfo the table belongs to
+     * @param table the table to extract rows from
+     */
+    SelectBuilder (DbInfo info, Table table) {
+        this.info = info;
+        this.table = table;
+    }
+
+    /**
+     * Add a local column to the select list.
+     * Adding the same column several times has no effect.
+     * @param c a column of the table
+     * @return the position (starting at 1) of the column in the select list
+     */
+    int addColumn (Column c) {
+        Integer pos = (Integer) positions.get (c);
+        if (pos == null) {
+            items.add ("t0." + c.sqlname + " AS " + c.sqlname);
+            pos = new Integer (items.size ());
+            positions.put (c, pos);
+        }
+        return pos.intValue ();
+    }
+
+    /**
+     * Add a join to the table referenced by the given foreign key, and the
+     * primary key columns of this table to the select list.
+     * @param fk a foreign key of the table
+     * @return the positions of the selected columns, in the order of the
+     *         primary key of the foreign table
+     * @see #joinedColumnName(fr.cnrs.liris.cross.ForeignKey, fr.cnrs.liris.cross.Column)
+     */
+    int[] addJoin (ForeignKey fk) {
+        joins.add (fk);
+        String alias = "t" + joins.size ();
+        PrimaryKey fpk = fk.foreignColumnSet ().table ().primaryKey;
+        int r[] = new int[fpk.size ()];
+        for (int i = 0; i < r.length; i++) {
+            Column c = fpk.getColumn (i+1);
+            items.add (alias + "." + c.sqlname + " AS "
+                       + info.quote (joinedColumnName (fk, c)));
+            r[i] = items.size ();
+        }
+        return r;
+    }
+
+    /**
+     * Return the name under which a column of a joined table is selected.
+     * @param fk the foreign key of the join
+     * @param c a column of the joined table
+     * @return the name of the column in the result set
+     */
+    static String joinedColumnName (ForeignKey fk, Column c) {
+        return fk.name + "_" + c.name;
+    }
+
+    /**
+     * Only select the rows where the given columns are equal to the given
+     * values.
+     * When called several times, the rows satisfying any of the conditions
+     * are selected.
+     * The values are parameters of the query, that bindConditions sets
+     * before any other.
+     * @param columns columns of the table
+     * @param values the values of the columns, in their string form
+     * @see #bindConditions(java.sql.PreparedStatement)
+     */
+    void addCondition (Column[] columns, String[] values) {
+        conditionColumns.add (columns);
+        conditionValues.add (values);
+    }
+
+    /**
+     * Return whether conditions have been added.
+     * @return whether conditions have been added
+     */
+    boolean hasConditions () {
+        return !conditionColumns.isEmpty ();
+    }
+
+    /**
+     * Set the values of the conditions as the first parameters of the given
+     * statement, converted by the driver to the types of their columns.
+     * @param ps a statement prepared from this query
+     * @return the number of parameters set
+     * @throws java.sql.SQLException
+     * @see #addCondition(Column[], String[])
+     */
+    int bindConditions (java.sql.PreparedStatement ps)
+    throws java.sql.SQLException {
+        int n = 0;
+        Iterator i = conditionColumns.iterator ();
+        Iterator j = conditionValues.iterator ();
+        while (i.hasNext ()) {
+            Column columns[] = (Column[]) i.next ();
+            String values[] = (String[]) j.next ();
+            for (int k = 0; k < columns.length; k++) {
+                ps.setObject (++n, values[k], columns[k].type);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Order the rows by primary key.
+     */
+    void orderByPrimaryKey () {
+        this.ordered = true;
+    }
+
+    /**
+     * Set whether to only select the rows whose primary key is strictly
+     * greater than a lower bound given as parameters of the query.
+     * @param lowerBound whether to add this keyset condition
+     * @see #getParameters()
+     */
+    void setLowerBound (boolean lowerBound) {
+        this.lowerBound = lowerBound;
+    }
+
+    /**
+     * Set whether to only select the rows whose primary key is lower than or
+     * equal to an upper bound given as parameters of the query.
+     * @param upperBound whether to add this keyset condition
+     * @see #getParameters()
+     */
+    void setUpperBound (boolean upperBound) {
+        this.upperBound = upperBound;
+    }
+
+    /**
+     * Limit the number of selected rows.
+     * @param limit the maximum number of rows, or 0 for no limit
+     * @see #isLimited()
+     */
+    void setLimit (int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Only select a Bernoulli sample of the rows of the table, each row
+     * being selected with the given probability.
+     * @param percent the percentage of the rows to select, or 0 to select
+     *                them all
+     * @see #isSampled()
+     */
+    void setSample (double percent) {
+        this.sample = percent;
+    }
+
+    /**
+     * Return the percentage of the rows to select.
+     * @return the percentage, or 0 if the rows are not sampled
+     * @see #setSample(double)
+     */
+    double getSample () {
+        return sample;
+    }
+
+    /**
+     * Return whether the sample of the last generated query was expressed
+     * in SQL. If not, the caller has to sample the rows itself.
+     * @return <code>true</code> if so, else <code>false</code>
+     * @see #setSample(double)
+     */
+    boolean isSampled () {
+        return sampled;
+    }
+
+    /**
+     * Return, for each keyset parameter of the last generated query (i.e.
+     * each parameter following those of the conditions), the index of
+     * the value it stands for: <em>i</em> for the <em>i</em>th column
+     * (starting at 0) of the lower bound, <em>n</em>+<em>i</em> for the
+     * <em>i</em>th column of the upper bound, <em>n</em> being the size of
+     * the primary key.
+     * @return the parameter mapping
+     * @see #setLowerBound(boolean)
+     * @see #setUpperBound(boolean)
+     */
+    int[] getParameters () {
+        return parameters;
+    }
+
+    /**
+     * Return whether the limit of the last generated query was expressed in
+     * SQL. If not, the caller has to enforce it with Statement.setMaxRows.
+     * @return <code>true</code> if so, else <code>false</code>
+     * @see #setLimit(int)
+     */
+    boolean isLimited () {
+        return limited;
+    }
+
+    /**
+     * Return the SQL query.
+     * @return the SQL query
+     */
+    public String toString () {
+        StringBuffer select = new StringBuffer ("SELECT ");
+        StringBuffer from = new StringBuffer (" FROM ");
+        from.append (table.sqlname).append (" t0");
+        sampled = (sample > 0) && info.dialect.appendTableSample (from, sample);
+
+        for (int k = 0; k < items.size (); k++) {
+            if (k > 0) select.append (",");
+            select.append ((String) items.get (k));
+        }
+
+        int n = 0;
+        Iterator i = joins.iterator ();
+        while (i.hasNext ()) {
+            ForeignKey fk = (ForeignKey) i.next ();
+            Table ft = fk.foreignColumnSet ().table ();
+            String alias = "t" + (++n);
+
+            from.append (" LEFT JOIN ").append (ft.sqlname)
+                .append (" ").append (alias).append (" ON (");
+            appendJoinCondition (from, fk, alias);
+            from.append (")");
+        }
+
+        select.append (from);
+
+        String keys[] = new String[table.primaryKey.size ()];
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = "t0." + table.primaryKey.getColumn (k+1).sqlname;
+        }
+        String where = " WHERE ";
+        if (hasConditions ()) {
+            select.append (where).append ("(");
+            Iterator j = conditionColumns.iterator ();
+            while (j.hasNext ()) {
+                Column columns[] = (Column[]) j.next ();
+                select.append ("(");
+                for (int k = 0; k < columns.length; k++) {
+                    if (k > 0) select.append (" AND ");
+                    select.append ("t0.").append (columns[k].sqlname)
+                          .append ("=?");
+                }
+                select.append (j.hasNext () ? ") OR " : ")");
+            }
+            select.append (")");
+            where = " AND ";
+        }
+        int lower[] = new int[0];
+        int upper[] = new int[0];
+        if (lowerBound) {
+            select.append (where);
+            lower = info.dialect.appendKeysetCondition (select, keys);
+            where = " AND ";
+        }
+        if (upperBound) {
+            select.append (where);
+            upper = info.dialect.appendKeysetUpperCondition (select, keys);
+            for (int k = 0; k < upper.length; k++) upper[k] += keys.length;
+        }
+        parameters = new int[lower.length + upper.length];
+        System.arraycopy (lower, 0, parameters, 0, lower.length);
+        System.arraycopy (upper, 0, parameters, lower.length, upper.length);
+
+        if (ordered) {
+            select.append (" ORDER BY ");
+            for (int k = 0; k < keys.length; k++) {
+                if (k > 0) select.append (",");
+                select.append (keys[k]);
+            }
+        }
+        limited = (limit > 0) && info.dialect.appendLimit (select, limit);
+
+        return select.toString ();
+    }
+
+    /* (non javadoc)
+     * The predicates are emitted in key sequence order, which is the order of
+     * the referenced primary key or unique index, so that the database can
+     * match them against this composite index.
+     */
+    private void appendJoinCondition (StringBuffer sb, ForeignKey fk,
+                                      String alias) {
+        boolean first = true;
+        Iterator i = fk.columnList.iterator ();
+        while (i.hasNext ()) {
+            Column c = (Column) i.next ();
+            Column fc = fk.mappedColumn (c);
+            if (first) first = false;
+            else sb.append (" AND ");
+            sb.append ("t0.").append (c.sqlname)
+              .append ("=")
+              .append (alias).append (".").append (fc.sqlname);
+        }
+    }
+}
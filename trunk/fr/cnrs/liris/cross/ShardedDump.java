@@ -0,0 +1,348 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+
+/**
+ * @author agent
+ *
+ * <p>Dumps an ABox into a directory of shards, so that they can be loaded
+ * in parallel.</p>
+ * <p>Shards are extracted and written concurrently by a pool of workers,
+ * each one using its own database connection. Depending on the mode, a
+ * shard holds:
+ * <ul>
+ * <li>PER_TABLE: the triples of one table;</li>
+ * <li>PER_RANGE: the triples of a range of <em>size</em> rows of one table,
+ *     in the order of its primary key;</li>
+ * <li>PER_TRIPLES: at most <em>size</em> triples of one table.</li>
+ * </ul>
+ * The header triples of the ABox are written to their own shard (split
+ * like the tables in PER_TRIPLES mode).</p>
+ * <p>The directory also receives a file named <code>MANIFEST</code>, with
+ * one tab separated line per shard: the file name, the table name (empty for
+ * the header), the number of triples and the SHA-256 checksum of the file
+ * (as written, i.e. after compression). The lines are in a deterministic
+ * order, whatever the order in which shards are completed.</p>
+ *
+ * @see fr.cnrs.liris.cross.ABoxGraph#findInTable(String, Object[], Object[])
+ */
+public class ShardedDump {
+
+    public static final int PER_TABLE = 0;
+    public static final int PER_RANGE = 1;
+    public static final int PER_TRIPLES = 2;
+
+    /**
+     * The name of the manifest file.
+     */
+    public static final String MANIFEST = "MANIFEST";
+
+    private final ABoxGraph graph;
+    private final File dir;
+    private int mode = PER_TABLE;
+    private int size = 0;
+    private int threads = 4;
+    private boolean binary = false;
+    private boolean gzip = false;
+    private final HashSet fileNames = new HashSet ();
+
+    /**
+     * @param graph the ABox to dump
+     * @param dir the directory to write the shards to; it is created if
+     *            needed
+     */
+    public ShardedDump (ABoxGraph graph, File dir) {
+        this.graph = graph;
+        this.dir = dir;
+    }
+
+    /**
+     * Set how the ABox is split into shards.
+     * @param mode PER_TABLE, PER_RANGE or PER_TRIPLES
+     * @param size the number of rows (PER_RANGE) or triples (PER_TRIPLES) of
+     *             each shard; ignored by PER_TABLE
+     */
+    public void setMode (int mode, int size) {
+        if (mode != PER_TABLE && size <= 0) {
+            throw new IllegalArgumentException ("Invalid shard size " + size);
+        }
+        this.mode = mode;
+        this.size = size;
+    }
+
+    /**
+     * @param threads the number of concurrent workers (default 4)
+     */
+    public void setThreads (int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @param binary whether shards use the binary format of BinaryRdfWriter
+     *               rather than N-Triples
+     */
+    public void setBinary (boolean binary) {
+        this.binary = binary;
+    }
+
+    /**
+     * @param gzip whether to gzip each shard
+     */
+    public void setGzip (boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    /**
+     * Write all the shards and the manifest.
+     * @return the lines of the manifest
+     * @throws IOException
+     * @throws java.sql.SQLException
+     */
+    public List run () throws IOException, java.sql.SQLException {
+        if (!dir.isDirectory () && !dir.mkdirs ()) {
+            throw new IOException ("Can not create directory " + dir);
+        }
+        List tables = graph.getTableNames ();
+        ExecutorService workers = Executors.newFixedThreadPool (threads);
+        try {
+            // the bounds of the ranges of each table are computed first, and
+            // concurrently, since each takes a scan of a primary key
+            List bounds = new ArrayList ();
+            Iterator i = tables.iterator ();
+            while (i.hasNext ()) {
+                final String table = (String) i.next ();
+                if (mode == PER_RANGE) {
+                    bounds.add (workers.submit (new Callable () {
+                        public Object call () throws java.sql.SQLException {
+                            return graph.splitTable (table, size);
+                        }
+                    }));
+                }
+            }
+
+            // the names of the shards are reserved before the workers
+            // reserve the names of their parts (PER_TRIPLES), so that they
+            // do not depend on the order in which shards are processed
+            String header = fileName ("header");
+            List names = new ArrayList ();
+            i = tables.iterator ();
+            while (mode != PER_RANGE && i.hasNext ()) {
+                names.add (fileName ((String) i.next ()));
+            }
+
+            List shards = new ArrayList ();
+            shards.add (workers.submit (new Shard (header, null, null, null)));
+            i = tables.iterator ();
+            Iterator j = bounds.iterator ();
+            Iterator n = names.iterator ();
+            while (i.hasNext ()) {
+                String table = (String) i.next ();
+                if (mode != PER_RANGE) {
+                    shards.add (workers.submit (new Shard (
+                        (String) n.next (), table, null, null)));
+                    continue;
+                }
+                Iterator k = ((List) get ((Future) j.next ())).iterator ();
+                Object after[] = null;
+                int part = 0;
+                do {
+                    Object upTo[] = k.hasNext () ? (Object[]) k.next () : null;
+                    shards.add (workers.submit (new Shard (
+                        fileName (table + "-" + pad (++part)), table,
+                        after, upTo)));
+                    after = upTo;
+                } while (after != null);
+            }
+
+            List manifest = new LinkedList ();
+            i = shards.iterator ();
+            while (i.hasNext ()) {
+                manifest.addAll ((List) get ((Future) i.next ()));
+            }
+            PrintWriter pw = new PrintWriter (
+                new FileOutputStream (new File (dir, MANIFEST)));
+            i = manifest.iterator ();
+            while (i.hasNext ()) pw.println ((String) i.next ());
+            pw.close ();
+            if (pw.checkError ()) {
+                throw new IOException ("Can not write " + MANIFEST);
+            }
+            return manifest;
+        }
+        finally {
+            workers.shutdownNow ();
+        }
+    }
+
+    /* (non javadoc)
+     * Wait for the result of f, rethrowing its exception.
+     */
+    private static Object get (Future f)
+    throws IOException, java.sql.SQLException {
+        try {
+            return f.get ();
+        }
+        catch (InterruptedException ex) {
+            throw new InterruptedIOException (ex.toString ());
+        }
+        catch (ExecutionException ex) {
+            Throwable cause = ex.getCause ();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof java.sql.SQLException) {
+                throw (java.sql.SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException (cause);
+        }
+    }
+
+    /* (non javadoc)
+     * Return a file name (without extension) derived from the given name,
+     * which is safe on any file system, and unique in this dump.
+     * It is called by the workers for the parts of PER_TRIPLES shards.
+     */
+    private synchronized String fileName (String name) {
+        StringBuffer sb = new StringBuffer ();
+        for (int k = 0; k < name.length (); k++) {
+            char c = name.charAt (k);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                || (c >= '0' && c <= '9') || c == '-' || c == '_') {
+                sb.append (c);
+            } else {
+                sb.append ('_');
+            }
+        }
+        String r = sb.toString ();
+        for (int n = 2; !fileNames.add (r.toLowerCase ()); n++) {
+            r = sb.toString () + "~" + n;
+        }
+        return r;
+    }
+
+    private static String pad (int n) {
+        String r = String.valueOf (n);
+        while (r.length () < 5) r = "0" + r;
+        return r;
+    }
+
+    /**
+     * A task writing the triples of a table, or of a range of a table, into
+     * one or several (PER_TRIPLES) files, and returning their manifest
+     * lines.
+     */
+    private class Shard implements Callable {
+        private final String baseName;
+        private final String table;
+        private final Object[] after;
+        private final Object[] upTo;
+        private final LinkedList lines = new LinkedList ();
+        private int parts = 0;
+        private String fileName;
+        private DigestOutputStream digest;
+        private TripleWriter writer = null;
+        private long count;
+
+        /**
+         * @param baseName the file name of the shard, without extension
+         * @param table the name of the table, or <code>null</code> for the
+         *              header
+         * @param after the lower bound of the range, or <code>null</code>
+         * @param upTo the upper bound of the range, or <code>null</code>
+         */
+        Shard (String baseName, String table, Object[] after, Object[] upTo) {
+            this.baseName = baseName;
+            this.table = table;
+            this.after = after;
+            this.upTo = upTo;
+        }
+
+        public Object call () throws IOException {
+            // the iterator opens its connection and runs its query when
+            // created, so this must happen in the worker
+            ExtendedIterator triples = (table == null)
+                ? graph.findHeader ()
+                : graph.findInTable (table, after, upTo);
+            try {
+                open ();
+                while (triples.hasNext ()) {
+                    if (mode == PER_TRIPLES && count == size) {
+                        closeFile ();
+                        open ();
+                    }
+                    writer.write ((Triple) triples.next ());
+                    count += 1;
+                }
+                closeFile ();
+            }
+            finally {
+                triples.close ();
+                if (writer != null) writer.close ();
+            }
+            return lines;
+        }
+
+        private void open () throws IOException {
+            String name = baseName;
+            if (mode == PER_TRIPLES) {
+                name = fileName (baseName + "-" + pad (++parts));
+            }
+            fileName = name + (binary ? ".crb" : ".nt") + (gzip ? ".gz" : "");
+            try {
+                digest = new DigestOutputStream (
+                    new FileOutputStream (new File (dir, fileName)),
+                    MessageDigest.getInstance ("SHA-256"));
+            }
+            catch (NoSuchAlgorithmException ex) {
+                throw new RuntimeException (ex);
+            }
+            OutputStream out = new BufferedOutputStream (digest, 1 << 16);
+            if (gzip) out = new GZIPOutputStream (out, 1 << 16);
+            writer = binary ? (TripleWriter) new BinaryRdfWriter (out)
+                            : new NTriplesWriter (out);
+            count = 0;
+        }
+
+        private void closeFile () throws IOException {
+            writer.close ();
+            writer = null;
+            byte sum[] = digest.getMessageDigest ().digest ();
+            StringBuffer sb = new StringBuffer (fileName);
+            sb.append ('\t').append (table == null ? "" : table);
+            sb.append ('\t').append (count).append ('\t');
+            for (int k = 0; k < sum.length; k++) {
+                sb.append (Character.forDigit ((sum[k] >> 4) & 0xf, 16));
+                sb.append (Character.forDigit (sum[k] & 0xf, 16));
+            }
+            lines.add (sb.toString ());
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import com.hp.hpl.jena.graph.Node;
+
+/**
+ * @author agent
+ *
+ * <p>An estimation of the number of triples of a graph matching a pattern,
+ * which query engines can use to choose the order in which the patterns of
+ * a query are matched.</p>
+ * <p>This mirrors the GraphStatisticsHandler interface of later versions of
+ * Jena, which this version does not provide.</p>
+ *
+ * @see fr.cnrs.liris.cross.ABoxGraph#getStatistics()
+ * @see fr.cnrs.liris.cross.TBoxGraph#getStatistics()
+ */
+public interface Statistics {
+
+    /**
+     * The value returned when no estimation is available.
+     */
+    public static final long UNKNOWN = -1;
+
+    /**
+     * Return an estimation of the number of triples matching the given
+     * pattern, where Node.ANY matches any node.
+     * @param s the subject of the pattern
+     * @param p the predicate of the pattern
+     * @param o the object of the pattern
+     * @return the number of triples, or UNKNOWN
+     */
+    public long getStatistic (Node s, Node p, Node o);
+}
@@ -6,7 +6,11 @@ package fr.cnrs.liris.cross;
 
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
 import com.hp.hpl.jena.graph.Graph;
 import com.hp.hpl.jena.graph.Node;
 import com.hp.hpl.jena.graph.Triple;
@@ -25,6 +29,12 @@ import com.hp.hpl.jena.vocabulary.RDFS;
  * <p>The graph corresponding to the TBox for a database.</p>
  * <p>This class implements <code>com.hp.hpl.jena.graph.Graph</code>, around which
  * RDF models can be created.</p> 
+ * <p>The triples generated for each table are cached, as long as the
+ * description of the table does not change: when DbInfo is refreshed, only
+ * the tables which changed are processed again.</p>
+ * <p>When the subject of a pattern is a URI, it is resolved with
+ * Schema#getTerm, and only the triples of the corresponding table are
+ * matched.</p>
  * 
  * @see fr.cnrs.liris.cross.ABoxGraph
  * @see fr.cnrs.liris.cross.DbInfo
@@ -42,6 +52,27 @@ public class TBoxGraph extends GraphBase implements Graph {
      */
     public final int languageLevel;
 
+    /**
+     * A map whose keys are table names and values are the Cached triples of
+     * those tables.
+     */
+    private final Map cache = new ConcurrentHashMap ();
+
+    /**
+     * The triples generated for a table, for a given version of its
+     * description.
+     * @see fr.cnrs.liris.cross.Schema#getVersion(java.lang.String)
+     */
+    private static class Cached {
+        final long version;
+        final List triples;
+
+        Cached (long version, List triples) {
+            this.version = version;
+            this.triples = triples;
+        }
+    }
+
     /**
      * Construct the TBoxGraph for the given DbInfo, with the given languageLevel.
      * @param info the description of the database
@@ -86,13 +117,68 @@ public class TBoxGraph extends GraphBase implements Graph {
 	 * @see com.hp.hpl.jena.graph.Graph#find(com.hp.hpl.jena.graph.TripleMatch)
 	 */
 	public ExtendedIterator find(TripleMatch m) {
-		// TODO LATER This could be optimized...
-		return new com.hp.hpl.jena.graph.TripleMatchIterator (m.asTriple(), findAll ());
+		Triple pattern = m.asTriple ();
+		Node subject = pattern.getSubject ();
+		Iterator candidates;
+		if (subject.isURI ()) {
+			candidates = findAll (subject.getURI ());
+		} else {
+			candidates = findAll ();
+		}
+		return new com.hp.hpl.jena.graph.TripleMatchIterator (pattern, candidates);
 	}
     
+    /**
+     * Return the statistics of this graph, which are the exact numbers of
+     * matching triples, since the TBox is small and cached.
+     * @return the statistics of this graph
+     */
+    public Statistics getStatistics () {
+        return new Statistics () {
+            public long getStatistic (Node s, Node p, Node o) {
+                long r = 0;
+                Iterator i = find (new Triple (s, p, o));
+                while (i.hasNext ()) {
+                    i.next ();
+                    r += 1;
+                }
+                return r;
+            }
+        };
+    }
+    
 	private Iterator findAll () {
-		LinkedList list = new LinkedList ();
+		LinkedList list = ontology ();
+		Schema schema = info.getSchema ();
+		Iterator i = schema.tables.values ().iterator();
+		while (i.hasNext ()) {
+			list.addAll (triples (schema, (Table) i.next ()));
+		}
+		if (cache.size () > schema.tables.size ()) {
+			// forget the tables which were removed
+			cache.keySet ().retainAll (schema.tables.keySet ());
+		}
 		
+		return list.iterator ();
+	}
+
+	/*
+	 * Return the triples whose subject may be the given URI: those of the
+	 * ontology header, or those of the table owning the corresponding term.
+	 */
+	private Iterator findAll (String uri) {
+		if (uri.equals (info.getTBoxUri ())) return ontology ().iterator ();
+		Schema schema = info.getSchema ();
+		Schema.Term term = schema.getTerm (uri);
+		if (term == null) return new LinkedList ().iterator ();
+		return triples (schema, term.table).iterator ();
+	}
+
+	/*
+	 * Return the triples describing the ontology itself.
+	 */
+	private LinkedList ontology () {
+		LinkedList list = new LinkedList ();
         Node ont = Node.createURI(info.getTBoxUri());
         //Node ont = Node.createURI("");
         list.add (new Triple(ont,
@@ -102,35 +188,56 @@ public class TBoxGraph extends GraphBase implements Graph {
                              RDFS.comment.asNode(),
                              Node.createLiteral(
                                  "Generated by Cross", null, null)));
-                                   
-		Iterator i = info.tables.values ().iterator();
-		while (i.hasNext ()) {
-			Table table = (Table) i.next ();
-			Node table_node = Node.createURI (table.uri);
-			// rule 1
-			list.add (new Triple (table_node,
-			                      RDF.type.asNode (),
-			                      OWL.Class.asNode ()));
-			
-			Iterator j = table.columnList.iterator() ;
-			while (j.hasNext ()) {
-				Column column = (Column) j.next ();
-				Node col_node = Node.createURI (column.uri);
-				Node datatype = Node.createURI (Datatypes.xsdTypeUri (column.type));
-				// rule 2
-				list.add (new Triple (col_node,
-									  RDF.type.asNode (),
-									  OWL.DatatypeProperty.asNode ()));
-				list.add (new Triple (col_node,
-									  RDF.type.asNode (),
-									  OWL.FunctionalProperty.asNode ()));
-				list.add (new Triple (col_node,
-									  RDFS.domain.asNode (),
-									  table_node));
-				list.add (new Triple (col_node,
-									  RDFS.range.asNode (),
-									  datatype));
-				if (!column.canBeNull) {
+		return list;
+	}
+
+	/*
+	 * Return the triples generated for the given table, from the cache if
+	 * its description did not change.
+	 */
+	private List triples (Schema schema, Table table) {
+		long version = schema.getVersion (table.name);
+		Cached c = (Cached) cache.get (table.name);
+		if (c == null || c.version != version) {
+			c = new Cached (version, findAll (table));
+			cache.put (table.name, c);
+		}
+		return c.triples;
+	}
+
+	/*
+	 * Return the triples generated for the given table (rules 1 to 4).
+	 */
+	private List findAll (Table table) {
+		LinkedList list = new LinkedList ();
+		Node table_node = Node.createURI (table.uri);
+		// rule 1
+		list.add (new Triple (table_node,
+		                      RDF.type.asNode (),
+		                      OWL.Class.asNode ()));
+		
+		Iterator j = table.columnList.iterator() ;
+		while (j.hasNext ()) {
+			Column column = (Column) j.next ();
+			if (column.rowId) continue;
+			Node col_node = Node.createURI (column.uri);
+			XSDDatatype type = column.reader.type;
+			Node datatype = (type == null) ? RDFS.Literal.asNode ()
+			                               : Node.createURI (type.getURI ());
+			// rule 2
+			list.add (new Triple (col_node,
+								  RDF.type.asNode (),
+								  OWL.DatatypeProperty.asNode ()));
+			list.add (new Triple (col_node,
+								  RDF.type.asNode (),
+								  OWL.FunctionalProperty.asNode ()));
+			list.add (new Triple (col_node,
+								  RDFS.domain.asNode (),
+								  table_node));
+			list.add (new Triple (col_node,
+								  RDFS.range.asNode (),
+								  datatype));
+			if (!column.canBeNull) {
                     AnonId aid = new AnonId (
                         "restriction:"+col_node.getURI());
                     Node restriction = Node.createAnon (aid);
@@ -146,101 +253,98 @@ public class TBoxGraph extends GraphBase implements Graph {
                     list.add (new Triple (restriction,
                                           OWL.someValuesFrom.asNode(),
                                           datatype));
-				}
-				if (column.unique) {
+			}
+			if (column.unique) {
                     if (languageLevel >= LanguageLevel.OWL_FULL) {
                         list.add (new Triple (col_node,
                                               RDF.type.asNode (),
                                               OWL.InverseFunctionalProperty
                                                   .asNode ()));
                     }
-				}
 			}
+		}
+		
+		j = table.foreignKeys.values ().iterator();
+		while (j.hasNext ()) {
+			ForeignKey fk = (ForeignKey) j.next ();
+			Node fk_node = Node.createURI (fk.uri);
+			Table ftable = fk.foreignColumnSet ().table ();
+			Node ftable_node = Node.createURI (ftable.uri);
 			
-			j = table.foreignKeys.values ().iterator();
-			while (j.hasNext ()) {
-				ForeignKey fk = (ForeignKey) j.next ();
-				Node fk_node = Node.createURI (fk.uri);
-				Table ftable = fk.foreignColumnSet ().table ();
-				Node ftable_node = Node.createURI (ftable.uri);
-				
-				if (!fk.subsumesPrimaryKey()) {
-					// rule 3a
-					list.add (new Triple (fk_node,
-										  RDF.type.asNode (),
-										  OWL.ObjectProperty.asNode ()));
-					list.add (new Triple (fk_node,
-										  RDF.type.asNode (),
-										  OWL.FunctionalProperty.asNode ()));
-					list.add (new Triple (fk_node,
-										  RDFS.domain.asNode (),
-										  table_node));
-					list.add (new Triple (fk_node,
-										  RDFS.range.asNode (),
-										  ftable_node));
-					if (!fk.canBeNull ()) {
-						AnonId aid = new AnonId ("restriction:"+fk_node.getURI());
-						Node restriction = Node.createAnon (aid);
-						list.add (new Triple (table_node,
-											  RDFS.subClassOf.asNode(),
-											  restriction));
-						list.add (new Triple (restriction,
-											  RDF.type.asNode(),
-											  OWL.Restriction.asNode ()));
-						list.add (new Triple (restriction,
-											  OWL.onProperty.asNode(),
-											  fk_node));
-						list.add (new Triple (restriction,
-											  OWL.someValuesFrom.asNode(),
-											  ftable_node));
-					}
-					if (fk.unique) {
-						list.add (new Triple (fk_node,
-											  RDF.type.asNode (),
-											  OWL.InverseFunctionalProperty.asNode ()));
-					}
-				} else {
-					// rule 3b
+			if (!fk.subsumesPrimaryKey()) {
+				// rule 3a
+				list.add (new Triple (fk_node,
+									  RDF.type.asNode (),
+									  OWL.ObjectProperty.asNode ()));
+				list.add (new Triple (fk_node,
+									  RDF.type.asNode (),
+									  OWL.FunctionalProperty.asNode ()));
+				list.add (new Triple (fk_node,
+									  RDFS.domain.asNode (),
+									  table_node));
+				list.add (new Triple (fk_node,
+									  RDFS.range.asNode (),
+									  ftable_node));
+				if (!fk.canBeNull ()) {
+					AnonId aid = new AnonId ("restriction:"+fk_node.getURI());
+					Node restriction = Node.createAnon (aid);
 					list.add (new Triple (table_node,
 										  RDFS.subClassOf.asNode(),
+										  restriction));
+					list.add (new Triple (restriction,
+										  RDF.type.asNode(),
+										  OWL.Restriction.asNode ()));
+					list.add (new Triple (restriction,
+										  OWL.onProperty.asNode(),
+										  fk_node));
+					list.add (new Triple (restriction,
+										  OWL.someValuesFrom.asNode(),
 										  ftable_node));
 				}
+				if (fk.unique) {
+					list.add (new Triple (fk_node,
+										  RDF.type.asNode (),
+										  OWL.InverseFunctionalProperty.asNode ()));
+				}
+			} else {
+				// rule 3b
+				list.add (new Triple (table_node,
+									  RDFS.subClassOf.asNode(),
+									  ftable_node));
 			}
+		}
 
-			// rule 4
-			j = table.fkPairs.iterator();
-			while (j.hasNext ()) {
-				ForeignKey pair[] = (ForeignKey[]) j.next ();
-				Table table0 = pair[0].foreignColumnSet (). table ();
-				Node table0_node = Node.createURI (table0.uri);
-				Table table1 = pair[1].foreignColumnSet (). table ();
-				Node table1_node = Node.createURI (table1.uri);
-				Node rel_node = Node.createURI (info.uri (pair[0], pair[1], table));
-                    // TODO LATER maybe the URI of fk-pairs should be cached
-                    //            just as table, column and fk URIs are
+		// rule 4
+		j = table.fkPairs.iterator();
+		while (j.hasNext ()) {
+			ForeignKeyPair pair = (ForeignKeyPair) j.next ();
+			Table table0 = pair.first.foreignColumnSet (). table ();
+			Node table0_node = Node.createURI (table0.uri);
+			Table table1 = pair.second.foreignColumnSet (). table ();
+			Node table1_node = Node.createURI (table1.uri);
+			Node rel_node = pair.node;
+			list.add (new Triple (rel_node,
+								  RDF.type.asNode (),
+								  OWL.ObjectProperty.asNode ()));
+			list.add (new Triple (rel_node,
+								  RDFS.domain.asNode (),
+								  table0_node));
+			list.add (new Triple (rel_node,
+								  RDFS.range.asNode (),
+								  table1_node));
+			if (pair.first.unique) {
 				list.add (new Triple (rel_node,
 									  RDF.type.asNode (),
-									  OWL.ObjectProperty.asNode ()));
-				list.add (new Triple (rel_node,
-									  RDFS.domain.asNode (),
-									  table0_node));
+									  OWL.FunctionalProperty.asNode ()));
+			}
+			if (pair.second.unique) {
 				list.add (new Triple (rel_node,
-									  RDFS.range.asNode (),
-									  table1_node));
-				if (pair[0].unique) {
-					list.add (new Triple (rel_node,
-										  RDF.type.asNode (),
-										  OWL.FunctionalProperty.asNode ()));
-				}
-				if (pair[1].unique) {
-					list.add (new Triple (rel_node,
-										  RDF.type.asNode (),
-										  OWL.InverseFunctionalProperty.asNode ()));
-				}
+									  RDF.type.asNode (),
+									  OWL.InverseFunctionalProperty.asNode ()));
 			}
 		}
 		
-		return list.iterator ();
+		return list;
 	}
 
 }
@@ -5,13 +5,19 @@
 package fr.cnrs.liris.cross;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 
 /**
  * @author Pierre-Antoine Champin
  *
  * The description of a table in a DbInfo.
+ * Tables are created by SchemaBuilder, which adds their foreign keys, then
+ * freezes them.
  */
 class Table extends ColumnSet {
 	
@@ -43,45 +49,45 @@ class Table extends ColumnSet {
     /**
      * The primary key of this table.
      */
-	PrimaryKey primaryKey = null;
+	final PrimaryKey primaryKey;
+	private final HashMap fkMap = new HashMap ();
+	private final ArrayList pairList = new ArrayList (0);
     /**
-     * A map whose keys are names of the foreign keys of this table, and values
-     * are the corresponding ForeignKey instances.
+     * A read only map whose keys are names of the foreign keys of this table,
+     * and values are the corresponding ForeignKey instances.
      */
-	final HashMap foreignKeys = new HashMap ();
+	final Map foreignKeys = Collections.unmodifiableMap (fkMap);
     /**
-     * A list of all the relevant foreign key pairs (rule 4).
+     * A read only list of the ForeignKeyPairs of this table (rule 4).
+     * @see DbInfo.Parameters#foreignKeyPairs
      */
-	final ArrayList fkPairs = new ArrayList (0); 
+	final List fkPairs = Collections.unmodifiableList (pairList); 
 
     /**
+     * Create a table with its columns and primary key, as specified.
      * @param info the DbInfo this table belongs to
-     * @param catalog the catalog this table belongs to
-     * @param schema the schema this table belongs to
-     * @param name the name of this table
+     * @param spec the specification of the table, which must have a primary
+     *             key
      */
-	Table (DbInfo info, String catalog, String schema, String name)
+	Table (DbInfo info, SchemaBuilder.TableSpec spec)
 	{
         this.info = info;
-		this.catalog = catalog;
-		this.schema = schema;
-		this.name = name;
+		this.catalog = spec.catalog;
+		this.schema = spec.schema;
+		this.name = spec.name;
         this.uri = info.uri(this);
         
         StringBuffer tmp = new StringBuffer ();
         
         if (catalog != null && info.catalogAtStart) {
-            tmp.append(info.quote).append(catalog).append(info.quote)
-               .append(info.catalogSep);
+            tmp.append(info.quote(catalog)).append(info.catalogSep);
         }
         if (schema != null) {
-            tmp.append(info.quote).append(schema).append(info.quote)
-               .append(".");
+            tmp.append(info.quote(schema)).append(".");
         }
-        tmp.append(info.quote).append(name).append(info.quote);
+        tmp.append(info.quote(name));
         if (catalog != null && !info.catalogAtStart) {
-            tmp.append(info.catalogSep)
-            .append(info.quote).append(catalog).append(info.quote);
+            tmp.append(info.catalogSep).append(info.quote(catalog));
             // TODO LATER I'm not sure how this kind of DBMS work...
             // In particular, is a column name like
             //      schema.table.column@catalog
@@ -94,5 +100,47 @@ class Table extends ColumnSet {
         }
         
         this.sqlname = tmp.toString();
+
+        // columns are numbered in the order of their ordinal positions, so
+        // that excluded or inaccessible columns leave no gap in columnList
+        Iterator i = spec.columns.values ().iterator ();
+        int position = 0;
+        while (i.hasNext ()) {
+            SchemaBuilder.ColumnSpec cs = (SchemaBuilder.ColumnSpec) i.next ();
+            Column c = new Column (this, cs.name, cs.type, cs.nullable,
+                                   spec.isUnique (Collections.singleton (cs.name)),
+                                   cs.rowId);
+            addColumn (c, ++position);
+        }
+
+        PrimaryKey pk = new PrimaryKey (spec.pkName);
+        i = spec.primaryKey.entrySet ().iterator ();
+        while (i.hasNext ()) {
+            Map.Entry e = (Map.Entry) i.next ();
+            pk.addColumn (getColumn ((String) e.getValue ()),
+                          ((Integer) e.getKey ()).intValue ());
+        }
+        pk.freeze ();
+        this.primaryKey = pk;
+	}
+
+    /**
+     * Add a foreign key to this table.
+     * @param fk a foreign key of this table
+     * @throws java.lang.IllegalStateException if this table is frozen
+     */
+	void addForeignKey (ForeignKey fk) {
+		checkNotFrozen ();
+		fkMap.put (fk.name, fk);
+	}
+
+    /**
+     * Add a foreign key pair (rule 4) to this table.
+     * @param pair a pair of foreign keys of this table
+     * @throws java.lang.IllegalStateException if this table is frozen
+     */
+	void addForeignKeyPair (ForeignKeyPair pair) {
+		checkNotFrozen ();
+		pairList.add (pair);
 	}
 }
\ No newline at end of file
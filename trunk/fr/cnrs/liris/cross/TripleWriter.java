@@ -0,0 +1,32 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.io.IOException;
+
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+ * @author agent
+ *
+ * <p>A serializer writing triples one at a time, as they are produced.</p>
+ * <p>Unlike Jena's model writers, a TripleWriter never needs the whole
+ * graph in memory, which makes it suitable for dumping large ABoxes.</p>
+ */
+public interface TripleWriter {
+
+    /**
+     * Write the given triple.
+     * @param t a triple
+     * @throws IOException
+     */
+    public void write (Triple t) throws IOException;
+
+    /**
+     * Write what remains to be written and close the underlying stream.
+     * @throws IOException
+     */
+    public void close () throws IOException;
+}
@@ -0,0 +1,60 @@
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+package fr.cnrs.liris.cross;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * @author agent
+ *
+ * <p>Access to the virtual threads of Java 21 and later, with a fallback
+ * to a pool of platform threads on earlier versions.</p>
+ * <p>Virtual threads make blocking JDBC calls cheap, so that thousands of
+ * graph lookups can wait on the database at a time; the number of
+ * connections of the ConnectionPool is then the only bound.</p>
+ *
+ * @see fr.cnrs.liris.cross.ConnectionPool
+ */
+public class VirtualThreads {
+
+    private VirtualThreads () {
+    }
+
+    /**
+     * Return an executor starting a virtual thread per task if the JVM
+     * supports it, else a fixed pool of platform threads.
+     * @param fallbackThreads the number of platform threads of the fallback
+     *                        pool
+     * @return an executor
+     */
+    public static ExecutorService newExecutor (int fallbackThreads) {
+        try {
+            // looked up reflectively, since Cross is compiled for older JVMs
+            Method m = Executors.class.getMethod (
+                "newVirtualThreadPerTaskExecutor", new Class[0]);
+            return (ExecutorService) m.invoke (null, new Object[0]);
+        }
+        catch (Exception ex) {
+            // not available, or a preview feature which is not enabled
+            return Executors.newFixedThreadPool (fallbackThreads);
+        }
+    }
+
+    /**
+     * Return whether virtual threads are available in this JVM.
+     * @return <code>true</code> if so, else <code>false</code>
+     */
+    public static boolean isAvailable () {
+        try {
+            Thread.class.getMethod ("ofVirtual", new Class[0]);
+            return true;
+        }
+        catch (NoSuchMethodException ex) {
+            return false;
+        }
+    }
+}
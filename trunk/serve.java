@@ -0,0 +1,52 @@
+import fr.cnrs.liris.cross.HttpService;
+
+/*
+ * Created on Oct 19, 2026
+ *
+ */
+
+/**
+ * @author agent
+ *
+ * A command line program to serve the OWL graphs generated from a JDBC
+ * source over HTTP.
+ *
+ * @see fr.cnrs.liris.cross.HttpService
+ */
+public class serve {
+
+	private static void help () {
+		System.err.println(
+"Serves the TBox and ABox for the given JDBC source over HTTP, on\n"+
+"/tbox, /abox and /describe?uri=<uri>.\n"+
+"usage: serve <port> <jdbc_url> [options]\n"+
+"  options: those of dump which describe the source (-d, -u, -p, -c, -m,\n"+
+"           -t, -a, -i, -e, -I, -P, -r, -L, -b, -T, -C, -E, -n, -k, -K,\n"+
+"           -v), and\n"+
+"           -j <connections>: number of connections to the database, which\n"+
+"                          bounds the requests served at a time (default 4)\n"+
+""
+		);
+	}
+
+	public static void main(String[] args) throws Exception {
+		int port = 0;
+		dump.Job j = null;
+		try {
+			port = Integer.parseInt (args[0]);
+			String jobArgs[] = new String[args.length];
+			jobArgs[0] = "abox";
+			System.arraycopy (args, 1, jobArgs, 1, args.length - 1);
+			j = dump.Job.parse (jobArgs);
+		}
+		catch (IndexOutOfBoundsException ex) {
+			help ();
+			System.exit (-1);
+		}
+		catch (NumberFormatException ex) {
+			help ();
+			System.exit (-1);
+		}
+		new HttpService (j.p, port, j.shardThreads).start ();
+	}
+}